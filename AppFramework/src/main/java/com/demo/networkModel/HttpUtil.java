@@ -4,7 +4,7 @@ import androidx.annotation.NonNull;
 import android.text.TextUtils;
 
 import com.demo.configs.InterfaceConfig;
-import com.framework.util.JSONParseUtil;
+import com.framework.util.ParsedResponse;
 import com.framework.util.Y;
 import com.framework2.okhttp3.HandlerCallback;
 import com.framework2.okhttp3.Ok3Util;
@@ -59,21 +59,21 @@ public class HttpUtil {
                 .post(map)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
-                        Y.y("JSONRequestonResponse:" + result);
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
+                        Y.y("JSONRequestonResponse:" + response);
                         if (null != resultListener) {
-                            boolean success = ParseResponseUtil.getInstance().isSuccess(result);
+                            boolean success = ParseResponseUtil.getInstance().isSuccess(response);
                             String token =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "userKey");
                             String nickName =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "nickName");
                             String headPicUrl =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "headPicUrl");
                             String errorMsg =
-                                    ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                    ParseResponseUtil.getInstance().parseReturnStringError(response);
                             if (success) {
                                 if (!TextUtils.isEmpty(token)) {
                                     resultListener.onSuccess(token, nickName, headPicUrl);
@@ -110,11 +110,11 @@ public class HttpUtil {
                 .post(null)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
                         if (null != resultListener) {
-                            boolean success = ParseResponseUtil.getInstance().isSuccess(result);
+                            boolean success = ParseResponseUtil.getInstance().isSuccess(response);
                             String errorMsg =
-                                    ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                    ParseResponseUtil.getInstance().parseReturnStringError(response);
                             if (success) {
                                 resultListener.onSuccess("");
                             } else {
@@ -150,11 +150,11 @@ public class HttpUtil {
                 .post(map)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
-                        Y.y("JSONRequestonResponse:" + result);
-                        String code = ParseResponseUtil.getInstance().parseVerifyCode(result);
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
+                        Y.y("JSONRequestonResponse:" + response);
+                        String code = ParseResponseUtil.getInstance().parseVerifyCode(response);
                         String errorMsg =
-                                ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                ParseResponseUtil.getInstance().parseReturnStringError(response);
                         if (null != resultListener && !TextUtils.isEmpty(code)) {
                             resultListener.onSuccess(code);
                         } else if (null != resultListener) {
@@ -191,12 +191,12 @@ public class HttpUtil {
                 .post(map)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
-                        Y.y("JSONRequestonResponse:" + result);
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
+                        Y.y("JSONRequestonResponse:" + response);
                         if (null != resultListener) {
-                            boolean success = ParseResponseUtil.getInstance().isSuccess(result);
+                            boolean success = ParseResponseUtil.getInstance().isSuccess(response);
                             String errorMsg =
-                                    ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                    ParseResponseUtil.getInstance().parseReturnStringError(response);
                             if (success) {
                                 resultListener.onSuccess("");
                             } else {
@@ -231,11 +231,11 @@ public class HttpUtil {
                 .post(map)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
                         if (null != resultListener) {
-                            boolean success = ParseResponseUtil.getInstance().isSuccess(result);
+                            boolean success = ParseResponseUtil.getInstance().isSuccess(response);
                             String errorMsg =
-                                    ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                    ParseResponseUtil.getInstance().parseReturnStringError(response);
                             if (success) {
                                 resultListener.onSuccess("");
                             } else {
@@ -271,11 +271,11 @@ public class HttpUtil {
                 .post(map)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
                         if (null != resultListener) {
-                            boolean success = ParseResponseUtil.getInstance().isSuccess(result);
+                            boolean success = ParseResponseUtil.getInstance().isSuccess(response);
                             String errorMsg =
-                                    ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                    ParseResponseUtil.getInstance().parseReturnStringError(response);
                             if (success) {
                                 resultListener.onSuccess("");
                             } else {
@@ -307,11 +307,11 @@ public class HttpUtil {
                 .post(map)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
                         if (null != resultListener) {
-                            boolean success = ParseResponseUtil.getInstance().isSuccess(result);
+                            boolean success = ParseResponseUtil.getInstance().isSuccess(response);
                             String errorMsg =
-                                    ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                    ParseResponseUtil.getInstance().parseReturnStringError(response);
                             if (success) {
                                 resultListener.onSuccess("");
                             } else {
@@ -347,22 +347,22 @@ public class HttpUtil {
                 .post(map)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
                         if (null != resultListener) {
-                            boolean success = ParseResponseUtil.getInstance().isSuccess(result);
+                            boolean success = ParseResponseUtil.getInstance().isSuccess(response);
                             String errorMsg =
-                                    ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                    ParseResponseUtil.getInstance().parseReturnStringError(response);
                             String mobile =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "mobile");
                             String userKey =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "userKey");
                             String nickName =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "nickName");
                             String headPicUrl =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "headPicUrl");
                             if (success) {
                                 resultListener.onSuccess(mobile, userKey, nickName, headPicUrl);
@@ -403,22 +403,22 @@ public class HttpUtil {
                 .post(map)
                 .build(new HandlerCallback() {
                     @Override
-                    public void onResponseMainThread(Call call, String result) throws IOException {
+                    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
                         if (null != resultListener) {
-                            boolean success = ParseResponseUtil.getInstance().isSuccess(result);
+                            boolean success = ParseResponseUtil.getInstance().isSuccess(response);
                             String errorMsg =
-                                    ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                    ParseResponseUtil.getInstance().parseReturnStringError(response);
                             String mobile =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "mobile");
                             String token =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "userKey");
                             String nickName =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "nickName");
                             String headPicUrl =
-                                    ParseResponseUtil.getInstance().parseReturnString(result,
+                                    ParseResponseUtil.getInstance().parseReturnString(response,
                                             "headPicUrl");
                             if (success && !TextUtils.isEmpty(mobile)) {
                                 resultListener.onSuccess("true", token, nickName, headPicUrl);
@@ -448,9 +448,10 @@ public class HttpUtil {
                     StringRequest.getBuilder(false).url(checkUpdateUrl).get()
                     .build(new HandlerCallback() {
                         @Override
-                        public void onResponseMainThread(Call call, String result) throws IOException {
+                        public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
                             if (null != resultListener) {
-                                if (!TextUtils.isEmpty(result)) {
+                                if (!TextUtils.isEmpty(response.getRaw())) {
+                                    String result = response.getRaw();
                                     Y.y("更新：" + result);
 //                                    result= URLEncoder.encode(result,"gb2312");
 
@@ -460,24 +461,20 @@ public class HttpUtil {
                                     Y.y("更新：" + result.getBytes("ISO8859-1"));
 //                                    boolean success = ParseResponseUtil.getProxyApplication()
 //                                    .isSuccess(baseActivity, result);
-                                    boolean success =
-                                            JSONParseUtil.getInstance().optBoolean(result,
-                                                    "success");
+                                    boolean success = response.optBoolean("success");
                                     String errorMsg =
-                                            ParseResponseUtil.getInstance().parseReturnStringError(result);
+                                            ParseResponseUtil.getInstance().parseReturnStringError(response);
                                     int versionCode =
-                                            ParseResponseUtil.getInstance().parseReturnInt(result,
+                                            ParseResponseUtil.getInstance().parseReturnInt(response,
                                             "versionCode");
                                     String versionName =
-                                            ParseResponseUtil.getInstance().parseReturnString(result,
+                                            ParseResponseUtil.getInstance().parseReturnString(response,
                                             "versionName");
                                     String downLoadUrl =
-                                            ParseResponseUtil.getInstance().parseReturnString(result,
+                                            ParseResponseUtil.getInstance().parseReturnString(response,
                                             "downLoadUrl");
                                     JSONArray updateMsgs =
-                                            JSONParseUtil.getInstance().optJSONArray(JSONParseUtil
-                                            .getInstance().optJSONObject(result, "data"),
-                                                    "updateMsgs");
+                                            response.optParsedResponse("data").optJSONArray("updateMsgs");
                                     StringBuilder stringBuilder = new StringBuilder();
                                     if (updateMsgs != null && updateMsgs.length() > 0) {
                                         for (int i = 0; i < updateMsgs.length(); i++) {
@@ -3,6 +3,7 @@ package com.demo.networkModel;
 import android.text.TextUtils;
 
 import com.framework.util.JSONParseUtil;
+import com.framework.util.ParsedResponse;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -35,6 +36,10 @@ public class ParseResponseUtil {
         return JSONParseUtil.getInstance().optBoolean(response, "success");
     }
 
+    public boolean isSuccess(ParsedResponse response) {
+        return response.optBoolean("success");
+    }
+
 //    public boolean isSuccess(final BaseActivity baseActivity, String response) {
 //        if (JSONParseUtil.getProxyApplication().optBoolean(response, "success")) {
 //            return true;
@@ -117,4 +122,40 @@ public class ParseResponseUtil {
         }
         return null;
     }
+
+    /**
+     * 以下方法读取已解析的response，同一个response读取多个字段时不会重复解析
+     */
+    public JSONObject parseReturnJSONObject(ParsedResponse response) {
+        return response.optJSONObject("data");
+    }
+
+    public JSONArray parseReturnJSONArray(ParsedResponse response) {
+        return response.optJSONArray("data");
+    }
+
+    public String parseReturnString(ParsedResponse response, String key) {
+        if (!TextUtils.isEmpty(response.getRaw())) {
+            return response.optParsedResponse("data").optString(key);
+        }
+        return null;
+    }
+
+    public int parseReturnInt(ParsedResponse response, String key) {
+        return response.optParsedResponse("data").optInt(key);
+    }
+
+    public String parseReturnStringError(ParsedResponse response) {
+        if (!TextUtils.isEmpty(response.getRaw())) {
+            return response.optString("data");
+        }
+        return null;
+    }
+
+    public String parseVerifyCode(ParsedResponse response) {
+        if (isSuccess(response)) {
+            return response.optParsedResponse("data").optString("key");
+        }
+        return null;
+    }
 }
@@ -3,6 +3,7 @@ package com.framework2.okhttp3;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.framework.util.ParsedResponse;
 import com.framework.util.Y;
 
 import java.io.IOException;
@@ -11,6 +12,8 @@ import okhttp3.Call;
 import okhttp3.Response;
 
 /**
+ * 回调到主线程，response在OkHttp的线程里解析成{@link ParsedResponse}，主线程读取字段时不再解析
+ *
  * @author Yangjie
  * className HandlerCallback
  * created at  2017/4/6  17:14
@@ -23,7 +26,20 @@ public abstract class HandlerCallback implements okhttp3.Callback {
         handler = new Handler(Looper.getMainLooper());
     }
 
-    public abstract void onResponseMainThread(Call call, String result) throws IOException;
+    /**
+     * 只需要原始字符串时重写这个方法
+     */
+    public void onResponseMainThread(Call call, String result) throws IOException {
+    }
+
+    /**
+     * 默认回调{@link #onResponseMainThread(Call, String)}，读取json字段时重写这个方法
+     *
+     * @param response 已经在子线程解析过的response
+     */
+    public void onResponseMainThread(Call call, ParsedResponse response) throws IOException {
+        onResponseMainThread(call, response.getRaw());
+    }
 
     public abstract void onFailureMainThread(Call call, IOException e);
 
@@ -39,13 +55,13 @@ public abstract class HandlerCallback implements okhttp3.Callback {
 
     @Override
     public void onResponse(final Call call, final Response reponse) throws IOException {
-        final String result = reponse.body().string();
+        final ParsedResponse response = ParsedResponse.parse(reponse.body().string());
         handler.post(new Runnable() {
             @Override
             public void run() {
                 try {
-                    Y.y("网络返回结果：" + result);
-                    onResponseMainThread(call, result);
+                    Y.y("网络返回结果：" + response.getRaw());
+                    onResponseMainThread(call, response);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -1,16 +1,19 @@
 package com.danikula.videocache;
 
-import java.io.ByteArrayInputStream;
 import java.util.Arrays;
 
 /**
  * Simple memory based {@link Cache} implementation.
+ * <p>
+ * Whole data is kept in single growing array, use {@link SegmentedMemoryCache} to share limited
+ * memory between several caches.
  *
  * @author Alexey Danilov (danikula@gmail.com).
  */
 public class ByteArrayCache implements Cache {
 
-    private volatile byte[] data;
+    private byte[] data;
+    private int length;
     private volatile boolean completed;
 
     public ByteArrayCache() {
@@ -19,32 +22,39 @@ public class ByteArrayCache implements Cache {
 
     public ByteArrayCache(byte[] data) {
         this.data = Preconditions.checkNotNull(data);
+        this.length = data.length;
     }
 
     @Override
-    public int read(byte[] buffer, long offset, int length) throws ProxyCacheException {
-        if (offset >= data.length) {
+    public synchronized int read(byte[] buffer, long offset, int length) throws ProxyCacheException {
+        if (offset >= this.length) {
             return -1;
         }
         if (offset > Integer.MAX_VALUE) {
             throw new IllegalArgumentException("Too long offset for memory cache " + offset);
         }
-        return new ByteArrayInputStream(data).read(buffer, (int) offset, length);
+        int read = Math.min(length, this.length - (int) offset);
+        System.arraycopy(data, (int) offset, buffer, 0, read);
+        return read;
     }
 
     @Override
-    public long available() throws ProxyCacheException {
-        return data.length;
+    public synchronized long available() throws ProxyCacheException {
+        return length;
     }
 
     @Override
-    public void append(byte[] newData, int length) throws ProxyCacheException {
-        Preconditions.checkNotNull(data);
+    public synchronized void append(byte[] newData, int length) throws ProxyCacheException {
+        Preconditions.checkNotNull(newData);
         Preconditions.checkArgument(length >= 0 && length <= newData.length);
 
-        byte[] appendedData = Arrays.copyOf(data, data.length + length);
-        System.arraycopy(newData, 0, appendedData, data.length, length);
-        data = appendedData;
+        int newLength = this.length + length;
+        if (newLength > data.length) {
+            // grow geometrically, so appending stream copies every byte constant times
+            data = Arrays.copyOf(data, Math.max(newLength, data.length * 2));
+        }
+        System.arraycopy(newData, 0, data, this.length, length);
+        this.length = newLength;
     }
 
     @Override
@@ -0,0 +1,259 @@
+package com.danikula.videocache;
+
+import com.danikula.videocache.file.EvictionListener;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.danikula.videocache.Preconditions.checkNotNull;
+
+/**
+ * Collects metrics of {@link HttpProxyCacheServer}: bytes served from cache and from network,
+ * requests that used or bypassed cache, time to first byte, active clients and files evicted by
+ * {@link com.danikula.videocache.file.LruDiskUsage}.
+ * <p>
+ * Metrics can be polled with {@link #snapshot()} or received by {@link CacheMetricsListener}.
+ * Counters are kept for whole server and for {@value #MAX_TRACKED_URLS} recently requested urls.
+ */
+public final class CacheMetrics {
+
+    private static final int MAX_TRACKED_URLS = 256;
+
+    private final Counters total = new Counters();
+    private final Map<String, Counters> urls = new LinkedHashMap<String, Counters>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Counters> eldest) {
+            return size() > MAX_TRACKED_URLS;
+        }
+    }; // guarded by itself
+    private final AtomicInteger activeClients = new AtomicInteger();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+    private final List<CacheMetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void registerListener(CacheMetricsListener listener) {
+        listeners.add(checkNotNull(listener));
+    }
+
+    public void unregisterListener(CacheMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns current values of all metrics.
+     *
+     * @return immutable snapshot of metrics.
+     */
+    public Snapshot snapshot() {
+        Map<String, Stats> urlStats = new HashMap<>();
+        synchronized (urls) {
+            for (Map.Entry<String, Counters> entry : urls.entrySet()) {
+                urlStats.put(entry.getKey(), entry.getValue().toStats());
+            }
+        }
+        return new Snapshot(total.toStats(), Collections.unmodifiableMap(urlStats),
+                activeClients.get(), evictions.get(), evictedBytes.get());
+    }
+
+    Tracker startRequest(String url, long offset) {
+        activeClients.incrementAndGet();
+        return new Tracker(url, offset);
+    }
+
+    void finishRequest(Tracker tracker) {
+        activeClients.decrementAndGet();
+        RequestMetrics metrics = tracker.toMetrics();
+        total.add(metrics);
+        urlCounters(metrics.url).add(metrics);
+        for (CacheMetricsListener listener : listeners) {
+            listener.onRequestCompleted(metrics);
+        }
+    }
+
+    EvictionListener evictionListener() {
+        return new EvictionListener() {
+
+            @Override
+            public void onFileEvicted(File file, long size) {
+                evictions.incrementAndGet();
+                evictedBytes.addAndGet(size);
+                for (CacheMetricsListener listener : listeners) {
+                    listener.onFileEvicted(file, size);
+                }
+            }
+        };
+    }
+
+    private Counters urlCounters(String url) {
+        synchronized (urls) {
+            Counters counters = urls.get(url);
+            if (counters == null) {
+                counters = new Counters();
+                urls.put(url, counters);
+            }
+            return counters;
+        }
+    }
+
+    /**
+     * Counters of requests for whole server or single url.
+     */
+    public static final class Stats {
+
+        public final long requests;
+        public final long cacheHits;
+        public final long cacheBypasses;
+        public final long bytesFromCache;
+        public final long bytesFromNetwork;
+        public final long averageTimeToFirstByteMs;
+        public final long maxTimeToFirstByteMs;
+
+        Stats(long requests, long cacheHits, long cacheBypasses, long bytesFromCache,
+              long bytesFromNetwork, long averageTimeToFirstByteMs, long maxTimeToFirstByteMs) {
+            this.requests = requests;
+            this.cacheHits = cacheHits;
+            this.cacheBypasses = cacheBypasses;
+            this.bytesFromCache = bytesFromCache;
+            this.bytesFromNetwork = bytesFromNetwork;
+            this.averageTimeToFirstByteMs = averageTimeToFirstByteMs;
+            this.maxTimeToFirstByteMs = maxTimeToFirstByteMs;
+        }
+
+        /**
+         * Returns part of served bytes that were taken from cache.
+         *
+         * @return value in range {@code [0..1]}.
+         */
+        public float cacheHitRatio() {
+            long served = bytesFromCache + bytesFromNetwork;
+            return served == 0 ? 0 : (float) bytesFromCache / served;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{requests=" + requests + ", cacheHits=" + cacheHits + ", cacheBypasses=" +
+                    cacheBypasses + ", bytesFromCache=" + bytesFromCache + ", bytesFromNetwork=" +
+                    bytesFromNetwork + ", averageTimeToFirstByteMs=" + averageTimeToFirstByteMs +
+                    ", maxTimeToFirstByteMs=" + maxTimeToFirstByteMs + '}';
+        }
+    }
+
+    /**
+     * Metrics of server at some moment.
+     */
+    public static final class Snapshot {
+
+        public final Stats total;
+        public final Map<String, Stats> urls;
+        public final int activeClients;
+        public final long evictions;
+        public final long evictedBytes;
+
+        Snapshot(Stats total, Map<String, Stats> urls, int activeClients, long evictions,
+                 long evictedBytes) {
+            this.total = total;
+            this.urls = urls;
+            this.activeClients = activeClients;
+            this.evictions = evictions;
+            this.evictedBytes = evictedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{total=" + total + ", urls=" + urls.size() + ", activeClients=" +
+                    activeClients + ", evictions=" + evictions + ", evictedBytes=" + evictedBytes + '}';
+        }
+    }
+
+    private static final class Counters {
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong cacheHits = new AtomicLong();
+        private final AtomicLong cacheBypasses = new AtomicLong();
+        private final AtomicLong bytesFromCache = new AtomicLong();
+        private final AtomicLong bytesFromNetwork = new AtomicLong();
+        private final AtomicLong firstBytes = new AtomicLong();
+        private final AtomicLong totalTimeToFirstByteMs = new AtomicLong();
+        private final AtomicLong maxTimeToFirstByteMs = new AtomicLong();
+
+        void add(RequestMetrics metrics) {
+            requests.incrementAndGet();
+            (metrics.cacheUsed ? cacheHits : cacheBypasses).incrementAndGet();
+            bytesFromCache.addAndGet(metrics.bytesFromCache);
+            bytesFromNetwork.addAndGet(metrics.bytesFromNetwork);
+            if (metrics.timeToFirstByteMs >= 0) {
+                firstBytes.incrementAndGet();
+                totalTimeToFirstByteMs.addAndGet(metrics.timeToFirstByteMs);
+                long max;
+                do {
+                    max = maxTimeToFirstByteMs.get();
+                } while (metrics.timeToFirstByteMs > max
+                        && !maxTimeToFirstByteMs.compareAndSet(max, metrics.timeToFirstByteMs));
+            }
+        }
+
+        Stats toStats() {
+            long firstBytesCount = firstBytes.get();
+            long averageTimeToFirstByte = firstBytesCount == 0 ? 0
+                    : totalTimeToFirstByteMs.get() / firstBytesCount;
+            return new Stats(requests.get(), cacheHits.get(), cacheBypasses.get(),
+                    bytesFromCache.get(), bytesFromNetwork.get(), averageTimeToFirstByte,
+                    maxTimeToFirstByteMs.get());
+        }
+    }
+
+    /**
+     * Collects metrics of single request. Used by one thread serving request at a time.
+     */
+    static final class Tracker {
+
+        private final String url;
+        private final long offset;
+        private final long startNanos = System.nanoTime();
+        private boolean cacheUsed;
+        private long cachedBytes;
+        private long firstByteNanos = -1;
+        private long bytesServed;
+
+        Tracker(String url, long offset) {
+            this.url = url;
+            this.offset = offset;
+        }
+
+        /**
+         * Remembers how request is served. Tracker is started when request is received, so time
+         * to first byte includes resolving of source and cache that precedes this call.
+         */
+        void onCacheResolved(boolean cacheUsed, long cachedBytes) {
+            this.cacheUsed = cacheUsed;
+            this.cachedBytes = cachedBytes;
+        }
+
+        void onBytesServed(long count) {
+            if (count > 0 && firstByteNanos < 0) {
+                firstByteNanos = System.nanoTime();
+            }
+            bytesServed += count;
+        }
+
+        RequestMetrics toMetrics() {
+            long fromCache = cacheUsed ? Math.min(bytesServed, cachedBytes) : 0;
+            long timeToFirstByte = firstByteNanos < 0 ? -1 : toMillis(firstByteNanos - startNanos);
+            return new RequestMetrics(url, offset, cacheUsed, fromCache, bytesServed - fromCache,
+                    timeToFirstByte, toMillis(System.nanoTime() - startNanos));
+        }
+
+        private long toMillis(long nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+}
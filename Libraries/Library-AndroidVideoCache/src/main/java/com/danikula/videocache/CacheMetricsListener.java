@@ -0,0 +1,14 @@
+package com.danikula.videocache;
+
+import java.io.File;
+
+/**
+ * Listener for metrics of {@link HttpProxyCacheServer}. Methods are called on proxy's worker
+ * threads, so they should return quickly.
+ */
+public interface CacheMetricsListener {
+
+    void onRequestCompleted(RequestMetrics metrics);
+
+    void onFileEvicted(File file, long size);
+}
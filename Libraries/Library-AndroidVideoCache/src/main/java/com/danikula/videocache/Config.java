@@ -7,6 +7,8 @@ import com.danikula.videocache.sourcestorage.SourceInfoStorage;
 
 import java.io.File;
 
+import okhttp3.OkHttpClient;
+
 /**
  * Configuration for proxy cache.
  *
@@ -19,19 +21,41 @@ class Config {
     public final DiskUsage diskUsage;
     public final SourceInfoStorage sourceInfoStorage;
     public final HeaderInjector headerInjector;
+    public final boolean sparseCache;
+    public final boolean nioServer;
+    public final int preloadConcurrency;
+    public final int maxConnectionsPerUrl;
+    public final MemoryCachePool memoryCachePool;
+    public final int hlsPrefetchSegments;
+    public final OkHttpClient okHttpClient;
 
     Config(File cacheRoot, FileNameGenerator fileNameGenerator, DiskUsage diskUsage,
            SourceInfoStorage
-            sourceInfoStorage, HeaderInjector headerInjector) {
+            sourceInfoStorage, HeaderInjector headerInjector, boolean sparseCache,
+           boolean nioServer, int preloadConcurrency, int maxConnectionsPerUrl,
+           MemoryCachePool memoryCachePool, int hlsPrefetchSegments, OkHttpClient okHttpClient) {
         this.cacheRoot = cacheRoot;
         this.fileNameGenerator = fileNameGenerator;
         this.diskUsage = diskUsage;
         this.sourceInfoStorage = sourceInfoStorage;
         this.headerInjector = headerInjector;
+        this.sparseCache = sparseCache;
+        this.nioServer = nioServer;
+        this.preloadConcurrency = preloadConcurrency;
+        this.maxConnectionsPerUrl = maxConnectionsPerUrl;
+        this.memoryCachePool = memoryCachePool;
+        this.hlsPrefetchSegments = hlsPrefetchSegments;
+        this.okHttpClient = okHttpClient;
     }
 
     File generateCacheFile(String url) {
         String name = fileNameGenerator.generate(url);
         return new File(cacheRoot, name);
     }
+
+    UrlSource newSource(String url) {
+        return okHttpClient != null
+                ? new OkHttpUrlSource(url, sourceInfoStorage, headerInjector, okHttpClient)
+                : new HttpUrlSource(url, sourceInfoStorage, headerInjector);
+    }
 }
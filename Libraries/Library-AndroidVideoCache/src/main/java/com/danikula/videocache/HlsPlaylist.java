@@ -0,0 +1,125 @@
+package com.danikula.videocache;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.danikula.videocache.Preconditions.checkNotNull;
+
+/**
+ * HLS playlist (m3u8) that can be rewritten for serving by {@link HttpProxyCacheServer}.
+ * <p>
+ * All uris of playlist are resolved against playlist's url. Uris of media segments, variant
+ * streams, renditions and initialization sections are mapped by {@link UrlMapper}, so player
+ * requests them through proxy. Encryption keys are never mapped and are requested from server
+ * directly.
+ */
+final class HlsPlaylist {
+
+    private static final Pattern URI_ATTRIBUTE_PATTERN = Pattern.compile("URI=\"([^\"]*)\"");
+    private static final String PLAYLIST_EXTENSION = ".m3u8";
+    private static final String END_LIST_TAG = "#EXT-X-ENDLIST";
+    private static final String STREAM_INF_TAG = "#EXT-X-STREAM-INF";
+
+    private final String url;
+    private final String[] lines;
+    private final List<String> segmentUrls = new ArrayList<>();
+    private final boolean master;
+    private final boolean complete;
+
+    HlsPlaylist(String url, String content) throws ProxyCacheException {
+        this.url = checkNotNull(url);
+        this.lines = checkNotNull(content).split("\r?\n");
+        if (lines.length == 0 || !lines[0].trim().startsWith("#EXTM3U")) {
+            throw new ProxyCacheException("Content of " + url + " is not HLS playlist");
+        }
+        boolean master = false;
+        boolean complete = false;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith(STREAM_INF_TAG)) {
+                master = true;
+            } else if (trimmed.startsWith(END_LIST_TAG)) {
+                complete = true;
+            } else if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                segmentUrls.add(resolve(trimmed));
+            }
+        }
+        this.master = master;
+        this.complete = complete;
+    }
+
+    static boolean isPlaylistUrl(String url) {
+        int queryIndex = url.indexOf('?');
+        String path = queryIndex >= 0 ? url.substring(0, queryIndex) : url;
+        return path.toLowerCase(Locale.US).endsWith(PLAYLIST_EXTENSION);
+    }
+
+    /**
+     * Returns absolute urls of media segments in order of playback, or variant streams for
+     * master playlist.
+     */
+    List<String> getSegmentUrls() {
+        return Collections.unmodifiableList(segmentUrls);
+    }
+
+    boolean isMaster() {
+        return master;
+    }
+
+    /**
+     * Returns {@code true} for playlist that won't change anymore, e.g. video on demand.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    String rewrite(UrlMapper mapper) {
+        StringBuilder result = new StringBuilder();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                result.append(line);
+            } else if (!trimmed.startsWith("#")) {
+                result.append(mapper.map(resolve(trimmed)));
+            } else if (trimmed.contains("URI=\"")) {
+                result.append(rewriteUriAttribute(trimmed, mapper));
+            } else {
+                result.append(line);
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    private String rewriteUriAttribute(String tag, UrlMapper mapper) {
+        boolean key = tag.startsWith("#EXT-X-KEY") || tag.startsWith("#EXT-X-SESSION-KEY");
+        Matcher matcher = URI_ATTRIBUTE_PATTERN.matcher(tag);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String uri = resolve(matcher.group(1));
+            String mapped = key ? uri : mapper.map(uri);
+            matcher.appendReplacement(result, Matcher.quoteReplacement("URI=\"" + mapped + "\""));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private String resolve(String uri) {
+        try {
+            return new URL(new URL(url), uri).toString();
+        } catch (MalformedURLException e) {
+            return uri;
+        }
+    }
+
+    interface UrlMapper {
+
+        String map(String url);
+    }
+}
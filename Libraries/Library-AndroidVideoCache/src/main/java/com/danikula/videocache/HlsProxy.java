@@ -0,0 +1,259 @@
+package com.danikula.videocache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.danikula.videocache.Preconditions.checkNotNull;
+import static com.danikula.videocache.ProxyCacheUtils.DEFAULT_BUFFER_SIZE;
+
+/**
+ * HLS support of {@link HttpProxyCacheServer}.
+ * <p>
+ * Playlists (urls with {@code .m3u8} extension) are rewritten, so segments are requested through
+ * proxy too. Segments of media playlist are cached as separate files in directory of playlist,
+ * whole directory is single entry of {@link com.danikula.videocache.file.DiskUsage} and is
+ * evicted at once. Playlists of video on demand are saved to the same directory and served
+ * without network next time. When player requests segment next segments are prefetched.
+ * <p>
+ * Segments are remembered per playlist: refreshed playlist (e.g. live one) replaces its previous
+ * segments and only {@link #MAX_PLAYLISTS} recently served playlists are kept.
+ */
+final class HlsProxy {
+
+    private static final Logger LOG = LoggerFactory.getLogger("HlsProxy");
+    private static final String GROUP_DIRECTORY_POSTFIX = ".hls";
+    private static final String PLAYLIST_FILE_NAME = "playlist.m3u8";
+    private static final int MAX_PLAYLIST_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_PLAYLISTS = 16;
+
+    private final HttpProxyCacheServer server;
+    private final Config config;
+    // segments by url for every playlist url, in access order; guarded by itself
+    private final LinkedHashMap<String, Map<String, Segment>> playlists =
+            new LinkedHashMap<String, Map<String, Segment>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, Segment>> eldest) {
+                    return size() > MAX_PLAYLISTS;
+                }
+            };
+
+    HlsProxy(HttpProxyCacheServer server, Config config) {
+        this.server = checkNotNull(server);
+        this.config = checkNotNull(config);
+    }
+
+    boolean isPlaylist(String url) {
+        return HlsPlaylist.isPlaylistUrl(url);
+    }
+
+    /**
+     * Returns directory segment should be cached in or {@code null} if url isn't known segment.
+     */
+    File getGroupDirectory(String url) {
+        Segment segment = findSegment(url);
+        return segment != null ? segment.groupDirectory : null;
+    }
+
+    private Segment findSegment(String url) {
+        synchronized (playlists) {
+            for (Map.Entry<String, Map<String, Segment>> playlist : playlists.entrySet()) {
+                Segment segment = playlist.getValue().get(url);
+                if (segment != null) {
+                    playlists.get(playlist.getKey()); // playlist is still in use
+                    return segment;
+                }
+            }
+            return null;
+        }
+    }
+
+    void processPlaylistRequest(String url, Socket socket) throws IOException, ProxyCacheException {
+        final File groupDirectory = new File(config.cacheRoot,
+                config.fileNameGenerator.generate(url) + GROUP_DIRECTORY_POSTFIX);
+        HlsPlaylist playlist = loadPlaylist(url, groupDirectory);
+        final Map<String, Segment> segments = newSegments(playlist, groupDirectory);
+        // server is pinged once per playlist, not for every segment
+        final boolean proxyAlive = server.isAlive();
+        String content = playlist.rewrite(new HlsPlaylist.UrlMapper() {
+
+            @Override
+            public String map(String url) {
+                if (!isPlaylist(url) && !segments.containsKey(url)) {
+                    // initialization section is cached with segments
+                    segments.put(url, new Segment(groupDirectory, null, -1));
+                }
+                return proxyAlive ? server.appendToProxyUrl(url) : url;
+            }
+        });
+        if (!segments.isEmpty()) {
+            synchronized (playlists) {
+                playlists.put(url, segments); // segments of previous version are dropped
+            }
+        }
+        byte[] body = content.getBytes("UTF-8");
+        String headers = String.format(Locale.US, "HTTP/1.1 200 OK\n" +
+                "Content-Type: application/vnd.apple.mpegurl\n" +
+                "Content-Length: %d\n" +
+                "\n", body.length);
+        OutputStream out = socket.getOutputStream();
+        out.write(headers.getBytes("UTF-8"));
+        out.write(body);
+        out.flush();
+    }
+
+    /**
+     * Prefetches segments following requested one, so they are cached while player plays current
+     * segment. Prefetching isn't paused by the player like preloading is.
+     */
+    void onMediaRequest(String url) {
+        Segment segment = findSegment(url);
+        if (segment == null || segment.index < 0) {
+            return;
+        }
+        List<String> playlistSegments = segment.playlistSegments;
+        int last = Math.min(segment.index + config.hlsPrefetchSegments, playlistSegments.size() - 1);
+        for (int i = segment.index + 1; i <= last; i++) {
+            server.prefetch(playlistSegments.get(i));
+        }
+    }
+
+    private Map<String, Segment> newSegments(HlsPlaylist playlist, File groupDirectory) {
+        Map<String, Segment> segments = new HashMap<>();
+        if (playlist.isMaster()) {
+            return segments;
+        }
+        List<String> playlistSegments = playlist.getSegmentUrls();
+        for (int i = 0; i < playlistSegments.size(); i++) {
+            segments.put(playlistSegments.get(i), new Segment(groupDirectory, playlistSegments, i));
+        }
+        return segments;
+    }
+
+    /**
+     * Returns saved playlist of video on demand or fetches playlist from server. Saved playlist
+     * is also used if server isn't available.
+     */
+    private HlsPlaylist loadPlaylist(String url, File groupDirectory) throws ProxyCacheException {
+        File savedFile = new File(groupDirectory, PLAYLIST_FILE_NAME);
+        HlsPlaylist saved = readSavedPlaylist(url, savedFile);
+        if (saved != null && saved.isComplete()) {
+            touchSafely(groupDirectory);
+            return saved;
+        }
+        String content;
+        try {
+            content = fetch(url);
+        } catch (ProxyCacheException e) {
+            if (saved != null) {
+                LOG.warn("Error fetching playlist " + url + ", saved one is used", e);
+                return saved;
+            }
+            throw e;
+        }
+        HlsPlaylist playlist = new HlsPlaylist(url, content);
+        if (playlist.isComplete()) {
+            save(content, groupDirectory, savedFile);
+        }
+        return playlist;
+    }
+
+    private String fetch(String url) throws ProxyCacheException {
+        UrlSource source = config.newSource(url);
+        try {
+            source.open(0);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+            int readBytes;
+            while ((readBytes = source.read(buffer)) != -1) {
+                content.write(buffer, 0, readBytes);
+                if (content.size() > MAX_PLAYLIST_SIZE) {
+                    throw new ProxyCacheException("Playlist " + url + " is too big");
+                }
+            }
+            return content.toString("UTF-8");
+        } catch (IOException e) {
+            throw new ProxyCacheException("Error decoding playlist " + url, e);
+        } finally {
+            source.close();
+        }
+    }
+
+    private HlsPlaylist readSavedPlaylist(String url, File savedFile) {
+        if (!savedFile.exists()) {
+            return null;
+        }
+        try {
+            InputStream in = new FileInputStream(savedFile);
+            try {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+                int readBytes;
+                while ((readBytes = in.read(buffer)) != -1) {
+                    content.write(buffer, 0, readBytes);
+                }
+                return new HlsPlaylist(url, content.toString("UTF-8"));
+            } finally {
+                in.close();
+            }
+        } catch (IOException | ProxyCacheException e) {
+            LOG.warn("Error reading saved playlist " + savedFile, e);
+            return null;
+        }
+    }
+
+    private void save(String content, File groupDirectory, File savedFile) {
+        File tempFile = new File(groupDirectory, PLAYLIST_FILE_NAME + ".tmp");
+        try {
+            if (!groupDirectory.isDirectory() && !groupDirectory.mkdirs()) {
+                throw new IOException("Directory " + groupDirectory + " can't be created");
+            }
+            OutputStream out = new FileOutputStream(tempFile);
+            try {
+                out.write(content.getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(savedFile)) {
+                throw new IOException("Error renaming " + tempFile + " to " + savedFile);
+            }
+            touchSafely(groupDirectory);
+        } catch (IOException e) {
+            LOG.warn("Error saving playlist to " + savedFile, e);
+        }
+    }
+
+    private void touchSafely(File groupDirectory) {
+        try {
+            config.diskUsage.touch(groupDirectory);
+        } catch (IOException e) {
+            LOG.error("Error touching " + groupDirectory, e);
+        }
+    }
+
+    private static final class Segment {
+
+        private final File groupDirectory;
+        private final List<String> playlistSegments;
+        private final int index;
+
+        Segment(File groupDirectory, List<String> playlistSegments, int index) {
+            this.groupDirectory = groupDirectory;
+            this.playlistSegments = playlistSegments;
+            this.index = index;
+        }
+    }
+}
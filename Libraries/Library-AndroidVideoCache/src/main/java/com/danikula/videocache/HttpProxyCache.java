@@ -3,13 +3,20 @@ package com.danikula.videocache;
 import android.text.TextUtils;
 
 import com.danikula.videocache.file.FileCache;
+import com.danikula.videocache.file.SparseFileCache;
 
 import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Locale;
 
+import static com.danikula.videocache.Preconditions.checkNotNull;
 import static com.danikula.videocache.ProxyCacheUtils.DEFAULT_BUFFER_SIZE;
 
 /**
@@ -21,12 +28,17 @@ class HttpProxyCache extends ProxyCache {
 
     private static final float NO_CACHE_BARRIER = .2f;
 
-    private final HttpUrlSource source;
+    private final UrlSource source;
     private final FileCache cache;
     private CacheListener listener;
+    private CacheMetrics metrics = new CacheMetrics();
 
-    public HttpProxyCache(HttpUrlSource source, FileCache cache) {
-        super(source, cache);
+    public HttpProxyCache(UrlSource source, FileCache cache) {
+        this(source, cache, 1);
+    }
+
+    public HttpProxyCache(UrlSource source, FileCache cache, int maxConnections) {
+        super(source, cache, maxConnections);
         this.cache = cache;
         this.source = source;
     }
@@ -35,20 +47,67 @@ class HttpProxyCache extends ProxyCache {
         this.listener = cacheListener;
     }
 
+    void setMetrics(CacheMetrics metrics) {
+        this.metrics = checkNotNull(metrics);
+    }
+
     public void processRequest(GetRequest request, Socket socket) throws IOException,
             ProxyCacheException {
+        CacheMetrics.Tracker tracker = startTracking(request);
+        try {
+            processRequest(request, socket, tracker);
+        } finally {
+            finishTracking(tracker);
+        }
+    }
+
+    /**
+     * Serves request which metrics are collected by {@code tracker} started when request was
+     * received. Caller finishes tracker.
+     */
+    void processRequest(GetRequest request, Socket socket, CacheMetrics.Tracker tracker)
+            throws IOException, ProxyCacheException {
         OutputStream out = new BufferedOutputStream(socket.getOutputStream());
         String responseHeaders = newResponseHeaders(request);
         out.write(responseHeaders.getBytes("UTF-8"));
         long offset = request.rangeOffset;
-        if (isUseCache(request)) {
-            responseWithCache(out, offset);
+        boolean useCache = isUseCache(request);
+        resolveTracking(tracker, request, useCache);
+        if (!useCache) {
+            responseWithoutCache(out, offset, tracker);
+        } else if (socket.getChannel() != null) {
+            out.flush();
+            responseWithCache(socket.getChannel(), offset, tracker);
         } else {
-            responseWithoutCache(out, offset);
+            responseWithCache(out, offset, tracker);
         }
     }
 
-    private boolean isUseCache(GetRequest request) throws ProxyCacheException {
+    /**
+     * Starts collecting metrics of request, must be called as soon as request is received and
+     * followed by {@link #finishTracking(CacheMetrics.Tracker)}.
+     */
+    CacheMetrics.Tracker startTracking(GetRequest request) {
+        return metrics.startRequest(source.getUrl(), request.rangeOffset);
+    }
+
+    /**
+     * Remembers in metrics of request whether cache is used and how many bytes it already has.
+     */
+    void resolveTracking(CacheMetrics.Tracker tracker, GetRequest request, boolean useCache)
+            throws ProxyCacheException {
+        tracker.onCacheResolved(useCache, useCache ? availableFrom(request.rangeOffset) : 0);
+    }
+
+    void finishTracking(CacheMetrics.Tracker tracker) {
+        metrics.finishRequest(tracker);
+    }
+
+    boolean isUseCache(GetRequest request) throws ProxyCacheException {
+        if (cache instanceof SparseFileCache) {
+            // sparse cache stores data from any offset, so seeking doesn't bypass it
+            return true;
+        }
         long sourceLength = source.length();
         boolean sourceLengthKnown = sourceLength > 0;
         long cacheAvailable = cache.available();
@@ -58,7 +117,7 @@ class HttpProxyCache extends ProxyCache {
                 NO_CACHE_BARRIER;
     }
 
-    private String newResponseHeaders(GetRequest request) throws IOException, ProxyCacheException {
+    String newResponseHeaders(GetRequest request) throws IOException, ProxyCacheException {
         String mime = source.getMime();
         boolean mimeKnown = !TextUtils.isEmpty(mime);
         long length = cache.isCompleted() ? cache.available() : source.length();
@@ -77,20 +136,80 @@ class HttpProxyCache extends ProxyCache {
                 .toString();
     }
 
-    private void responseWithCache(OutputStream out, long offset) throws ProxyCacheException,
-            IOException {
+    private void responseWithCache(OutputStream out, long offset, CacheMetrics.Tracker tracker)
+            throws ProxyCacheException, IOException {
         byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
         int readBytes;
         while ((readBytes = read(buffer, offset, buffer.length)) != -1) {
             out.write(buffer, 0, readBytes);
             offset += readBytes;
+            tracker.onBytesServed(readBytes);
         }
         out.flush();
     }
 
-    private void responseWithoutCache(OutputStream out, long offset) throws ProxyCacheException,
-            IOException {
-        HttpUrlSource newSourceNoCache = new HttpUrlSource(this.source);
+    /**
+     * Sends head of file kept in memory tier from memory, other already cached ranges are sent to
+     * socket with {@link FileChannel#transferTo(long, long, WritableByteChannel)}, so data doesn't
+     * pass through java heap. Only data that isn't cached yet is copied to socket while waiting
+     * for source.
+     */
+    private void responseWithCache(WritableByteChannel target, long offset,
+                                   CacheMetrics.Tracker tracker) throws ProxyCacheException, IOException {
+        FileChannel cacheChannel = openCacheChannel();
+        try {
+            byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+            while (true) {
+                int fromMemory = readFromMemory(buffer, offset, buffer.length);
+                if (fromMemory > 0) {
+                    write(target, buffer, fromMemory);
+                    offset += fromMemory;
+                    tracker.onBytesServed(fromMemory);
+                    continue;
+                }
+                long cached = availableFrom(offset);
+                long transferred = cached > 0 ? cacheChannel.transferTo(offset, cached, target) : 0;
+                if (transferred > 0) {
+                    offset += transferred;
+                    tracker.onBytesServed(transferred);
+                    continue;
+                }
+                int readBytes = read(buffer, offset, buffer.length);
+                if (readBytes == -1) {
+                    break;
+                }
+                write(target, buffer, readBytes);
+                offset += readBytes;
+                tracker.onBytesServed(readBytes);
+            }
+        } finally {
+            ProxyCacheUtils.close(cacheChannel);
+        }
+    }
+
+    private void write(WritableByteChannel target, byte[] buffer, int length) throws IOException {
+        ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, length);
+        while (chunk.hasRemaining()) {
+            target.write(chunk);
+        }
+    }
+
+    /**
+     * Opens own read only channel for cache file. Channel stays valid after temp file is renamed on
+     * completion, so it doesn't need synchronization with {@link FileCache}.
+     */
+    FileChannel openCacheChannel() throws IOException {
+        try {
+            return new RandomAccessFile(cache.getFile(), "r").getChannel();
+        } catch (FileNotFoundException e) {
+            // temp file is just renamed to completed one
+            return new RandomAccessFile(cache.getFile(), "r").getChannel();
+        }
+    }
+
+    private void responseWithoutCache(OutputStream out, long offset, CacheMetrics.Tracker tracker)
+            throws ProxyCacheException, IOException {
+        UrlSource newSourceNoCache = source.copy();
         try {
             newSourceNoCache.open((int) offset);
             byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
@@ -98,6 +217,7 @@ class HttpProxyCache extends ProxyCache {
             while ((readBytes = newSourceNoCache.read(buffer)) != -1) {
                 out.write(buffer, 0, readBytes);
                 offset += readBytes;
+                tracker.onBytesServed(readBytes);
             }
             out.flush();
         } finally {
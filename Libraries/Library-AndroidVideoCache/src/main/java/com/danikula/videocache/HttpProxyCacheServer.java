@@ -5,6 +5,7 @@ import android.net.Uri;
 
 import com.danikula.videocache.file.DiskUsage;
 import com.danikula.videocache.file.FileNameGenerator;
+import com.danikula.videocache.file.LruDiskUsage;
 import com.danikula.videocache.file.Md5FileNameGenerator;
 import com.danikula.videocache.file.TotalCountLruDiskUsage;
 import com.danikula.videocache.file.TotalSizeLruDiskUsage;
@@ -19,15 +20,21 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import okhttp3.OkHttpClient;
 
 import static com.danikula.videocache.Preconditions.checkAllNotNull;
 import static com.danikula.videocache.Preconditions.checkNotNull;
@@ -58,32 +65,56 @@ public class HttpProxyCacheServer {
 
     private final Object clientsLock = new Object();
     private final ExecutorService socketProcessor = Executors.newFixedThreadPool(8);
+    // short NIO response preparations and cache releases must not wait behind long blocking
+    // requests of socketProcessor
+    private final ExecutorService responsePreparer = Executors.newCachedThreadPool();
     private final Map<String, HttpProxyCacheServerClients> clientsMap = new ConcurrentHashMap<>();
     private final ServerSocket serverSocket;
+    private final NioProxyServer nioServer;
     private final int port;
     private final Thread waitConnectionThread;
     private final Config config;
     private final Pinger pinger;
+    private final Preloader preloader;
+    private final HlsProxy hlsProxy;
+    private final CacheMetrics metrics = new CacheMetrics();
 
     public HttpProxyCacheServer(Context context) {
         this(new Builder(context).buildConfig());
     }
 
-    private HttpProxyCacheServer(Config config) {
+    HttpProxyCacheServer(Config config) {
         this.config = checkNotNull(config);
+        this.preloader = new Preloader(this, config.preloadConcurrency, config.hlsPrefetchSegments);
+        this.hlsProxy = new HlsProxy(this, config);
+        if (config.diskUsage instanceof LruDiskUsage) {
+            ((LruDiskUsage) config.diskUsage).setEvictionListener(metrics.evictionListener());
+        }
         try {
             InetAddress inetAddress = InetAddress.getByName(PROXY_HOST);
-            this.serverSocket = new ServerSocket(0, 8, inetAddress);
-            this.port = serverSocket.getLocalPort();
-            IgnoreHostProxySelector.install(PROXY_HOST, port);
-            CountDownLatch startSignal = new CountDownLatch(1);
-            this.waitConnectionThread = new Thread(new WaitRequestsRunnable(startSignal));
-            this.waitConnectionThread.start();
-            startSignal.await(); // freeze thread, wait for server starts
+            if (config.nioServer) {
+                this.serverSocket = null;
+                this.waitConnectionThread = null;
+                this.nioServer = new NioProxyServer(this, inetAddress);
+                this.port = nioServer.getPort();
+                IgnoreHostProxySelector.install(PROXY_HOST, port);
+            } else {
+                this.nioServer = null;
+                // socket accepted by channel has its own channel that allows zero-copy responses
+                this.serverSocket = ServerSocketChannel.open().socket();
+                this.serverSocket.bind(new InetSocketAddress(inetAddress, 0), 8);
+                this.port = serverSocket.getLocalPort();
+                IgnoreHostProxySelector.install(PROXY_HOST, port);
+                CountDownLatch startSignal = new CountDownLatch(1);
+                this.waitConnectionThread = new Thread(new WaitRequestsRunnable(startSignal));
+                this.waitConnectionThread.start();
+                startSignal.await(); // freeze thread, wait for server starts
+            }
             this.pinger = new Pinger(PROXY_HOST, port);
             LOG.info("Proxy cache server started. Is it alive? " + isAlive());
         } catch (IOException | InterruptedException e) {
             socketProcessor.shutdown();
+            responsePreparer.shutdown();
             throw new IllegalStateException("Error starting local proxy server", e);
         }
     }
@@ -163,6 +194,67 @@ public class HttpProxyCacheServer {
         }
     }
 
+    /**
+     * Starts downloading first {@code bytes} of url to cache in background, so playback of it
+     * starts instantly. Does nothing if url is already cached or being preloaded.
+     * <p>
+     * Count of urls preloaded simultaneously is limited by
+     * {@link Builder#preloadConcurrency(int)}, other urls wait in queue. Preloading is paused
+     * while any player is served by proxy. Progress is reported to {@link CacheListener}s
+     * registered for url with {@link #registerCacheListener(CacheListener, String)}.
+     *
+     * @param url   an url to be preloaded.
+     * @param bytes count of bytes from the start of file to be preloaded.
+     */
+    public void preload(String url, long bytes) {
+        preloader.preload(url, bytes);
+    }
+
+    /**
+     * Starts preloading of urls in passed order, see {@link #preload(String, long)}.
+     *
+     * @param urls  urls to be preloaded, e.g. next videos of playlist.
+     * @param bytes count of bytes from the start of every file to be preloaded.
+     */
+    public void preload(List<String> urls, long bytes) {
+        checkNotNull(urls);
+        for (String url : urls) {
+            preloader.preload(url, bytes);
+        }
+    }
+
+    /**
+     * Cancels preloading of url. Data that is already downloaded stays in cache.
+     *
+     * @param url an url passed to {@link #preload(String, long)}.
+     */
+    public void cancelPreload(String url) {
+        preloader.cancel(checkNotNull(url));
+    }
+
+    public void cancelAllPreloads() {
+        preloader.cancelAll();
+    }
+
+    /**
+     * Fetches url for player that is going to request it soon, e.g. next HLS segment. Unlike
+     * {@link #preload(String, long)} fetching isn't paused while players are served.
+     */
+    void prefetch(String url) {
+        preloader.prefetch(url);
+    }
+
+    /**
+     * Returns metrics of this server: bytes served from cache and network, requests that used and
+     * bypassed cache, time to first byte, active clients and evicted files. Use
+     * {@link CacheMetrics#snapshot()} to poll metrics or register {@link CacheMetricsListener}.
+     *
+     * @return metrics of server.
+     */
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Checks is cache contains fully cached file for particular url.
      *
@@ -177,10 +269,20 @@ public class HttpProxyCacheServer {
     public void shutdown() {
         LOG.info("Shutdown proxy server");
 
+        preloader.shutdown();
         shutdownClients();
+        if (config.memoryCachePool != null) {
+            config.memoryCachePool.clear();
+        }
 
         config.sourceInfoStorage.release();
 
+        if (nioServer != null) {
+            nioServer.shutdown();
+            socketProcessor.shutdown();
+            responsePreparer.shutdown();
+            return;
+        }
         waitConnectionThread.interrupt();
         try {
             if (!serverSocket.isClosed()) {
@@ -196,24 +298,31 @@ public class HttpProxyCacheServer {
      *
      * @return boolean
      */
-    private boolean isAlive() {
+    boolean isAlive() {
         return pinger.ping(3, 70);   // 70+140+280=max~500ms
     }
 
-    private String appendToProxyUrl(String url) {
+    /**
+     * Returns proxy url without pinging server, caller checks {@link #isAlive()} itself, e.g. once
+     * for all urls of playlist.
+     */
+    String appendToProxyUrl(String url) {
         return String.format(Locale.US, "http://%s:%d/%s", PROXY_HOST, port,
                 ProxyCacheUtils.encode(url));
     }
 
     private File getCacheFile(String url) {
-        File cacheDir = config.cacheRoot;
+        File groupDirectory = hlsProxy.getGroupDirectory(url);
+        File cacheDir = groupDirectory != null ? groupDirectory : config.cacheRoot;
         String fileName = config.fileNameGenerator.generate(url);
         return new File(cacheDir, fileName);
     }
 
     private void touchFileSafely(File cacheFile) {
         try {
-            config.diskUsage.touch(cacheFile);
+            // file of group is touched together with its group
+            boolean grouped = !config.cacheRoot.equals(cacheFile.getParentFile());
+            config.diskUsage.touch(grouped ? cacheFile.getParentFile() : cacheFile);
         } catch (IOException e) {
             LOG.error("Error touching file " + cacheFile, e);
         }
@@ -247,7 +356,10 @@ public class HttpProxyCacheServer {
             String url = ProxyCacheUtils.decode(request.uri);
             if (pinger.isPingRequest(url)) {
                 pinger.responseToPing(socket);
+            } else if (hlsProxy.isPlaylist(url)) {
+                hlsProxy.processPlaylistRequest(url, socket);
             } else {
+                hlsProxy.onMediaRequest(url);
                 HttpProxyCacheServerClients clients = getClients(url);
                 clients.processRequest(request, socket);
             }
@@ -264,18 +376,94 @@ public class HttpProxyCacheServer {
         }
     }
 
-    private HttpProxyCacheServerClients getClients(String url) throws ProxyCacheException {
+    boolean isPingRequest(String url) {
+        return pinger.isPingRequest(url);
+    }
+
+    boolean isPlaylistRequest(String url) {
+        return hlsProxy.isPlaylist(url);
+    }
+
+    void onMediaRequest(String url) {
+        hlsProxy.onMediaRequest(url);
+    }
+
+    /**
+     * Runs blocking preparation of {@link NioProxyServer} response out of selector thread.
+     */
+    void prepareInBackground(Runnable task) {
+        responsePreparer.submit(task);
+    }
+
+    /**
+     * Releases cache of closed {@link NioProxyServer} connection out of selector thread, because
+     * closing of cache syncs file to disk. Task is run by caller if server is already shut down.
+     */
+    void releaseInBackground(Runnable task) {
+        try {
+            responsePreparer.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Serves HLS playlist request of {@link NioProxyServer} in blocking mode.
+     */
+    void processPlaylistInBackground(String url, Socket socket) {
+        socketProcessor.submit(new PlaylistRequestRunnable(url, socket));
+    }
+
+    private void processPlaylistRequest(String url, Socket socket) {
+        try {
+            hlsProxy.processPlaylistRequest(url, socket);
+        } catch (SocketException e) {
+            LOG.debug("Closing socket… Socket is closed by client.");
+        } catch (ProxyCacheException | IOException e) {
+            onError(new ProxyCacheException("Error processing playlist request", e));
+        } finally {
+            releaseSocket(socket);
+        }
+    }
+
+    /**
+     * Serves request of {@link NioProxyServer} that bypasses cache in blocking mode.
+     * Client must be already registered by {@link HttpProxyCacheServerClients#startProcessRequest()},
+     * {@code tracker} started when request was received is finished when request is served.
+     */
+    void processRequestInBackground(HttpProxyCacheServerClients clients, HttpProxyCache proxyCache,
+                                    GetRequest request, CacheMetrics.Tracker tracker, Socket socket) {
+        socketProcessor.submit(new BlockingRequestRunnable(clients, proxyCache, request, tracker, socket));
+    }
+
+    private void processBlockingRequest(HttpProxyCacheServerClients clients, HttpProxyCache proxyCache,
+                                        GetRequest request, CacheMetrics.Tracker tracker, Socket socket) {
+        try {
+            proxyCache.processRequest(request, socket, tracker);
+        } catch (SocketException e) {
+            LOG.debug("Closing socket… Socket is closed by client.");
+        } catch (ProxyCacheException | IOException e) {
+            onError(new ProxyCacheException("Error processing request", e));
+        } finally {
+            proxyCache.finishTracking(tracker);
+            clients.finishProcessRequest();
+            releaseSocket(socket);
+        }
+    }
+
+    HttpProxyCacheServerClients getClients(String url) throws ProxyCacheException {
         synchronized (clientsLock) {
             HttpProxyCacheServerClients clients = clientsMap.get(url);
             if (clients == null) {
-                clients = new HttpProxyCacheServerClients(url, config);
+                clients = new HttpProxyCacheServerClients(url, config, metrics,
+                        hlsProxy.getGroupDirectory(url));
                 clientsMap.put(url, clients);
             }
             return clients;
         }
     }
 
-    private int getClientsCount() {
+    int getClientsCount() {
         synchronized (clientsLock) {
             int count = 0;
             for (HttpProxyCacheServerClients clients : clientsMap.values()) {
@@ -338,12 +526,21 @@ public class HttpProxyCacheServer {
     public static final class Builder {
 
         private static final long DEFAULT_MAX_SIZE = 512 * 1024 * 1024;
+        private static final int DEFAULT_PRELOAD_CONCURRENCY = 2;
+        private static final int DEFAULT_HLS_PREFETCH_SEGMENTS = 2;
 
         private File cacheRoot;
         private FileNameGenerator fileNameGenerator;
         private DiskUsage diskUsage;
         private SourceInfoStorage sourceInfoStorage;
         private HeaderInjector headerInjector;
+        private boolean sparseCache;
+        private boolean nioServer;
+        private int preloadConcurrency = DEFAULT_PRELOAD_CONCURRENCY;
+        private int maxConnectionsPerUrl = 1;
+        private MemoryCachePool memoryCachePool;
+        private int hlsPrefetchSegments = DEFAULT_HLS_PREFETCH_SEGMENTS;
+        private OkHttpClient okHttpClient;
 
         public Builder(Context context) {
             this.sourceInfoStorage = SourceInfoStorageFactory.newSourceInfoStorage(context);
@@ -433,6 +630,130 @@ public class HttpProxyCacheServer {
             return this;
         }
 
+        /**
+         * Enables sparse cache mode.
+         * <p>
+         * In sparse mode data is written at any offset of cache file and downloaded ranges are
+         * stored in index file, so bytes fetched after seeking far ahead are cached too and only
+         * gaps are requested from server. By default cache is filled sequentially and requests
+         * too far from cached prefix bypass cache.
+         * </p>
+         * Note partial (not completed) files of sequential cache are dropped when sparse mode is
+         * enabled.
+         *
+         * @param sparseCache {@code true} to use {@link com.danikula.videocache.file.SparseFileCache}.
+         * @return a builder.
+         */
+        public Builder sparseCache(boolean sparseCache) {
+            this.sparseCache = sparseCache;
+            return this;
+        }
+
+        /**
+         * Enables non-blocking server engine.
+         * <p>
+         * By default every player connection occupies one of 8 threads until it is served, so
+         * 9th player stalls. Non-blocking engine multiplexes all connections on single selector
+         * thread and holds no thread while connection waits for data.
+         * </p>
+         *
+         * @param nioServer {@code true} to use non-blocking engine.
+         * @return a builder.
+         */
+        public Builder nioServer(boolean nioServer) {
+            this.nioServer = nioServer;
+            return this;
+        }
+
+        /**
+         * Makes proxy fetch data with {@link OkHttpUrlSource} using passed client instead of
+         * {@link HttpUrlSource}.
+         * <p>
+         * Client (and its connection pool and dispatcher) is shared by all sources, so repeated
+         * plays of the same host reuse already established connections. Pass
+         * {@link OkHttpUrlSource#getDefaultOkHttpClient()} or app's own client to share its pool
+         * with other requests.
+         * </p>
+         *
+         * @param okHttpClient a client to be used for all requests to servers.
+         * @return a builder.
+         */
+        public Builder okHttpClient(OkHttpClient okHttpClient) {
+            this.okHttpClient = checkNotNull(okHttpClient);
+            return this;
+        }
+
+        /**
+         * Sets max count of urls preloaded simultaneously by {@link #preload(String, long)}.
+         * Default value is 2.
+         *
+         * @param concurrency max count of preloading threads, must be positive.
+         * @return a builder.
+         */
+        public Builder preloadConcurrency(int concurrency) {
+            if (concurrency <= 0) {
+                throw new IllegalArgumentException("Preload concurrency must be positive number!");
+            }
+            this.preloadConcurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Sets max count of connections used to download single url. Default value is 1.
+         * <p>
+         * If value is greater than 1 and server supports byte ranges for url of known length, the
+         * rest of url is split into segments that are downloaded simultaneously and written at
+         * their own offsets of cache file, player still gets data in order. It helps to keep up
+         * with high bitrate video on slow links. Parallel downloading requires sparse cache, so
+         * {@link #sparseCache(boolean)} is enabled by this option.
+         *
+         * @param maxConnections max count of connections per url, must be positive.
+         * @return a builder.
+         */
+        public Builder maxConnectionsPerUrl(int maxConnections) {
+            if (maxConnections <= 0) {
+                throw new IllegalArgumentException("Max connections count must be positive number!");
+            }
+            this.maxConnectionsPerUrl = maxConnections;
+            return this;
+        }
+
+        /**
+         * Enables memory tier in front of file cache. By default memory tier is disabled.
+         * <p>
+         * Heads of files and whole short clips are kept in memory segments shared by all urls, so
+         * they can be served without disk access. When memory budget is exhausted least recently
+         * used urls are evicted from memory, their files stay on disk.
+         *
+         * @param maxSize       max count of bytes kept in memory for all urls.
+         * @param maxSizePerUrl max count of bytes kept in memory for single url.
+         * @return a builder.
+         */
+        public Builder memoryCache(long maxSize, long maxSizePerUrl) {
+            this.memoryCachePool = new MemoryCachePool(maxSize, maxSizePerUrl,
+                    MemoryCachePool.DEFAULT_SEGMENT_SIZE);
+            return this;
+        }
+
+        /**
+         * Sets count of HLS segments preloaded after segment requested by player. Default value
+         * is 2.
+         * <p>
+         * Urls with {@code .m3u8} extension are handled as HLS playlists: they are rewritten, so
+         * player requests all segments through proxy, and segments of playlist are cached
+         * together in its own directory that is evicted from cache at once.
+         *
+         * @param count count of segments to preload, {@code 0} to disable prefetching.
+         * @return a builder.
+         */
+        public Builder hlsPrefetchSegments(int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Count of segments must not be negative!");
+            }
+            this.hlsPrefetchSegments = count;
+            return this;
+        }
+
         /**
          * Builds new instance of {@link HttpProxyCacheServer}.
          *
@@ -445,7 +766,9 @@ public class HttpProxyCacheServer {
 
         private Config buildConfig() {
             return new Config(cacheRoot, fileNameGenerator, diskUsage, sourceInfoStorage,
-                    headerInjector);
+                    headerInjector, sparseCache || maxConnectionsPerUrl > 1, nioServer,
+                    preloadConcurrency, maxConnectionsPerUrl, memoryCachePool, hlsPrefetchSegments,
+                    okHttpClient);
         }
     }
 
@@ -464,6 +787,45 @@ public class HttpProxyCacheServer {
         }
     }
 
+    private final class BlockingRequestRunnable implements Runnable {
+
+        private final HttpProxyCacheServerClients clients;
+        private final HttpProxyCache proxyCache;
+        private final GetRequest request;
+        private final CacheMetrics.Tracker tracker;
+        private final Socket socket;
+
+        public BlockingRequestRunnable(HttpProxyCacheServerClients clients, HttpProxyCache proxyCache,
+                                       GetRequest request, CacheMetrics.Tracker tracker, Socket socket) {
+            this.clients = clients;
+            this.proxyCache = proxyCache;
+            this.request = request;
+            this.tracker = tracker;
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            processBlockingRequest(clients, proxyCache, request, tracker, socket);
+        }
+    }
+
+    private final class PlaylistRequestRunnable implements Runnable {
+
+        private final String url;
+        private final Socket socket;
+
+        public PlaylistRequestRunnable(String url, Socket socket) {
+            this.url = url;
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            processPlaylistRequest(url, socket);
+        }
+    }
+
     private final class SocketProcessorRunnable implements Runnable {
 
         private final Socket socket;
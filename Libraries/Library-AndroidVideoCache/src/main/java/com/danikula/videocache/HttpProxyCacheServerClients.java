@@ -4,7 +4,10 @@ import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 
+import com.danikula.videocache.file.DiskUsage;
 import com.danikula.videocache.file.FileCache;
+import com.danikula.videocache.file.GroupDiskUsage;
+import com.danikula.videocache.file.SparseFileCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -27,31 +30,51 @@ final class HttpProxyCacheServerClients {
     private final List<CacheListener> listeners = new CopyOnWriteArrayList<>();
     private final CacheListener uiCacheListener;
     private final Config config;
+    private final CacheMetrics metrics;
+    private final File groupDirectory;
     private volatile HttpProxyCache proxyCache;
 
-    public HttpProxyCacheServerClients(String url, Config config) {
+    /**
+     * Creates clients of url.
+     *
+     * @param groupDirectory a directory url should be cached in together with other files of
+     *                       group (e.g. segments of HLS stream) or {@code null} to cache url as
+     *                       separate file.
+     */
+    public HttpProxyCacheServerClients(String url, Config config, CacheMetrics metrics,
+                                       File groupDirectory) {
         this.url = checkNotNull(url);
         this.config = checkNotNull(config);
+        this.metrics = checkNotNull(metrics);
+        this.groupDirectory = groupDirectory;
         this.uiCacheListener = new UiListenerHandler(url, listeners);
     }
 
     public void processRequest(GetRequest request, Socket socket) throws ProxyCacheException,
             IOException {
-        startProcessRequest();
+        HttpProxyCache proxyCache = startProcessRequest();
         try {
-            clientsCount.incrementAndGet();
             proxyCache.processRequest(request, socket);
         } finally {
             finishProcessRequest();
         }
     }
 
-    private synchronized void startProcessRequest() throws ProxyCacheException {
+    /**
+     * Registers new client and returns {@link HttpProxyCache} it should be served with. Every
+     * call must be followed by {@link #finishProcessRequest()} when client is served.
+     *
+     * @return a proxy cache for url.
+     * @throws ProxyCacheException if cache can't be created.
+     */
+    synchronized HttpProxyCache startProcessRequest() throws ProxyCacheException {
         proxyCache = proxyCache == null ? newHttpProxyCache() : proxyCache;
+        clientsCount.incrementAndGet();
+        return proxyCache;
     }
 
-    private synchronized void finishProcessRequest() {
-        if (clientsCount.decrementAndGet() <= 0) {
+    synchronized void finishProcessRequest() {
+        if (clientsCount.decrementAndGet() <= 0 && proxyCache != null) {
             proxyCache.shutdown();
             proxyCache = null;
         }
@@ -80,11 +103,21 @@ final class HttpProxyCacheServerClients {
     }
 
     private HttpProxyCache newHttpProxyCache() throws ProxyCacheException {
-        HttpUrlSource source = new HttpUrlSource(url, config.sourceInfoStorage,
-                config.headerInjector);
-        FileCache cache = new FileCache(config.generateCacheFile(url), config.diskUsage);
-        HttpProxyCache httpProxyCache = new HttpProxyCache(source, cache);
+        UrlSource source = config.newSource(url);
+        File cacheFile = groupDirectory != null
+                ? new File(groupDirectory, config.fileNameGenerator.generate(url))
+                : config.generateCacheFile(url);
+        DiskUsage diskUsage = groupDirectory != null
+                ? new GroupDiskUsage(groupDirectory, config.diskUsage) : config.diskUsage;
+        FileCache cache = config.sparseCache ? new SparseFileCache(cacheFile, diskUsage)
+                : new FileCache(cacheFile, diskUsage);
+        if (config.memoryCachePool != null) {
+            cache.setMemoryCache(config.memoryCachePool.get(cacheFile.getName()));
+        }
+        HttpProxyCache httpProxyCache = new HttpProxyCache(source, cache,
+                config.maxConnectionsPerUrl);
         httpProxyCache.registerCacheListener(uiCacheListener);
+        httpProxyCache.setMetrics(metrics);
         return httpProxyCache;
     }
 
@@ -31,7 +31,7 @@ import static java.net.HttpURLConnection.HTTP_SEE_OTHER;
  *
  * @author Alexey Danilov (danikula@gmail.com).
  */
-public class HttpUrlSource implements Source {
+public class HttpUrlSource implements UrlSource {
 
     private static final Logger LOG = LoggerFactory.getLogger("HttpUrlSource");
 
@@ -41,6 +41,10 @@ public class HttpUrlSource implements Source {
     private SourceInfo sourceInfo;
     private HttpURLConnection connection;
     private InputStream inputStream;
+    private volatile boolean rangeSupported;
+    private volatile String ifRange;
+    private volatile String validator;
+    private volatile long responseOffset;
 
     public HttpUrlSource(String url) {
         this(url, SourceInfoStorageFactory.newEmptySourceInfoStorage());
@@ -77,10 +81,20 @@ public class HttpUrlSource implements Source {
     public void open(long offset) throws ProxyCacheException {
         try {
             connection = openConnection(offset, -1);
+            if (connection.getResponseCode() / 100 != 2) {
+                // error body must not be taken for content, cached data stays valid
+                throw new ProxyCacheException("Error opening connection for " + sourceInfo.url
+                        + " with offset " + offset + ": response code " + connection.getResponseCode());
+            }
             String mime = connection.getContentType();
             inputStream = new BufferedInputStream(connection.getInputStream(), DEFAULT_BUFFER_SIZE);
-            long length = readSourceAvailableBytes(connection, offset,
-                    connection.getResponseCode());
+            int responseCode = connection.getResponseCode();
+            long length = readSourceAvailableBytes(connection, offset, responseCode);
+            rangeSupported = responseCode == HTTP_PARTIAL
+                    || "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"));
+            responseOffset = responseCode == HTTP_PARTIAL ? offset : 0;
+            validator = ProxyCacheUtils.getValidator(connection.getHeaderField("ETag"),
+                    connection.getHeaderField("Last-Modified"));
             this.sourceInfo = new SourceInfo(sourceInfo.url, length, mime);
             this.sourceInfoStorage.put(sourceInfo.url, sourceInfo);
         } catch (IOException e) {
@@ -176,6 +190,9 @@ public class HttpUrlSource implements Source {
             injectCustomHeaders(connection, url);
             if (offset > 0) {
                 connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                if (ifRange != null) {
+                    connection.setRequestProperty("If-Range", ifRange);
+                }
             }
             if (timeout > 0) {
                 connection.setConnectTimeout(timeout);
@@ -203,6 +220,12 @@ public class HttpUrlSource implements Source {
         }
     }
 
+    @Override
+    public HttpUrlSource copy() {
+        return new HttpUrlSource(this);
+    }
+
+    @Override
     public synchronized String getMime() throws ProxyCacheException {
         if (TextUtils.isEmpty(sourceInfo.mime)) {
             fetchContentInfo();
@@ -210,6 +233,27 @@ public class HttpUrlSource implements Source {
         return sourceInfo.mime;
     }
 
+    @Override
+    public boolean isRangeSupported() {
+        return rangeSupported;
+    }
+
+    @Override
+    public void setIfRange(String validator) {
+        this.ifRange = validator;
+    }
+
+    @Override
+    public String getValidator() {
+        return validator;
+    }
+
+    @Override
+    public long getResponseOffset() {
+        return responseOffset;
+    }
+
+    @Override
     public String getUrl() {
         return sourceInfo.url;
     }
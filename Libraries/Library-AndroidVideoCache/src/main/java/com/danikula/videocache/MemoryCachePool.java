@@ -0,0 +1,135 @@
+package com.danikula.videocache;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.danikula.videocache.Preconditions.checkArgument;
+import static com.danikula.videocache.Preconditions.checkNotNull;
+
+/**
+ * Memory budget shared by {@link SegmentedMemoryCache}s.
+ * <p>
+ * Caches store data in fixed size segments that are taken from pool and returned to it, so
+ * memory is reused instead of being reallocated for every stream. When budget is exhausted least
+ * recently used caches are evicted.
+ * <p>
+ * All caches of pool are guarded by pool's monitor.
+ */
+public class MemoryCachePool {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private final int segmentSize;
+    private final long maxSize;
+    private final long maxEntrySize;
+    private final ArrayDeque<byte[]> freeSegments = new ArrayDeque<>();
+    private final LinkedHashMap<String, SegmentedMemoryCache> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedSize;
+
+    public MemoryCachePool(long maxSize) {
+        this(maxSize, maxSize, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates pool.
+     *
+     * @param maxSize      max count of bytes all caches can hold.
+     * @param maxEntrySize max count of bytes single cache can hold.
+     * @param segmentSize  size of memory segment in bytes.
+     */
+    public MemoryCachePool(long maxSize, long maxEntrySize, int segmentSize) {
+        checkArgument(segmentSize > 0, "Segment size must be positive number!");
+        checkArgument(maxSize >= segmentSize, "Max size must not be less than segment size!");
+        checkArgument(maxEntrySize > 0, "Max entry size must be positive number!");
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns cache for key creating it if needed and marks it as most recently used.
+     *
+     * @param key a key of cache, e.g. name of cache file.
+     * @return memory cache for key.
+     */
+    public synchronized SegmentedMemoryCache get(String key) {
+        checkNotNull(key);
+        SegmentedMemoryCache cache = entries.get(key);
+        if (cache == null) {
+            cache = new SegmentedMemoryCache(this);
+            entries.put(key, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Evicts cache for key and returns its memory to pool.
+     *
+     * @param key a key of cache.
+     */
+    public synchronized void remove(String key) {
+        SegmentedMemoryCache cache = entries.remove(key);
+        if (cache != null) {
+            cache.evict();
+        }
+    }
+
+    public synchronized void clear() {
+        for (SegmentedMemoryCache cache : entries.values()) {
+            cache.evict();
+        }
+        entries.clear();
+        freeSegments.clear();
+    }
+
+    /**
+     * Returns count of bytes held by all caches of pool.
+     *
+     * @return used memory in bytes.
+     */
+    public synchronized long size() {
+        return usedSize;
+    }
+
+    int segmentSize() {
+        return segmentSize;
+    }
+
+    long maxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Takes free segment for cache, evicting least recently used caches if budget is exhausted.
+     *
+     * @return segment or {@code null} if there is no memory for cache.
+     */
+    byte[] allocate(SegmentedMemoryCache owner) {
+        if (usedSize + segmentSize > maxSize) {
+            Iterator<Map.Entry<String, SegmentedMemoryCache>> lruEntries = entries.entrySet().iterator();
+            while (usedSize + segmentSize > maxSize && lruEntries.hasNext()) {
+                SegmentedMemoryCache cache = lruEntries.next().getValue();
+                if (cache != owner) {
+                    lruEntries.remove();
+                    cache.evict();
+                }
+            }
+            if (usedSize + segmentSize > maxSize) {
+                return null;
+            }
+        }
+        usedSize += segmentSize;
+        byte[] segment = freeSegments.pollFirst();
+        return segment != null ? segment : new byte[segmentSize];
+    }
+
+    void release(List<byte[]> segments) {
+        usedSize -= (long) segments.size() * segmentSize;
+        for (byte[] segment : segments) {
+            freeSegments.addFirst(segment);
+        }
+    }
+}
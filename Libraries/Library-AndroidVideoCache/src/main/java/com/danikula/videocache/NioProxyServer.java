@@ -0,0 +1,484 @@
+package com.danikula.videocache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.danikula.videocache.Preconditions.checkNotNull;
+import static com.danikula.videocache.ProxyCacheUtils.DEFAULT_BUFFER_SIZE;
+
+/**
+ * Non-blocking engine for {@link HttpProxyCacheServer}.
+ * <p>
+ * All player connections are multiplexed by single {@link Selector} thread: request headers are
+ * read without blocking and cached data is sent only when socket is writable, from memory tier of
+ * cache if it holds the data and with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} otherwise. Connection
+ * waiting for data that isn't cached yet is parked until {@link ProxyCache} reports new data
+ * instead of holding a thread. Cache, length of source and response headers can require network
+ * or database, so they are resolved by worker threads and connection is selected again only when
+ * response is ready. Requests that bypass cache and HLS playlists are handed off to blocking
+ * processing of {@link HttpProxyCacheServer}.
+ */
+final class NioProxyServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger("NioProxyServer");
+    private static final int BACKLOG = 50;
+    private static final int REQUEST_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_REQUEST_SIZE = 16 * 1024;
+    private static final int MAX_WRITES_PER_EVENT = 16;
+    private static final int EOF_PROBE_SIZE = 256;
+    private static final long MAX_TRANSFER_SIZE = 256 * 1024;
+    private static final long RESUME_ALL_INTERVAL_MS = 1000;
+    private static final byte[] PING_RESPONSE = "HTTP/1.1 200 OK\n\nping ok".getBytes();
+
+    private final HttpProxyCacheServer server;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread selectorThread;
+    private final Queue<Connection> resumeQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> preparedQueue = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> parkedConnections = new HashSet<>();
+    private final List<Connection> handOffs = new ArrayList<>();
+    private long lastResumeAllTime;
+
+    NioProxyServer(HttpProxyCacheServer server, InetAddress address) throws IOException,
+            InterruptedException {
+        this.server = checkNotNull(server);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().bind(new InetSocketAddress(address, 0), BACKLOG);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        this.selectorThread = new Thread(new SelectorRunnable(startSignal), "NioProxyServer selector");
+        this.selectorThread.start();
+        startSignal.await(); // freeze thread, wait for server starts
+    }
+
+    int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    void shutdown() {
+        selectorThread.interrupt();
+        selector.wakeup();
+    }
+
+    private void loop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select(RESUME_ALL_INTERVAL_MS);
+                resumeConnections();
+                startPreparedResponses();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+                handOffConnections();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            onError(new ProxyCacheException("Error during selecting connections", e));
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        } catch (IOException e) {
+            // There is no way to determine that client closed connection http://stackoverflow
+            // .com/a/10241044/999458
+            // So just to prevent log flooding don't log stacktrace
+            LOG.debug("Closing connection… Socket is closed by client.");
+            connection.close();
+        } catch (ProxyCacheException | RuntimeException e) {
+            onError(new ProxyCacheException("Error processing request", e));
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                LOG.debug("Accept new socket " + channel);
+                channel.configureBlocking(false);
+                Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            }
+        } catch (IOException e) {
+            onError(new ProxyCacheException("Error accepting connection", e));
+        }
+    }
+
+    private void resumeConnections() {
+        Connection connection;
+        while ((connection = resumeQueue.poll()) != null) {
+            connection.resumeScheduled.set(false);
+            resume(connection);
+        }
+        // resume all connections periodically like blocking readers waiting for data do
+        long now = System.currentTimeMillis();
+        if (now - lastResumeAllTime >= RESUME_ALL_INTERVAL_MS) {
+            lastResumeAllTime = now;
+            for (Connection parked : new ArrayList<>(parkedConnections)) {
+                resume(parked);
+            }
+        }
+    }
+
+    private void resume(Connection connection) {
+        if (parkedConnections.remove(connection) && connection.key.isValid()) {
+            connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void startPreparedResponses() {
+        Connection connection;
+        while ((connection = preparedQueue.poll()) != null) {
+            connection.onResponsePrepared();
+        }
+    }
+
+    /**
+     * Switches channels of requests that bypass cache to blocking mode and passes them to
+     * {@link HttpProxyCacheServer}. Channel can be made blocking only after its key is
+     * deregistered by selector, so it is done out of selected keys iteration.
+     */
+    private void handOffConnections() throws IOException {
+        if (handOffs.isEmpty()) {
+            return;
+        }
+        selector.selectNow();
+        for (Connection connection : handOffs) {
+            try {
+                connection.channel.configureBlocking(true);
+                if (connection.clients == null) {
+                    String url = ProxyCacheUtils.decode(connection.request.uri);
+                    server.processPlaylistInBackground(url, connection.channel.socket());
+                } else {
+                    server.processRequestInBackground(connection.clients, connection.proxyCache,
+                            connection.request, connection.tracker, connection.channel.socket());
+                }
+            } catch (IOException e) {
+                onError(new ProxyCacheException("Error handing off connection", e));
+                connection.close();
+            }
+        }
+        handOffs.clear();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        ProxyCacheUtils.close(serverChannel);
+        ProxyCacheUtils.close(selector);
+    }
+
+    private void onError(Throwable e) {
+        LOG.error("NioProxyServer error", e);
+    }
+
+    private final class Connection implements SourceDataListener {
+
+        private final SocketChannel channel;
+        private final AtomicBoolean resumeScheduled = new AtomicBoolean();
+        private final byte[] data = new byte[DEFAULT_BUFFER_SIZE];
+        // data backs response buffer that can still hold unsent bytes, so input is never read to it
+        private final ByteBuffer eofProbe = ByteBuffer.allocate(EOF_PROBE_SIZE);
+        private SelectionKey key;
+        private ByteBuffer requestBuffer = ByteBuffer.allocate(REQUEST_BUFFER_SIZE);
+        private ByteBuffer responseBuffer;
+        private GetRequest request;
+        private HttpProxyCacheServerClients clients;
+        private HttpProxyCache proxyCache;
+        private CacheMetrics.Tracker tracker;
+        private FileChannel cacheChannel;
+        private Exception prepareError; // written by worker before connection is queued as prepared
+        private boolean useCache;
+        private long offset;
+        private boolean closeAfterFlush;
+        private boolean preparing;
+        private boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void onReadable() throws IOException, ProxyCacheException {
+            if (request != null) {
+                // request is already read, just detect closing by client
+                eofProbe.clear();
+                if (channel.read(eofProbe) == -1) {
+                    close();
+                }
+                return;
+            }
+            if (!requestBuffer.hasRemaining()) {
+                if (requestBuffer.capacity() >= MAX_REQUEST_SIZE) {
+                    throw new ProxyCacheException("Too long request from " + channel);
+                }
+                ByteBuffer bigger = ByteBuffer.allocate(requestBuffer.capacity() * 2);
+                requestBuffer.flip();
+                bigger.put(requestBuffer);
+                requestBuffer = bigger;
+            }
+            if (channel.read(requestBuffer) == -1) {
+                close();
+                return;
+            }
+            int headersEnd = findHeadersEnd(requestBuffer.array(), requestBuffer.position());
+            if (headersEnd > 0) {
+                String headers = new String(requestBuffer.array(), 0, headersEnd, "UTF-8");
+                requestBuffer = null;
+                startResponse(new GetRequest(headers));
+            }
+        }
+
+        private int findHeadersEnd(byte[] bytes, int length) {
+            for (int i = 1; i < length; i++) {
+                if (bytes[i] == '\n' && (bytes[i - 1] == '\n'
+                        || (i >= 3 && bytes[i - 1] == '\r' && bytes[i - 2] == '\n'))) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private void startResponse(GetRequest request) throws IOException, ProxyCacheException {
+            LOG.debug("Request to cache proxy:" + request);
+            this.request = request;
+            String url = ProxyCacheUtils.decode(request.uri);
+            if (server.isPingRequest(url)) {
+                responseBuffer = ByteBuffer.wrap(PING_RESPONSE);
+                closeAfterFlush = true;
+            } else if (server.isPlaylistRequest(url)) {
+                key.cancel();
+                handOffs.add(this);
+                return;
+            } else {
+                // connection isn't selected at all until worker prepares response
+                preparing = true;
+                key.interestOps(0);
+                server.prepareInBackground(new PrepareResponseRunnable(this));
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Resolves cache, length of source and response headers. Called by worker thread, so
+         * it can block on network and database without stalling other connections.
+         */
+        void prepareResponse() {
+            try {
+                String url = ProxyCacheUtils.decode(request.uri);
+                server.onMediaRequest(url);
+                clients = server.getClients(url);
+                proxyCache = clients.startProcessRequest();
+                tracker = proxyCache.startTracking(request);
+                proxyCache.resolveSourceLength();
+                useCache = proxyCache.isUseCache(request);
+                proxyCache.resolveTracking(tracker, request, useCache);
+                if (useCache) {
+                    cacheChannel = proxyCache.openCacheChannel();
+                    responseBuffer = ByteBuffer.wrap(proxyCache.newResponseHeaders(request).getBytes("UTF-8"));
+                    offset = request.rangeOffset;
+                }
+            } catch (ProxyCacheException | IOException | RuntimeException e) {
+                prepareError = e;
+            }
+            preparedQueue.add(this);
+            selector.wakeup();
+        }
+
+        void onResponsePrepared() {
+            preparing = false;
+            if (closed) {
+                releaseInBackground(); // client is gone while response was prepared
+                return;
+            }
+            if (prepareError != null) {
+                onError(new ProxyCacheException("Error processing request", prepareError));
+                close();
+                return;
+            }
+            if (!useCache) {
+                key.cancel();
+                handOffs.add(this);
+                return;
+            }
+            proxyCache.addSourceDataListener(this);
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        void onWritable() throws IOException, ProxyCacheException {
+            for (int i = 0; i < MAX_WRITES_PER_EVENT && !closed; i++) {
+                if (!responseBuffer.hasRemaining()) {
+                    if (closeAfterFlush) {
+                        close();
+                        return;
+                    }
+                    int read = proxyCache.readFromMemory(data, offset, data.length);
+                    if (read == 0) {
+                        // locks of cache are held by writer while it syncs file, so only
+                        // lock-free queries are used here and data is read by channel
+                        long cached = proxyCache.availableOrFetch(offset);
+                        if (cached < 0) {
+                            close();
+                            return;
+                        }
+                        if (cached == 0) {
+                            park();
+                            return;
+                        }
+                        cached = Math.min(cached, MAX_TRANSFER_SIZE);
+                        long transferred = cacheChannel.transferTo(offset, cached, channel);
+                        offset += transferred;
+                        tracker.onBytesServed(transferred);
+                        if (transferred < cached) {
+                            return; // socket buffer is full, wait for next OP_WRITE
+                        }
+                        continue;
+                    }
+                    offset += read;
+                    tracker.onBytesServed(read);
+                    responseBuffer = ByteBuffer.wrap(data, 0, read);
+                }
+                channel.write(responseBuffer);
+                if (responseBuffer.hasRemaining()) {
+                    return; // socket buffer is full, wait for next OP_WRITE
+                }
+            }
+        }
+
+        private void park() {
+            key.interestOps(SelectionKey.OP_READ);
+            parkedConnections.add(this);
+        }
+
+        @Override
+        public void onSourceDataAvailable() {
+            if (resumeScheduled.compareAndSet(false, true)) {
+                resumeQueue.add(this);
+                selector.wakeup();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            parkedConnections.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            if (!preparing) {
+                releaseInBackground(); // otherwise worker still uses cache, it is released when prepared
+            }
+            ProxyCacheUtils.close(channel);
+            LOG.debug("Opened connections: " + (selector.keys().size() - 1));
+        }
+
+        /**
+         * Releasing of cache can close it and sync file to disk, so it isn't done by selector thread.
+         */
+        private void releaseInBackground() {
+            server.releaseInBackground(new ReleaseCacheRunnable(this));
+        }
+
+        void releaseCache() {
+            ProxyCacheUtils.close(cacheChannel);
+            if (tracker != null) {
+                proxyCache.finishTracking(tracker);
+            }
+            if (proxyCache != null) {
+                proxyCache.removeSourceDataListener(this);
+                clients.finishProcessRequest();
+            }
+        }
+    }
+
+    private final class PrepareResponseRunnable implements Runnable {
+
+        private final Connection connection;
+
+        public PrepareResponseRunnable(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void run() {
+            connection.prepareResponse();
+        }
+    }
+
+    private final class ReleaseCacheRunnable implements Runnable {
+
+        private final Connection connection;
+
+        public ReleaseCacheRunnable(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void run() {
+            connection.releaseCache();
+        }
+    }
+
+    private final class SelectorRunnable implements Runnable {
+
+        private final CountDownLatch startSignal;
+
+        public SelectorRunnable(CountDownLatch startSignal) {
+            this.startSignal = startSignal;
+        }
+
+        @Override
+        public void run() {
+            startSignal.countDown();
+            loop();
+        }
+    }
+}
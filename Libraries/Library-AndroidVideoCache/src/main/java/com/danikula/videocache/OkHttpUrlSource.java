@@ -2,6 +2,8 @@ package com.danikula.videocache;
 
 import android.text.TextUtils;
 
+import com.danikula.videocache.headers.EmptyHeadersInjector;
+import com.danikula.videocache.headers.HeaderInjector;
 import com.danikula.videocache.sourcestorage.SourceInfoStorage;
 import com.danikula.videocache.sourcestorage.SourceInfoStorageFactory;
 
@@ -9,6 +11,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.util.Map;
 
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
@@ -22,27 +25,43 @@ import static java.net.HttpURLConnection.HTTP_PARTIAL;
 
 /**
  * 这个是实现Source的不同策略模式，与HttpUrlSource同级,用来替换HttpUrlSource
+ * <p>
+ * 所有实例默认共用同一个{@link OkHttpClient}（连接池和dispatcher），重复播放时可以复用已建立的连接，
+ * 也可以通过{@link HttpProxyCacheServer.Builder#okHttpClient(OkHttpClient)}指定
  *
  * @author YobertJomi
  * className OkHttpUrlSource
  * created at  2017/9/4  17:53
  */
-public class OkHttpUrlSource implements Source {
+public class OkHttpUrlSource implements UrlSource {
 
     private static final String TAG = OkHttpUrlSource.class.getSimpleName();
     private static final int MAX_REDIRECTS = 5;
+    private static volatile OkHttpClient defaultOkHttpClient;
     private final SourceInfoStorage sourceInfoStorage;
+    private final HeaderInjector headerInjector;
+    private final OkHttpClient okHttpClient;
     private SourceInfo sourceInfo;
-    private OkHttpClient okHttpClient = new OkHttpClient();
     private Call requestCall = null;
     private InputStream inputStream;
+    private volatile boolean rangeSupported;
+    private volatile String ifRange;
+    private volatile String validator;
+    private volatile long responseOffset;
 
     public OkHttpUrlSource(String url) {
         this(url, SourceInfoStorageFactory.newEmptySourceInfoStorage());
     }
 
     public OkHttpUrlSource(String url, SourceInfoStorage sourceInfoStorage) {
+        this(url, sourceInfoStorage, new EmptyHeadersInjector(), getDefaultOkHttpClient());
+    }
+
+    public OkHttpUrlSource(String url, SourceInfoStorage sourceInfoStorage,
+                           HeaderInjector headerInjector, OkHttpClient okHttpClient) {
         this.sourceInfoStorage = checkNotNull(sourceInfoStorage);
+        this.headerInjector = checkNotNull(headerInjector);
+        this.okHttpClient = checkNotNull(okHttpClient);
         SourceInfo sourceInfo = sourceInfoStorage.get(url);
         this.sourceInfo = sourceInfo != null ? sourceInfo :
                 new SourceInfo(url, Integer.MIN_VALUE, ProxyCacheUtils.getSupposablyMime(url));
@@ -51,6 +70,24 @@ public class OkHttpUrlSource implements Source {
     public OkHttpUrlSource(OkHttpUrlSource source) {
         this.sourceInfo = source.sourceInfo;
         this.sourceInfoStorage = source.sourceInfoStorage;
+        this.headerInjector = source.headerInjector;
+        this.okHttpClient = source.okHttpClient;
+    }
+
+    /**
+     * 所有未指定client的OkHttpUrlSource共用的client，避免每次播放都新建连接池和线程
+     *
+     * @return OkHttpClient
+     */
+    public static OkHttpClient getDefaultOkHttpClient() {
+        if (defaultOkHttpClient == null) {
+            synchronized (OkHttpUrlSource.class) {
+                if (defaultOkHttpClient == null) {
+                    defaultOkHttpClient = new OkHttpClient();
+                }
+            }
+        }
+        return defaultOkHttpClient;
     }
 
     @Override
@@ -65,10 +102,21 @@ public class OkHttpUrlSource implements Source {
     public void open(long offset) throws ProxyCacheException {
         try {
             Response response = openConnection(offset, -1);
+            if (!response.isSuccessful()) {
+                // error body must not be taken for content, cached data stays valid
+                response.close();
+                throw new ProxyCacheException("Error opening okHttpClient for " + sourceInfo.url
+                        + " with offset " + offset + ": response code " + response.code());
+            }
             String mime = response.header("Content-Type");
             this.inputStream = new BufferedInputStream(response.body().byteStream(),
                     DEFAULT_BUFFER_SIZE);
             long length = readSourceAvailableBytes(response, offset, response.code());
+            rangeSupported = response.code() == HTTP_PARTIAL
+                    || "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+            responseOffset = response.code() == HTTP_PARTIAL ? offset : 0;
+            validator = ProxyCacheUtils.getValidator(response.header("ETag"),
+                    response.header("Last-Modified"));
             this.sourceInfo = new SourceInfo(sourceInfo.url, length, mime);
             this.sourceInfoStorage.put(sourceInfo.url, sourceInfo);
         } catch (IOException e) {
@@ -158,11 +206,11 @@ public class OkHttpUrlSource implements Source {
         int redirectCount = 0;
         do {
             //只返回头部，不需要BODY，既可以提高响应速度也可以减少网络流量
-            Request request = new Request.Builder()
+            Request.Builder requestBuilder = new Request.Builder()
                     .head()
-                    .url(newUrl)
-                    .build();
-            requestCall = okHttpClient.newCall(request);
+                    .url(newUrl);
+            injectCustomHeaders(requestBuilder, newUrl);
+            requestCall = okHttpClient.newCall(requestBuilder.build());
             response = requestCall.execute();
             if (response.isRedirect()) {
                 newUrl = response.header("Location");
@@ -198,8 +246,12 @@ public class OkHttpUrlSource implements Source {
             Request.Builder requestBuilder = new Request.Builder()
                     .get()
                     .url(newUrl);
+            injectCustomHeaders(requestBuilder, newUrl);
             if (offset > 0) {
                 requestBuilder.addHeader("Range", "bytes=" + offset + "-");
+                if (ifRange != null) {
+                    requestBuilder.addHeader("If-Range", ifRange);
+                }
             }
             requestCall = okHttpClient.newCall(requestBuilder.build());
             response = requestCall.execute();
@@ -216,6 +268,19 @@ public class OkHttpUrlSource implements Source {
         return response;
     }
 
+    private void injectCustomHeaders(Request.Builder requestBuilder, String url) {
+        Map<String, String> extraHeaders = headerInjector.addHeaders(url);
+        for (Map.Entry<String, String> header : extraHeaders.entrySet()) {
+            requestBuilder.header(header.getKey(), header.getValue());
+        }
+    }
+
+    @Override
+    public OkHttpUrlSource copy() {
+        return new OkHttpUrlSource(this);
+    }
+
+    @Override
     public synchronized String getMime() throws ProxyCacheException {
         if (TextUtils.isEmpty(sourceInfo.mime)) {
             fetchContentInfo();
@@ -223,6 +288,27 @@ public class OkHttpUrlSource implements Source {
         return sourceInfo.mime;
     }
 
+    @Override
+    public boolean isRangeSupported() {
+        return rangeSupported;
+    }
+
+    @Override
+    public void setIfRange(String validator) {
+        this.ifRange = validator;
+    }
+
+    @Override
+    public String getValidator() {
+        return validator;
+    }
+
+    @Override
+    public long getResponseOffset() {
+        return responseOffset;
+    }
+
+    @Override
     public String getUrl() {
         return sourceInfo.url;
     }
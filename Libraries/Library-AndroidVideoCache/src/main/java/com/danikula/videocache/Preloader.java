@@ -0,0 +1,210 @@
+package com.danikula.videocache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.danikula.videocache.Preconditions.checkArgument;
+import static com.danikula.videocache.Preconditions.checkNotNull;
+import static com.danikula.videocache.ProxyCacheUtils.DEFAULT_BUFFER_SIZE;
+
+/**
+ * Warms cache of {@link HttpProxyCacheServer} before playback.
+ * <p>
+ * Downloads first bytes of urls with bounded count of background threads. Preloading shares
+ * {@link HttpProxyCacheServerClients} with players, so data is fetched by the same
+ * {@link ProxyCache} and is reported to registered {@link CacheListener}s. While any player is
+ * served preloading releases its source and waits, so it doesn't compete with foreground
+ * streams for bandwidth.
+ * <p>
+ * Prefetching is a part of foreground playback, e.g. segments of HLS playlist following played
+ * one: it has its own threads and doesn't pause while players are served.
+ */
+final class Preloader {
+
+    private static final Logger LOG = LoggerFactory.getLogger("Preloader");
+    private static final long FOREGROUND_CHECK_INTERVAL_MS = 250;
+
+    private final HttpProxyCacheServer server;
+    private final ExecutorService preloadExecutor;
+    private final ExecutorService prefetchExecutor;
+    private final ConcurrentMap<String, PreloadTask> tasks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PreloadTask> prefetches = new ConcurrentHashMap<>();
+    private final AtomicInteger activePreloads = new AtomicInteger(0);
+    private final Object foregroundLock = new Object();
+
+    Preloader(HttpProxyCacheServer server, int concurrency, int prefetchConcurrency) {
+        checkArgument(concurrency > 0, "Preload concurrency must be positive number!");
+        this.server = checkNotNull(server);
+        this.preloadExecutor = new ThreadPoolExecutor(concurrency, concurrency, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        int prefetchThreads = Math.max(1, prefetchConcurrency);
+        this.prefetchExecutor = new ThreadPoolExecutor(prefetchThreads, prefetchThreads, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+    }
+
+    void preload(String url, long bytes) {
+        checkNotNull(url);
+        checkArgument(bytes > 0, "Bytes to preload must be positive number!");
+        if (server.isCached(url) || tasks.containsKey(url)) {
+            return;
+        }
+        PreloadTask task = new PreloadTask(url, bytes, false);
+        tasks.put(url, task);
+        preloadExecutor.submit(task);
+    }
+
+    /**
+     * Fetches whole url without pausing for players, see {@link Preloader}.
+     */
+    void prefetch(String url) {
+        checkNotNull(url);
+        if (server.isCached(url) || prefetches.containsKey(url)) {
+            return;
+        }
+        PreloadTask task = new PreloadTask(url, Long.MAX_VALUE, true);
+        if (prefetches.putIfAbsent(url, task) == null) {
+            prefetchExecutor.submit(task);
+        }
+    }
+
+    void cancel(String url) {
+        PreloadTask task = tasks.remove(url);
+        if (task != null) {
+            task.cancelled = true;
+            wakeUpPaused();
+        }
+    }
+
+    void cancelAll() {
+        for (String url : tasks.keySet()) {
+            cancel(url);
+        }
+    }
+
+    void shutdown() {
+        cancelAll();
+        for (PreloadTask task : prefetches.values()) {
+            task.cancelled = true;
+        }
+        preloadExecutor.shutdownNow();
+        prefetchExecutor.shutdownNow();
+    }
+
+    private boolean isForegroundActive() {
+        return server.getClientsCount() - activePreloads.get() > 0;
+    }
+
+    private void wakeUpPaused() {
+        synchronized (foregroundLock) {
+            foregroundLock.notifyAll();
+        }
+    }
+
+    private void awaitForegroundIdle(PreloadTask task) throws InterruptedException {
+        synchronized (foregroundLock) {
+            while (!task.cancelled && !task.foreground && isForegroundActive()) {
+                foregroundLock.wait(FOREGROUND_CHECK_INTERVAL_MS);
+            }
+        }
+    }
+
+    private void preload(PreloadTask task) throws ProxyCacheException, InterruptedException {
+        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+        long offset = 0;
+        while (offset < task.bytes && !task.cancelled) {
+            awaitForegroundIdle(task);
+            if (task.cancelled) {
+                return;
+            }
+            offset = preloadUntilForeground(task, offset, buffer);
+            if (offset < 0) {
+                return; // source is fully read
+            }
+        }
+        LOG.debug((task.foreground ? "Prefetching" : "Preloading") + " of " + task.url + " is "
+                + (task.cancelled ? "cancelled" : "finished"));
+    }
+
+    /**
+     * Fetches data until preloaded enough or some player starts streaming. Prefetching is counted
+     * as foreground client and isn't stopped by players.
+     *
+     * @return reached offset or {@code -1} if there is no more data in source.
+     */
+    private long preloadUntilForeground(PreloadTask task, long offset, byte[] buffer) throws
+            ProxyCacheException {
+        boolean background = !task.foreground;
+        // count preload before registering it as client, so it is never taken for foreground one
+        if (background) {
+            activePreloads.incrementAndGet();
+        }
+        HttpProxyCacheServerClients clients;
+        HttpProxyCache proxyCache;
+        try {
+            clients = server.getClients(task.url);
+            proxyCache = clients.startProcessRequest();
+        } catch (ProxyCacheException e) {
+            if (background) {
+                activePreloads.decrementAndGet();
+            }
+            throw e;
+        }
+        try {
+            while (offset < task.bytes && !task.cancelled && !(background && isForegroundActive())) {
+                long cached = proxyCache.availableFrom(offset);
+                if (cached > 0) {
+                    offset += cached;
+                    continue;
+                }
+                int readBytes = proxyCache.read(buffer, offset, buffer.length);
+                if (readBytes == -1) {
+                    return -1;
+                }
+                offset += readBytes;
+            }
+            return offset;
+        } finally {
+            if (background) {
+                activePreloads.decrementAndGet();
+            }
+            clients.finishProcessRequest();
+        }
+    }
+
+    private final class PreloadTask implements Runnable {
+
+        private final String url;
+        private final long bytes;
+        private final boolean foreground;
+        private volatile boolean cancelled;
+
+        PreloadTask(String url, long bytes, boolean foreground) {
+            this.url = url;
+            this.bytes = bytes;
+            this.foreground = foreground;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!cancelled) {
+                    preload(this);
+                }
+            } catch (ProxyCacheException e) {
+                LOG.error("Error preloading " + url, e);
+            } catch (InterruptedException e) {
+                LOG.debug("Preloading of " + url + " is interrupted");
+            } finally {
+                (foreground ? prefetches : tasks).remove(url, this);
+            }
+        }
+    }
+}
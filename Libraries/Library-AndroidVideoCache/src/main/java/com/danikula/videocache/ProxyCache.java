@@ -1,10 +1,20 @@
 package com.danikula.videocache;
 
+import com.danikula.videocache.file.FileCache;
+import com.danikula.videocache.file.SparseFileCache;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.danikula.videocache.Preconditions.checkArgument;
 import static com.danikula.videocache.Preconditions.checkNotNull;
 
 /**
@@ -20,28 +30,68 @@ class ProxyCache {
 
     private static final Logger LOG = LoggerFactory.getLogger("ProxyCache");
     private static final int MAX_READ_SOURCE_ATTEMPTS = 1;
+    // waiters are woken by written data, timeout just guards against missed signal
+    private static final long MAX_WAIT_SOURCE_DATA_MS = 1000;
+    // reopen source after seek only if requested position is farther than this from reading one
+    private static final long SEEK_TOLERANCE = 512 * 1024;
+    // skip already cached range with new connection only if it is longer than this
+    private static final long SKIP_CACHED_THRESHOLD = 512 * 1024;
+    // don't split source into segments shorter than this, new connection isn't worth it
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
 
     private final Source source;
     private final Cache cache;
+    private final FileCache fileCache;
+    private final SparseFileCache sparseCache;
     private final Object wc = new Object();
+    private final TreeMap<Long, List<DataWaiter>> waiters = new TreeMap<>(); // guarded by wc
     private final Object stopLock = new Object();
     private final AtomicInteger readSourceErrorsCount;
+    private final List<SourceDataListener> dataListeners = new CopyOnWriteArrayList<>();
+    private final List<SegmentReaderRunnable> segmentReaders = new CopyOnWriteArrayList<>();
+    private final int maxConnections;
     private volatile Thread sourceReaderThread;
     private volatile boolean stopped;
     private volatile int percentsAvailable = -1;
+    private volatile long requestedOffset;
+    // length known without request to source, non-blocking readers never ask source itself
+    private volatile long knownSourceLength = -1;
+    // partially cached data is served only after source confirms it isn't changed
+    private volatile boolean revalidated;
 
     public ProxyCache(Source source, Cache cache) {
+        this(source, cache, 1);
+    }
+
+    /**
+     * Creates proxy that can fetch source with several connections at once. Parallel fetching is
+     * used only for {@link SparseFileCache} and {@link UrlSource} of known length served with
+     * support of byte ranges, otherwise source is read by single connection.
+     *
+     * @param maxConnections max count of connections to source used to fill the cache.
+     */
+    public ProxyCache(Source source, Cache cache, int maxConnections) {
+        checkArgument(maxConnections > 0, "Max connections count must be positive number!");
         this.source = checkNotNull(source);
         this.cache = checkNotNull(cache);
+        this.maxConnections = maxConnections;
+        this.fileCache = cache instanceof FileCache ? (FileCache) cache : null;
+        this.sparseCache = cache instanceof SparseFileCache ? (SparseFileCache) cache : null;
         this.readSourceErrorsCount = new AtomicInteger();
+        this.revalidated = !(source instanceof UrlSource) || fileCache == null
+                || fileCache.isCompleted();
     }
 
     public int read(byte[] buffer, long offset, int length) throws ProxyCacheException {
         ProxyCacheUtils.assertBuffer(buffer, offset, length);
+        awaitRevalidation();
+        if (sparseCache != null) {
+            return readSparse(buffer, offset, length);
+        }
 
         while (!cache.isCompleted() && cache.available() < (offset + length) && !stopped) {
             readSourceAsync();
-            waitForSourceData();
+            waitForSourceData(offset + length - 1);
             checkReadSourceErrorsCount();
         }
         int read = cache.read(buffer, offset, length);
@@ -52,6 +102,141 @@ class ProxyCache {
         return read;
     }
 
+    /**
+     * Non-blocking counterpart of {@link #read(byte[], long, int)} for readers that transfer data
+     * from cache file themselves. Doesn't take lock of cache, because writer can hold it while
+     * syncing file to disk, and starts fetching source if data isn't cached yet. End of source is
+     * detected only if its length is already known, see {@link #resolveSourceLength()}.
+     *
+     * @param offset an offset in source.
+     * @return count of contiguous cached bytes, {@code 0} if data isn't cached yet or {@code -1}
+     * if there is no more data.
+     * @throws ProxyCacheException if source can't be read.
+     */
+    public long availableOrFetch(long offset) throws ProxyCacheException {
+        checkReadSourceErrorsCount();
+        long cached = availableFrom(offset);
+        if (cached > 0) {
+            return cached;
+        }
+        if (cache.isCompleted()) {
+            return -1;
+        }
+        if (!revalidated) {
+            readSourceAsync();
+            return 0;
+        }
+        long sourceLength = knownSourceLength;
+        if (stopped || (sourceLength >= 0 && offset >= sourceLength)) {
+            return -1;
+        }
+        requestedOffset = offset;
+        readSourceAsync();
+        return 0;
+    }
+
+    /**
+     * Reads already cached data from memory tier of cache without touching file or source.
+     *
+     * @return count of read bytes, {@code 0} if data at {@code offset} isn't in memory.
+     * @throws ProxyCacheException if buffer is too small.
+     */
+    public int readFromMemory(byte[] buffer, long offset, int length) throws ProxyCacheException {
+        if (fileCache == null || !revalidated) {
+            return 0;
+        }
+        return fileCache.readFromMemory(buffer, offset, length);
+    }
+
+    /**
+     * Returns count of bytes starting exactly from {@code offset} that are already cached and can
+     * be served without waiting for source.
+     *
+     * @param offset an offset in source.
+     * @return count of contiguous cached bytes.
+     * @throws ProxyCacheException if cache can't be accessed.
+     */
+    public long availableFrom(long offset) throws ProxyCacheException {
+        if (cache.isCompleted()) {
+            notifyCompletedPercents();
+            return Math.max(0, cache.available() - offset);
+        }
+        if (!revalidated) {
+            return 0;
+        }
+        return sparseCache != null ? sparseCache.availableFrom(offset)
+                : Math.max(0, cache.available() - offset);
+    }
+
+    /**
+     * Requests length of source if it isn't known yet and remembers it for
+     * {@link #availableOrFetch(long)}. Can block on network, so it must not be called by
+     * non-blocking readers.
+     *
+     * @return length of source or {@code -1} if it is unknown.
+     * @throws ProxyCacheException if source can't be requested.
+     */
+    public long resolveSourceLength() throws ProxyCacheException {
+        long length = source.length();
+        knownSourceLength = length;
+        return length;
+    }
+
+    private void notifyCompletedPercents() {
+        if (percentsAvailable != 100) {
+            percentsAvailable = 100;
+            onCachePercentsAvailableChanged(100);
+        }
+    }
+
+    public void addSourceDataListener(SourceDataListener listener) {
+        dataListeners.add(checkNotNull(listener));
+    }
+
+    public void removeSourceDataListener(SourceDataListener listener) {
+        dataListeners.remove(listener);
+    }
+
+    private int readSparse(byte[] buffer, long offset, int length) throws ProxyCacheException {
+        while (!cache.isCompleted() && sparseCache.availableFrom(offset) <= 0 && !stopped) {
+            long sourceLength = source.length();
+            if (sourceLength >= 0 && offset >= sourceLength) {
+                return -1;
+            }
+            requestedOffset = offset;
+            readSourceAsync();
+            waitForSourceData(offset);
+            checkReadSourceErrorsCount();
+        }
+        if (cache.isCompleted()) {
+            notifyCompletedPercents();
+            return cache.read(buffer, offset, length);
+        }
+        long cached = sparseCache.availableFrom(offset);
+        // never read holes of sparse file: they contain zeros instead of data
+        return cached <= 0 ? -1 : cache.read(buffer, offset, (int) Math.min(length, cached));
+    }
+
+    /**
+     * Blocks until source is opened and already cached data is confirmed or discarded. If source
+     * can't be opened cached data is trusted, so it is still served without network.
+     */
+    private void awaitRevalidation() throws ProxyCacheException {
+        while (!revalidated && !cache.isCompleted() && !stopped) {
+            readSourceAsync();
+            // there is no such position, waiter is woken by revalidation or timeout only
+            waitForSourceData(Long.MAX_VALUE);
+        }
+    }
+
+    private void onRevalidated() {
+        if (!revalidated) {
+            revalidated = true;
+            notifyAllWaiters();
+            notifyDataListeners();
+        }
+    }
+
     private void checkReadSourceErrorsCount() throws ProxyCacheException {
         int errorsCount = readSourceErrorsCount.get();
         if (errorsCount >= MAX_READ_SOURCE_ATTEMPTS) {
@@ -65,9 +250,13 @@ class ProxyCache {
             LOG.debug("Shutdown proxy for " + source);
             try {
                 stopped = true;
+                notifyAllWaiters();
                 if (sourceReaderThread != null) {
                     sourceReaderThread.interrupt();
                 }
+                for (SegmentReaderRunnable segmentReader : segmentReaders) {
+                    segmentReader.interrupt();
+                }
                 cache.close();
             } catch (ProxyCacheException e) {
                 onError(e);
@@ -86,21 +275,103 @@ class ProxyCache {
         }
     }
 
-    private void waitForSourceData() throws ProxyCacheException {
+    /**
+     * Blocks until byte at {@code position} is written to cache or source reading is finished.
+     * Only readers waiting for written bytes are woken, so several readers of different positions
+     * don't wake up each other on every written chunk.
+     */
+    private void waitForSourceData(long position) throws ProxyCacheException {
+        DataWaiter waiter = new DataWaiter();
         synchronized (wc) {
-            try {
-                wc.wait(1000);
-            } catch (InterruptedException e) {
-                throw new ProxyCacheException("Waiting source data is interrupted!", e);
+            List<DataWaiter> positionWaiters = waiters.get(position);
+            if (positionWaiters == null) {
+                positionWaiters = new ArrayList<>(1);
+                waiters.put(position, positionWaiters);
+            }
+            positionWaiters.add(waiter);
+        }
+        try {
+            // data could be written before waiter is registered
+            if (isCached(position)) {
+                return;
+            }
+            synchronized (waiter) {
+                if (!waiter.signalled) {
+                    waiter.wait(MAX_WAIT_SOURCE_DATA_MS);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new ProxyCacheException("Waiting source data is interrupted!", e);
+        } finally {
+            removeWaiter(position, waiter);
+        }
+    }
+
+    private boolean isCached(long position) throws ProxyCacheException {
+        return cache.isCompleted() || stopped || (sparseCache != null
+                ? sparseCache.availableFrom(position) > 0 : cache.available() > position);
+    }
+
+    private void removeWaiter(long position, DataWaiter waiter) {
+        synchronized (wc) {
+            List<DataWaiter> positionWaiters = waiters.get(position);
+            if (positionWaiters != null && positionWaiters.remove(waiter) && positionWaiters.isEmpty()) {
+                waiters.remove(position);
             }
         }
     }
 
+    /**
+     * Notifies about chunk {@code [writtenFrom, writtenTo)} written to cache and wakes up only
+     * readers waiting for bytes of this chunk.
+     */
+    private void notifyNewCacheDataWritten(long writtenFrom, long writtenTo, long cacheAvailable,
+                                           long sourceAvailable) {
+        onCacheAvailable(cacheAvailable, sourceAvailable);
+
+        synchronized (wc) {
+            Iterator<Map.Entry<Long, List<DataWaiter>>> written =
+                    waiters.subMap(writtenFrom, writtenTo).entrySet().iterator();
+            while (written.hasNext()) {
+                signal(written.next().getValue());
+                written.remove();
+            }
+        }
+        notifyDataListeners();
+    }
+
+    /**
+     * Notifies about changed state of cache (e.g. source reading is finished or failed) and wakes
+     * up all waiting readers to check it.
+     */
     private void notifyNewCacheDataAvailable(long cacheAvailable, long sourceAvailable) {
         onCacheAvailable(cacheAvailable, sourceAvailable);
 
+        notifyAllWaiters();
+        notifyDataListeners();
+    }
+
+    private void notifyAllWaiters() {
         synchronized (wc) {
-            wc.notifyAll();
+            for (List<DataWaiter> positionWaiters : waiters.values()) {
+                signal(positionWaiters);
+            }
+            waiters.clear();
+        }
+    }
+
+    private void signal(List<DataWaiter> positionWaiters) {
+        for (DataWaiter waiter : positionWaiters) {
+            synchronized (waiter) {
+                waiter.signalled = true;
+                waiter.notify();
+            }
+        }
+    }
+
+    private void notifyDataListeners() {
+        for (SourceDataListener listener : dataListeners) {
+            listener.onSourceDataAvailable();
         }
     }
 
@@ -119,12 +390,15 @@ class ProxyCache {
     }
 
     private void readSource() {
+        if (sparseCache != null) {
+            readSourceSparse();
+            return;
+        }
         long sourceAvailable = -1;
         long offset = 0;
         try {
-            offset = cache.available();
-            source.open(offset);
-            sourceAvailable = source.length();
+            offset = openSource(cache.available());
+            sourceAvailable = resolveSourceLength();
             byte[] buffer = new byte[ProxyCacheUtils.DEFAULT_BUFFER_SIZE];
             int readBytes;
             while ((readBytes = source.read(buffer)) != -1) {
@@ -135,7 +409,7 @@ class ProxyCache {
                     cache.append(buffer, readBytes);
                 }
                 offset += readBytes;
-                notifyNewCacheDataAvailable(offset, sourceAvailable);
+                notifyNewCacheDataWritten(offset - readBytes, offset, offset, sourceAvailable);
             }
             tryComplete();
             onSourceRead();
@@ -148,10 +422,263 @@ class ProxyCache {
             onError(e);
         } finally {
             closeSource();
+            onRevalidated();
             notifyNewCacheDataAvailable(offset, sourceAvailable);
         }
     }
 
+    /**
+     * Fills gaps of {@link SparseFileCache}. Starts from the gap requested by reader, reopens
+     * source if reader seeks far away or already cached range is reached and fills the rest of
+     * gaps from the start of file when requested one is downloaded. Cache is completed only here
+     * after segment readers are finished, so nobody writes to completed cache.
+     */
+    private void readSourceSparse() {
+        long sourceAvailable = -1;
+        long offset = 0;
+        try {
+            offset = skipClaimedBySegmentReaders(sparseCache.firstMissingFrom(requestedOffset));
+            while (!isStopped()) {
+                sourceAvailable = source.length();
+                if (sourceAvailable >= 0 && offset >= sourceAvailable) {
+                    offset = skipClaimedBySegmentReaders(sparseCache.firstMissingFrom(0));
+                    if (offset >= sourceAvailable) {
+                        break;
+                    }
+                }
+                offset = openSource(offset);
+                sourceAvailable = resolveSourceLength();
+                startSegmentReaders(offset, sourceAvailable);
+                long nextOffset = readSparseGap(offset, sourceAvailable);
+                closeSource();
+                boolean noProgress = nextOffset == offset;
+                if (noProgress || sourceAvailable < 0) {
+                    // gaps can't be located without source length, so single pass is done
+                    break;
+                }
+                offset = skipClaimedBySegmentReaders(nextOffset);
+            }
+            awaitSegmentReaders();
+            tryComplete();
+            if (cache.isCompleted()) {
+                onSourceRead();
+            }
+        } catch (Throwable e) {
+            readSourceErrorsCount.incrementAndGet();
+            onError(e);
+        } finally {
+            closeSource();
+            onRevalidated();
+            notifyNewCacheDataAvailable(cachedBytesSafely(), sourceAvailable);
+        }
+    }
+
+    /**
+     * Opens source from {@code offset} revalidating already cached data. Range request is sent
+     * with validator of cached data, so if resource is changed on server (or server doesn't
+     * support ranges) whole resource is returned: cached data is discarded then and source is
+     * read from the start. Error responses fail to open source, so they never discard cache.
+     *
+     * @return offset source is actually opened from.
+     */
+    private long openSource(long offset) throws ProxyCacheException {
+        UrlSource urlSource = source instanceof UrlSource ? (UrlSource) source : null;
+        if (urlSource == null || fileCache == null) {
+            source.open(offset);
+            return offset;
+        }
+        String cachedValidator = fileCache.getValidator();
+        urlSource.setIfRange(cachedValidator);
+        source.open(offset);
+        String validator = urlSource.getValidator();
+        boolean changed = cachedValidator != null && validator != null
+                && !cachedValidator.equals(validator);
+        // source is opened with successful response only, so other offset means whole resource
+        boolean wholeResource = urlSource.getResponseOffset() != offset;
+        if (changed || wholeResource) {
+            LOG.info("Cached data of " + source + " is stale, it is downloaded again");
+            discardCache();
+            offset = urlSource.getResponseOffset();
+        }
+        fileCache.setValidator(validator);
+        onRevalidated();
+        return offset;
+    }
+
+    private void discardCache() throws ProxyCacheException {
+        synchronized (stopLock) {
+            for (SegmentReaderRunnable segmentReader : segmentReaders) {
+                segmentReader.interrupt();
+            }
+            fileCache.discard();
+        }
+    }
+
+    /**
+     * Reads opened source to sparse cache from {@code offset}.
+     *
+     * @return offset source should be reopened from.
+     */
+    private long readSparseGap(long offset, long sourceAvailable) throws ProxyCacheException {
+        byte[] buffer = new byte[ProxyCacheUtils.DEFAULT_BUFFER_SIZE];
+        int readBytes;
+        while ((readBytes = source.read(buffer)) != -1) {
+            synchronized (stopLock) {
+                if (isStopped()) {
+                    return offset;
+                }
+                sparseCache.write(buffer, offset, readBytes);
+            }
+            offset += readBytes;
+            notifyNewCacheDataWritten(offset - readBytes, offset, sparseCache.cachedBytes(),
+                    sourceAvailable);
+
+            long requested = requestedOffset;
+            boolean requestedMissing = sparseCache.availableFrom(requested) <= 0;
+            if (requestedMissing && (requested < offset || requested > offset + SEEK_TOLERANCE)) {
+                return sparseCache.firstMissingFrom(requested);
+            }
+            if (sparseCache.availableFrom(offset) > SKIP_CACHED_THRESHOLD) {
+                return sparseCache.firstMissingFrom(offset);
+            }
+            if (isClaimedBySegmentReader(offset)) {
+                return offset;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Splits the rest of source after {@code offset} into segments and starts fetching all of
+     * them but first one with separate connections. First segment is read by opened source, so
+     * data player is waiting for comes first. Segments are written at their own offsets of
+     * {@link SparseFileCache}, readers get data in order because only contiguous cached bytes
+     * are served.
+     */
+    private void startSegmentReaders(long offset, long sourceLength) throws ProxyCacheException {
+        boolean parallelAllowed = maxConnections > 1 && source instanceof UrlSource
+                && ((UrlSource) source).isRangeSupported() && sourceLength > 0;
+        if (!parallelAllowed || !segmentReaders.isEmpty()) {
+            return;
+        }
+        long remaining = sourceLength - offset;
+        int segmentsCount = (int) Math.min(maxConnections, remaining / MIN_SEGMENT_SIZE);
+        if (segmentsCount <= 1) {
+            return;
+        }
+        long segmentSize = remaining / segmentsCount;
+        for (int i = 1; i < segmentsCount; i++) {
+            long start = offset + i * segmentSize;
+            long end = i == segmentsCount - 1 ? sourceLength : start + segmentSize;
+            start = sparseCache.firstMissingFrom(start);
+            if (start >= end) {
+                continue; // segment is already cached
+            }
+            SegmentReaderRunnable segmentReader = new SegmentReaderRunnable(
+                    ((UrlSource) source).copy(), start, end, sourceLength);
+            segmentReaders.add(segmentReader);
+            segmentReader.start();
+        }
+        LOG.debug("Source " + source + " is fetched with " + (segmentReaders.size() + 1) + " connections");
+    }
+
+    private void awaitSegmentReaders() throws ProxyCacheException {
+        try {
+            for (SegmentReaderRunnable segmentReader : segmentReaders) {
+                segmentReader.join();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedProxyCacheException("Waiting segment readers is interrupted", e);
+        }
+    }
+
+    private boolean isClaimedBySegmentReader(long offset) {
+        for (SegmentReaderRunnable segmentReader : segmentReaders) {
+            if (segmentReader.claims(offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns first missing offset not less than {@code offset} that isn't being fetched by any
+     * segment reader. If segment reader is too far behind {@code offset}, e.g. player seeks into
+     * the middle of its segment, segment is split: reader keeps fetching data before
+     * {@code offset} and the rest is fetched from {@code offset} by main source reader.
+     */
+    private long skipClaimedBySegmentReaders(long offset) throws ProxyCacheException {
+        boolean claimed = true;
+        while (claimed) {
+            claimed = false;
+            for (SegmentReaderRunnable segmentReader : segmentReaders) {
+                if (segmentReader.claims(offset)) {
+                    if (offset - segmentReader.position > SEEK_TOLERANCE) {
+                        synchronized (stopLock) {
+                            segmentReader.end = offset;
+                        }
+                        return offset;
+                    }
+                    offset = sparseCache.firstMissingFrom(segmentReader.end);
+                    claimed = true;
+                }
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Reads segment of source with own connection until segment end or already cached data.
+     * Failed segment is not an error of proxy: its gap is filled later by main source reader.
+     * Segment reader never completes cache, main source reader may still write to it.
+     */
+    private void readSegment(SegmentReaderRunnable segment) {
+        try {
+            segment.source.setIfRange(sparseCache.getValidator());
+            segment.source.open(segment.position);
+            if (segment.source.getResponseOffset() != segment.position) {
+                return; // resource is changed, main source reader is going to discard cache
+            }
+            byte[] buffer = new byte[ProxyCacheUtils.DEFAULT_BUFFER_SIZE];
+            int readBytes;
+            while (segment.position < segment.end && (readBytes = segment.source.read(buffer)) != -1) {
+                long from = segment.position;
+                int length;
+                synchronized (stopLock) {
+                    // end is guarded by stopLock, it can be moved back when segment is split
+                    length = (int) Math.min(readBytes, segment.end - from);
+                    if (isStopped() || length <= 0 || sparseCache.availableFrom(from) > 0) {
+                        return; // stopped or reached data written by another reader
+                    }
+                    sparseCache.write(buffer, from, length);
+                }
+                segment.position = from + length;
+                notifyNewCacheDataWritten(from, segment.position, sparseCache.cachedBytes(),
+                        segment.sourceLength);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error reading segment [" + segment.position + ", " + segment.end + ") of "
+                    + source + ", it will be read later", e);
+        } finally {
+            try {
+                segment.source.close();
+            } catch (ProxyCacheException e) {
+                onError(e);
+            }
+            segmentReaders.remove(segment);
+            // cache is completed by main source reader, it waits for all segments
+            notifyNewCacheDataAvailable(cachedBytesSafely(), segment.sourceLength);
+        }
+    }
+
+    private long cachedBytesSafely() {
+        try {
+            return sparseCache.cachedBytes();
+        } catch (ProxyCacheException e) {
+            return -1;
+        }
+    }
+
     private void onSourceRead() {
         // guaranteed notify listeners after source read and cache completed
         percentsAvailable = 100;
@@ -160,7 +687,9 @@ class ProxyCache {
 
     private void tryComplete() throws ProxyCacheException {
         synchronized (stopLock) {
-            if (!isStopped() && cache.available() == source.length()) {
+            boolean downloaded = sparseCache != null ? sparseCache.isFullyCached(source.length())
+                    : cache.available() == source.length();
+            if (!isStopped() && downloaded) {
                 cache.complete();
             }
         }
@@ -187,6 +716,49 @@ class ProxyCache {
         }
     }
 
+    private static final class DataWaiter {
+
+        private boolean signalled; // guarded by itself
+    }
+
+    private final class SegmentReaderRunnable implements Runnable {
+
+        private final UrlSource source;
+        private final long sourceLength;
+        private volatile long end;
+        private volatile long position;
+        private Thread thread;
+
+        SegmentReaderRunnable(UrlSource source, long start, long end, long sourceLength) {
+            this.source = source;
+            this.position = start;
+            this.end = end;
+            this.sourceLength = sourceLength;
+        }
+
+        void start() {
+            thread = new Thread(this, "Segment reader [" + position + ", " + end + ") for " + source);
+            thread.start();
+        }
+
+        void interrupt() {
+            thread.interrupt();
+        }
+
+        void join() throws InterruptedException {
+            thread.join();
+        }
+
+        boolean claims(long offset) {
+            return offset >= position && offset < end;
+        }
+
+        @Override
+        public void run() {
+            readSegment(this);
+        }
+    }
+
     private class SourceReaderRunnable implements Runnable {
 
         @Override
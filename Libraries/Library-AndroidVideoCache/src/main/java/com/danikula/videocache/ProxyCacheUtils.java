@@ -52,6 +52,14 @@ public class ProxyCacheUtils {
         return preview;
     }
 
+    /**
+     * Returns validator usable in {@code If-Range} header: weak ETag can't be used there, so
+     * Last-Modified date is taken instead of it.
+     */
+    static String getValidator(String eTag, String lastModified) {
+        return eTag != null && !eTag.startsWith("W/") ? eTag : lastModified;
+    }
+
     static String encode(String url) {
         try {
             return URLEncoder.encode(url, "utf-8");
@@ -0,0 +1,42 @@
+package com.danikula.videocache;
+
+/**
+ * Metrics of single request served by {@link HttpProxyCacheServer}.
+ * <p>
+ * Bytes that were cached in a row from requested offset when request came are considered as
+ * served from cache, the rest of bytes are considered as fetched from network for this request.
+ */
+public final class RequestMetrics {
+
+    public final String url;
+    public final long offset;
+    /**
+     * {@code false} if request bypassed cache (e.g. user seeks far from cached data).
+     */
+    public final boolean cacheUsed;
+    public final long bytesFromCache;
+    public final long bytesFromNetwork;
+    /**
+     * Time from receiving request to sending first byte of body or {@code -1} if no data is sent.
+     */
+    public final long timeToFirstByteMs;
+    public final long durationMs;
+
+    RequestMetrics(String url, long offset, boolean cacheUsed, long bytesFromCache,
+                   long bytesFromNetwork, long timeToFirstByteMs, long durationMs) {
+        this.url = url;
+        this.offset = offset;
+        this.cacheUsed = cacheUsed;
+        this.bytesFromCache = bytesFromCache;
+        this.bytesFromNetwork = bytesFromNetwork;
+        this.timeToFirstByteMs = timeToFirstByteMs;
+        this.durationMs = durationMs;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMetrics{url='" + url + "', offset=" + offset + ", cacheUsed=" + cacheUsed +
+                ", bytesFromCache=" + bytesFromCache + ", bytesFromNetwork=" + bytesFromNetwork +
+                ", timeToFirstByteMs=" + timeToFirstByteMs + ", durationMs=" + durationMs + '}';
+    }
+}
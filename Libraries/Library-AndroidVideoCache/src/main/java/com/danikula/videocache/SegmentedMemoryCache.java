@@ -0,0 +1,139 @@
+package com.danikula.videocache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.danikula.videocache.Preconditions.checkArgument;
+import static com.danikula.videocache.Preconditions.checkNotNull;
+
+/**
+ * Memory based {@link Cache} that stores data in fixed size segments of {@link MemoryCachePool}.
+ * <p>
+ * Appending copies data only once and reading doesn't allocate anything. Cache can be evicted
+ * by pool at any moment when memory is needed for more recently used cache, after that it is
+ * empty and doesn't accept new data. So it can be used as standalone cache only if budget of pool
+ * is big enough, otherwise it is used as memory tier in front of
+ * {@link com.danikula.videocache.file.FileCache}.
+ */
+public class SegmentedMemoryCache implements Cache {
+
+    private final MemoryCachePool pool;
+    private final List<byte[]> segments = new ArrayList<>();
+    private long length;
+    private boolean completed;
+    private boolean evicted;
+
+    SegmentedMemoryCache(MemoryCachePool pool) {
+        this.pool = checkNotNull(pool);
+    }
+
+    @Override
+    public long available() {
+        synchronized (pool) {
+            return length;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, long offset, int length) throws ProxyCacheException {
+        ProxyCacheUtils.assertBuffer(buffer, offset, length);
+        synchronized (pool) {
+            if (offset >= this.length) {
+                return -1;
+            }
+            int segmentSize = pool.segmentSize();
+            int toRead = (int) Math.min(length, this.length - offset);
+            int read = 0;
+            while (read < toRead) {
+                long position = offset + read;
+                byte[] segment = segments.get((int) (position / segmentSize));
+                int segmentOffset = (int) (position % segmentSize);
+                int count = Math.min(toRead - read, segmentSize - segmentOffset);
+                System.arraycopy(segment, segmentOffset, buffer, read, count);
+                read += count;
+            }
+            return read;
+        }
+    }
+
+    @Override
+    public void append(byte[] data, int length) throws ProxyCacheException {
+        if (!tryAppend(data, length)) {
+            throw new ProxyCacheException("Error append memory cache: cache is evicted or there " +
+                    "is no memory for " + length + " bytes");
+        }
+    }
+
+    /**
+     * Appends data if there is enough memory for it.
+     *
+     * @param data   a data to be appended.
+     * @param length count of bytes from {@code data} to be appended.
+     * @return {@code true} if data is appended, {@code false} if cache is evicted or full. Cache
+     * stays consistent if pool runs out of memory in the middle of data: its head is appended.
+     */
+    public boolean tryAppend(byte[] data, int length) {
+        checkNotNull(data);
+        checkArgument(length >= 0 && length <= data.length, "Wrong length " + length);
+        synchronized (pool) {
+            if (evicted || completed || this.length + length > pool.maxEntrySize()) {
+                return false;
+            }
+            int segmentSize = pool.segmentSize();
+            int written = 0;
+            while (written < length) {
+                int segmentOffset = (int) (this.length % segmentSize);
+                if (segmentOffset == 0 && segments.size() * (long) segmentSize == this.length) {
+                    byte[] segment = pool.allocate(this);
+                    if (segment == null) {
+                        return false;
+                    }
+                    segments.add(segment);
+                }
+                byte[] segment = segments.get(segments.size() - 1);
+                int count = Math.min(length - written, segmentSize - segmentOffset);
+                System.arraycopy(data, written, segment, segmentOffset, count);
+                written += count;
+                this.length += count;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops cached data and returns memory to pool. Cache stays usable until it is evicted by
+     * pool.
+     */
+    public void clear() {
+        synchronized (pool) {
+            pool.release(segments);
+            segments.clear();
+            length = 0;
+            completed = false;
+        }
+    }
+
+    void evict() {
+        clear();
+        evicted = true;
+    }
+
+    @Override
+    public void close() {
+        // data stays in pool until it is evicted
+    }
+
+    @Override
+    public void complete() {
+        synchronized (pool) {
+            completed = !evicted;
+        }
+    }
+
+    @Override
+    public boolean isCompleted() {
+        synchronized (pool) {
+            return completed;
+        }
+    }
+}
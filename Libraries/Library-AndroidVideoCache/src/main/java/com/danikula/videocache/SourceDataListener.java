@@ -0,0 +1,10 @@
+package com.danikula.videocache;
+
+/**
+ * Listener for new data fetched from {@link Source} to {@link Cache} by {@link ProxyCache}.
+ * Called from source reader thread for every written chunk, so implementation must be fast.
+ */
+interface SourceDataListener {
+
+    void onSourceDataAvailable();
+}
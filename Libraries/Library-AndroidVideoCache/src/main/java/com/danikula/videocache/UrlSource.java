@@ -0,0 +1,56 @@
+package com.danikula.videocache;
+
+/**
+ * {@link Source} of remote resource that can be served by {@link HttpProxyCache}.
+ */
+public interface UrlSource extends Source {
+
+    /**
+     * Returns mime type of resource, fetching it from server if it is unknown.
+     *
+     * @return mime type or {@code null} if server doesn't provide it.
+     * @throws ProxyCacheException if error occur while fetching source info.
+     */
+    String getMime() throws ProxyCacheException;
+
+    String getUrl();
+
+    /**
+     * Returns whether server accepts byte range requests for this resource. It is known only
+     * after source is opened.
+     *
+     * @return {@code true} if server advertised {@code Accept-Ranges: bytes} or returned partial
+     * content.
+     */
+    boolean isRangeSupported();
+
+    /**
+     * Makes range requests conditional: server sends requested range only if resource still has
+     * given validator and whole resource otherwise, see {@link #getResponseOffset()}.
+     *
+     * @param validator a validator of already cached data, {@code null} for unconditional requests.
+     */
+    void setIfRange(String validator);
+
+    /**
+     * Returns validator of resource from last response: strong ETag or Last-Modified date.
+     *
+     * @return validator or {@code null} if server provides neither.
+     */
+    String getValidator();
+
+    /**
+     * Returns offset of the first byte of opened response. It differs from offset passed to
+     * {@link #open(long)} if server ignored range request or resource is changed.
+     *
+     * @return offset of data returned by {@link #read(byte[])}.
+     */
+    long getResponseOffset();
+
+    /**
+     * Returns new not opened source for the same url that shares already known source info.
+     *
+     * @return a copy of source.
+     */
+    UrlSource copy();
+}
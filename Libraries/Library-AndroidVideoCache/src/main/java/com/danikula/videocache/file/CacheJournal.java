@@ -0,0 +1,209 @@
+package com.danikula.videocache.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of partially cached file. Keeps validator of cached data (ETag or
+ * Last-Modified date of resource) and committed blocks of file with their checksums. Block is
+ * recorded only after its data is synced to disk, so after process kill every recorded block but
+ * maybe last one is durable, and torn record at the end of journal is just ignored.
+ * <p>
+ * Not thread safe, guarded by owning {@link FileCache}.
+ */
+class CacheJournal {
+
+    static final String POSTFIX = ".journal";
+    private static final int FORMAT_VERSION = 1;
+    private static final byte RECORD_VALIDATOR = 1;
+    private static final byte RECORD_BLOCK = 2;
+
+    private final File file;
+    private final List<Block> blocks = new ArrayList<>();
+    private String validator;
+    private DataOutputStream out;
+
+    CacheJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads journal. Records after first torn or inconsistent one are ignored.
+     *
+     * @return {@code false} if there is no journal.
+     * @throws IOException if journal can't be read or has unsupported format.
+     */
+    boolean load() throws IOException {
+        blocks.clear();
+        validator = null;
+        if (!file.exists()) {
+            return false;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported journal version " + version + " in " + file);
+            }
+            while (readRecord(in)) {
+                // read all records
+            }
+        } catch (EOFException e) {
+            // record is torn by process kill, all previous ones are valid
+        } finally {
+            in.close();
+        }
+        return true;
+    }
+
+    private boolean readRecord(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == RECORD_VALIDATOR) {
+            String value = in.readUTF();
+            validator = value.isEmpty() ? null : value;
+            return true;
+        }
+        if (type == RECORD_BLOCK) {
+            Block block = new Block(in.readLong(), in.readInt(), in.readInt());
+            if (block.offset != committedLength() || block.length <= 0) {
+                return false;
+            }
+            blocks.add(block);
+            return true;
+        }
+        return false;
+    }
+
+    String validator() {
+        return validator;
+    }
+
+    long committedLength() {
+        return blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).end();
+    }
+
+    List<Block> blocks() {
+        return blocks;
+    }
+
+    void setValidator(String validator) throws IOException {
+        this.validator = validator;
+        DataOutputStream out = openForAppend();
+        out.writeByte(RECORD_VALIDATOR);
+        out.writeUTF(validator == null ? "" : validator);
+        out.flush();
+    }
+
+    /**
+     * Records block {@code [committedLength(), committedLength() + length)} of file. Data of block
+     * must be synced to disk before.
+     */
+    void commitBlock(int length, int checksum) throws IOException {
+        Block block = new Block(committedLength(), length, checksum);
+        DataOutputStream out = openForAppend();
+        out.writeByte(RECORD_BLOCK);
+        out.writeLong(block.offset);
+        out.writeInt(block.length);
+        out.writeInt(block.checksum);
+        out.flush();
+        blocks.add(block);
+    }
+
+    /**
+     * Drops blocks beyond {@code length} and rewrites journal with remaining ones.
+     */
+    void truncate(long length) throws IOException {
+        while (!blocks.isEmpty() && blocks.get(blocks.size() - 1).end() > length) {
+            blocks.remove(blocks.size() - 1);
+        }
+        rewrite();
+    }
+
+    void reset(String validator) throws IOException {
+        this.blocks.clear();
+        this.validator = validator;
+        rewrite();
+    }
+
+    private void rewrite() throws IOException {
+        close();
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(FORMAT_VERSION);
+            if (validator != null) {
+                out.writeByte(RECORD_VALIDATOR);
+                out.writeUTF(validator);
+            }
+            for (Block block : blocks) {
+                out.writeByte(RECORD_BLOCK);
+                out.writeLong(block.offset);
+                out.writeInt(block.length);
+                out.writeInt(block.checksum);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Error renaming " + tempFile + " to " + file);
+        }
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        if (out == null) {
+            boolean created = !file.exists() || file.length() == 0;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            if (created) {
+                out.writeInt(FORMAT_VERSION);
+            }
+        }
+        return out;
+    }
+
+    void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        blocks.clear();
+        validator = null;
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Error deleting journal " + file);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CacheJournal{validator='" + validator + "', committed=" + committedLength() + '}';
+    }
+
+    static final class Block {
+
+        final long offset;
+        final int length;
+        final int checksum;
+
+        Block(long offset, int length, int checksum) {
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        long end() {
+            return offset + length;
+        }
+    }
+}
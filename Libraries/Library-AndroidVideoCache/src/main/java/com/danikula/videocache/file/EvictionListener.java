@@ -0,0 +1,11 @@
+package com.danikula.videocache.file;
+
+import java.io.File;
+
+/**
+ * Listener for files deleted by {@link LruDiskUsage} to keep cache within limits.
+ */
+public interface EvictionListener {
+
+    void onFileEvicted(File file, long size);
+}
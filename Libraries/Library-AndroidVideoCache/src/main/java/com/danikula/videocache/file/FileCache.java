@@ -2,23 +2,43 @@ package com.danikula.videocache.file;
 
 import com.danikula.videocache.Cache;
 import com.danikula.videocache.ProxyCacheException;
+import com.danikula.videocache.SegmentedMemoryCache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.zip.CRC32;
 
 /**
  * {@link Cache} that uses file for storing data.
+ * <p>
+ * Not completed file is accompanied by {@link CacheJournal}: appended data is committed by blocks
+ * with checksums, so after process kill only verified prefix of file is trusted and downloading is
+ * resumed from its end. Journal also keeps validator of cached data, see {@link #getValidator()}.
+ * <p>
+ * Writing can wait for disk sync while holding lock of cache, so {@link #available()},
+ * {@link #isCompleted()} and {@link #readFromMemory(byte[], long, int)} don't take this lock.
  *
  * @author Alexey Danilov (danikula@gmail.com).
  */
 public class FileCache implements Cache {
 
-    private static final String TEMP_POSTFIX = ".download";
+    private static final Logger LOG = LoggerFactory.getLogger("FileCache");
+    static final String TEMP_POSTFIX = ".download";
+    private static final int JOURNAL_BLOCK_SIZE = 1024 * 1024;
 
     private final DiskUsage diskUsage;
-    public File file;
-    private RandomAccessFile dataFile;
+    public volatile File file;
+    RandomAccessFile dataFile;
+    private volatile long fileLength;
+    private volatile SegmentedMemoryCache memoryCache;
+    private final CacheJournal journal;
+    private final CRC32 pendingChecksum = new CRC32();
+    private int pendingBytes;
 
     public FileCache(File file) throws ProxyCacheException {
         this(file, new UnlimitedDiskUsage());
@@ -36,25 +56,127 @@ public class FileCache implements Cache {
             this.file = completed ? file : new File(file.getParentFile(),
                     file.getName() + TEMP_POSTFIX);
             this.dataFile = new RandomAccessFile(this.file, completed ? "r" : "rw");
+            this.journal = new CacheJournal(new File(this.file.getParentFile(),
+                    this.file.getName() + CacheJournal.POSTFIX));
         } catch (IOException e) {
             throw new ProxyCacheException("Error using file " + file + " as disc cache", e);
         }
+        if (!isCompleted()) {
+            loadJournal();
+        }
+        updateFileLength();
     }
 
-    @Override
-    public synchronized long available() throws ProxyCacheException {
+    /**
+     * Remembers length of data file after it is changed, see {@link #available()}.
+     */
+    void updateFileLength() throws ProxyCacheException {
         try {
-            return (int) dataFile.length();
+            fileLength = dataFile.length();
         } catch (IOException e) {
             throw new ProxyCacheException("Error reading length of file " + file, e);
         }
     }
 
+    private void loadJournal() throws ProxyCacheException {
+        try {
+            boolean journalExists = journal.load();
+            if (!isJournaled()) {
+                journal.reset(journal.validator());
+                return;
+            }
+            long verified = journalExists ? verifiedLength() : 0;
+            if (dataFile.length() != verified) {
+                LOG.info("Only " + verified + " of " + dataFile.length() + " cached bytes of " +
+                        file + " are verified, the rest is downloaded again");
+                dataFile.setLength(verified);
+            }
+            // rewriting also drops torn record at the end, so new records can be appended
+            journal.truncate(verified);
+        } catch (IOException e) {
+            LOG.warn("Error reading journal of " + file + ", partial cache is dropped", e);
+            try {
+                dataFile.setLength(0);
+                journal.reset(null);
+            } catch (IOException e1) {
+                throw new ProxyCacheException("Error resetting partial cache " + file, e1);
+            }
+        }
+    }
+
+    /**
+     * Returns length of file prefix confirmed by journal. Blocks are checked from the end: every
+     * block is synced to disk before the next one is recorded, so first valid block confirms all
+     * blocks before it.
+     */
+    private long verifiedLength() throws IOException {
+        List<CacheJournal.Block> blocks = journal.blocks();
+        long fileLength = dataFile.length();
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            CacheJournal.Block block = blocks.get(i);
+            if (block.end() <= fileLength && checksumOf(block) == block.checksum) {
+                return block.end();
+            }
+        }
+        return 0;
+    }
+
+    private int checksumOf(CacheJournal.Block block) throws IOException {
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[8 * 1024];
+        dataFile.seek(block.offset);
+        int remaining = block.length;
+        while (remaining > 0) {
+            int read = dataFile.read(buffer, 0, Math.min(buffer.length, remaining));
+            if (read == -1) {
+                break;
+            }
+            checksum.update(buffer, 0, read);
+            remaining -= read;
+        }
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Returns whether appended data is committed to journal by blocks. Caches writing data at
+     * arbitrary offsets keep their own index of downloaded data and use journal only for validator.
+     */
+    boolean isJournaled() {
+        return true;
+    }
+
+    @Override
+    public long available() throws ProxyCacheException {
+        return fileLength;
+    }
+
+    /**
+     * Puts memory tier in front of file. Memory cache keeps head of file: bytes written to or read
+     * from file right after its cached part are copied to memory while memory cache accepts them,
+     * and reads of this head are served without touching file.
+     *
+     * @param memoryCache a memory cache for this file, usually taken from
+     *                    {@link com.danikula.videocache.MemoryCachePool} by file name.
+     * @throws ProxyCacheException if error occur while reading file length.
+     */
+    public synchronized void setMemoryCache(SegmentedMemoryCache memoryCache) throws ProxyCacheException {
+        if (memoryCache.available() > available()) {
+            memoryCache.clear(); // file is trimmed or dropped since memory was filled
+        }
+        this.memoryCache = memoryCache;
+    }
+
     @Override
     public synchronized int read(byte[] buffer, long offset, int length) throws ProxyCacheException {
+        int fromMemory = readFromMemory(buffer, offset, length);
+        if (fromMemory > 0) {
+            return fromMemory;
+        }
         try {
             dataFile.seek(offset);
-            return dataFile.read(buffer, 0, length);
+            int read = dataFile.read(buffer, 0, length);
+            copyToMemory(buffer, offset, read);
+            return read;
         } catch (IOException e) {
             String format = "Error reading %d bytes with offset %d from file[%d bytes] to " +
                     "buffer[%d bytes]";
@@ -63,6 +185,25 @@ public class FileCache implements Cache {
         }
     }
 
+    /**
+     * Reads data from memory tier only. File isn't touched and isn't locked, so it can be used by
+     * readers that must not wait for writing to file.
+     *
+     * @param buffer a buffer to be used for reading data.
+     * @param offset an offset in file.
+     * @param length max count of bytes to be read.
+     * @return count of read bytes, {@code 0} if data at {@code offset} isn't in memory.
+     * @throws ProxyCacheException if buffer is too small.
+     */
+    public int readFromMemory(byte[] buffer, long offset, int length) throws ProxyCacheException {
+        SegmentedMemoryCache memoryCache = this.memoryCache;
+        if (memoryCache == null) {
+            return 0;
+        }
+        // memory cache can be evicted by pool for other url right now, then nothing is read
+        return Math.max(0, memoryCache.read(buffer, offset, length));
+    }
+
     @Override
     public synchronized void append(byte[] data, int length) throws ProxyCacheException {
         try {
@@ -70,17 +211,103 @@ public class FileCache implements Cache {
                 throw new ProxyCacheException("Error append cache: cache file " + file + " is " +
                         "completed!");
             }
-            dataFile.seek(available());
+            long offset = available();
+            dataFile.seek(offset);
             dataFile.write(data, 0, length);
+            fileLength = offset + length;
+            copyToMemory(data, offset, length);
+            pendingChecksum.update(data, 0, length);
+            pendingBytes += length;
+            if (pendingBytes >= JOURNAL_BLOCK_SIZE) {
+                commitPendingBlock();
+            }
         } catch (IOException e) {
             String format = "Error writing %d bytes to %s from buffer with size %d";
             throw new ProxyCacheException(String.format(format, length, dataFile, data.length), e);
         }
     }
 
+    /**
+     * Copies data at {@code offset} of file to memory tier if it continues data cached there.
+     */
+    void copyToMemory(byte[] data, long offset, int length) {
+        if (memoryCache != null && length > 0 && memoryCache.available() == offset) {
+            memoryCache.tryAppend(data, length);
+        }
+    }
+
+    private void commitPendingBlock() throws IOException {
+        if (pendingBytes == 0) {
+            return;
+        }
+        // data must reach disk before journal claims it is downloaded
+        dataFile.getFD().sync();
+        journal.commitBlock(pendingBytes, (int) pendingChecksum.getValue());
+        pendingChecksum.reset();
+        pendingBytes = 0;
+    }
+
+    /**
+     * Returns validator of cached data: ETag or Last-Modified date of resource data was fetched
+     * with. Source should be resumed only if resource still has the same validator.
+     *
+     * @return validator or {@code null} if it is unknown.
+     */
+    public synchronized String getValidator() {
+        return journal.validator();
+    }
+
+    /**
+     * Remembers validator of resource cached data is fetched from.
+     *
+     * @param validator a validator or {@code null} if server provides no validator.
+     * @throws ProxyCacheException if error occur while writing journal.
+     */
+    public synchronized void setValidator(String validator) throws ProxyCacheException {
+        if (isCompleted() || equals(validator, journal.validator())) {
+            return;
+        }
+        try {
+            journal.setValidator(validator);
+        } catch (IOException e) {
+            throw new ProxyCacheException("Error writing journal of " + file, e);
+        }
+    }
+
+    private boolean equals(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    /**
+     * Drops all cached data of not completed file, e.g. because resource is changed on server.
+     *
+     * @throws ProxyCacheException if cache is completed or error occur while truncating file.
+     */
+    public synchronized void discard() throws ProxyCacheException {
+        if (isCompleted()) {
+            throw new ProxyCacheException("Error discarding cache: cache file " + file + " is completed!");
+        }
+        try {
+            dataFile.setLength(0);
+            fileLength = 0;
+            pendingChecksum.reset();
+            pendingBytes = 0;
+            journal.reset(null);
+        } catch (IOException e) {
+            throw new ProxyCacheException("Error discarding cache " + file, e);
+        }
+        if (memoryCache != null) {
+            memoryCache.clear();
+        }
+    }
+
     @Override
     public synchronized void close() throws ProxyCacheException {
         try {
+            if (!isCompleted()) {
+                commitPendingBlock();
+                journal.close();
+            }
             dataFile.close();
             diskUsage.touch(file);
         } catch (IOException e) {
@@ -104,6 +331,7 @@ public class FileCache implements Cache {
         }
         file = completedFile;
         try {
+            journal.delete();
             dataFile = new RandomAccessFile(file, "r");
             diskUsage.touch(file);
         } catch (IOException e) {
@@ -112,7 +340,7 @@ public class FileCache implements Cache {
     }
 
     @Override
-    public synchronized boolean isCompleted() {
+    public boolean isCompleted() {
         return !isTempFile(file);
     }
 
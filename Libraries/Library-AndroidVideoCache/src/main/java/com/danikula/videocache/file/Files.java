@@ -51,7 +51,7 @@ class Files {
             long now = System.currentTimeMillis();
             boolean modified = file.setLastModified(now); // on some devices (e.g. Nexus 5)
             // doesn't work
-            if (!modified) {
+            if (!modified && file.isFile()) {
                 modify(file);
                 if (file.lastModified() < now) {
                     // NOTE: apparently this is a known issue (see: http://stackoverflow
@@ -80,6 +80,38 @@ class Files {
         accessFile.close();
     }
 
+    /**
+     * Returns length of file or total length of all files inside directory.
+     */
+    static long sizeOf(File file) {
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                size += sizeOf(child);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Deletes file or directory with all its content.
+     *
+     * @return {@code true} if file doesn't exist anymore.
+     */
+    static boolean delete(File file) {
+        File[] files = file.isDirectory() ? file.listFiles() : null;
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        return file.delete() || !file.exists();
+    }
+
     private static void recreateZeroSizeFile(File file) throws IOException {
         if (!file.delete() || !file.createNewFile()) {
             throw new IOException("Error recreate zero-size file " + file);
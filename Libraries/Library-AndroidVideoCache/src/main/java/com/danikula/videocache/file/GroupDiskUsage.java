@@ -0,0 +1,27 @@
+package com.danikula.videocache.file;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.danikula.videocache.Preconditions.checkNotNull;
+
+/**
+ * {@link DiskUsage} for files stored together in a directory inside cache directory, e.g.
+ * segments of HLS stream. Touching any file touches whole directory in parent {@link DiskUsage},
+ * so files of group are kept and evicted at once.
+ */
+public class GroupDiskUsage implements DiskUsage {
+
+    private final File groupDirectory;
+    private final DiskUsage parentDiskUsage;
+
+    public GroupDiskUsage(File groupDirectory, DiskUsage parentDiskUsage) {
+        this.groupDirectory = checkNotNull(groupDirectory);
+        this.parentDiskUsage = checkNotNull(parentDiskUsage);
+    }
+
+    @Override
+    public void touch(File file) throws IOException {
+        parentDiskUsage.touch(groupDirectory);
+    }
+}
@@ -5,20 +5,33 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link DiskUsage} that uses LRU (Least Recently Used) strategy to trim cache.
+ * <p>
+ * Keeps incrementally maintained {@link LruIndex} of cache directory, so touching file costs
+ * constant work and trimming costs work proportional to count of deleted files. Directory is
+ * scanned only once, when first file is touched.
+ * </p>
+ * Note files are checked by {@link #accept(File, long, int)} from least recently used one and
+ * trimming stops on first accepted file.
  *
  * @author Alexey Danilov (danikula@gmail.com).
  */
 public abstract class LruDiskUsage implements DiskUsage {
 
     private static final Logger LOG = LoggerFactory.getLogger("LruDiskUsage");
-    private final ExecutorService workerThread = Executors.newSingleThreadExecutor();
+    private static final long PERSIST_DELAY_SECONDS = 5;
+    private final ScheduledExecutorService workerThread = Executors.newSingleThreadScheduledExecutor();
+    private LruIndex index; // accessed only by worker thread
+    private boolean persistScheduled;
+    private volatile EvictionListener evictionListener;
 
     @Override
     public void touch(File file) throws IOException {
@@ -26,38 +39,64 @@ public abstract class LruDiskUsage implements DiskUsage {
     }
 
     private void touchInBackground(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (index == null) {
+            index = new LruIndex(directory);
+            index.load();
+        }
         Files.setLastModifiedNow(file);
-        List<File> files = Files.getLruListFiles(file.getParentFile());
-        trim(files);
+        index.touch(file);
+        // completed file replaces temp one, see FileCache#complete(), side files left by temp
+        // file are still counted until they are deleted
+        String name = file.getName();
+        if (!name.endsWith(FileCache.TEMP_POSTFIX)) {
+            index.touch(new File(directory, name + FileCache.TEMP_POSTFIX));
+        }
+        trim();
+        schedulePersist();
+    }
+
+    /**
+     * Sets listener notified about files deleted for trimming cache.
+     *
+     * @param evictionListener a listener, {@code null} to remove listener.
+     */
+    public void setEvictionListener(EvictionListener evictionListener) {
+        this.evictionListener = evictionListener;
     }
 
     protected abstract boolean accept(File file, long totalSize, int totalCount);
 
-    private void trim(List<File> files) {
-        long totalSize = countTotalSize(files);
-        int totalCount = files.size();
-        for (File file : files) {
-            boolean accepted = accept(file, totalSize, totalCount);
-            if (!accepted) {
-                long fileSize = file.length();
-                boolean deleted = file.delete();
-                if (deleted) {
-                    totalCount--;
-                    totalSize -= fileSize;
-                    LOG.info("Cache file " + file + " is deleted because it exceeds cache limit");
-                } else {
-                    LOG.error("Error deleting file " + file + " for trimming cache");
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> lruFiles = index.lruIterator();
+        while (lruFiles.hasNext()) {
+            Map.Entry<String, Long> entry = lruFiles.next();
+            File file = index.fileOf(entry.getKey());
+            if (accept(file, index.totalSize(), index.totalCount())) {
+                return;
+            }
+            boolean deleted = true;
+            for (File entryFile : index.filesOf(entry.getKey())) {
+                deleted &= Files.delete(entryFile);
+            }
+            if (deleted) {
+                lruFiles.remove();
+                LOG.info("Cache file " + file + " is deleted because it exceeds cache limit");
+                EvictionListener listener = evictionListener;
+                if (listener != null) {
+                    listener.onFileEvicted(file, entry.getValue());
                 }
+            } else {
+                LOG.error("Error deleting file " + file + " for trimming cache");
             }
         }
     }
 
-    private long countTotalSize(List<File> files) {
-        long totalSize = 0;
-        for (File file : files) {
-            totalSize += file.length();
+    private void schedulePersist() {
+        if (!persistScheduled) {
+            persistScheduled = true;
+            workerThread.schedule(new PersistCallable(), PERSIST_DELAY_SECONDS, TimeUnit.SECONDS);
         }
-        return totalSize;
     }
 
     private class TouchCallable implements Callable<Void> {
@@ -74,4 +113,14 @@ public abstract class LruDiskUsage implements DiskUsage {
             return null;
         }
     }
+
+    private class PersistCallable implements Callable<Void> {
+
+        @Override
+        public Void call() throws Exception {
+            persistScheduled = false;
+            index.persistIfDirty();
+            return null;
+        }
+    }
 }
@@ -0,0 +1,260 @@
+package com.danikula.videocache.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of cache directory: file sizes in access order with total size.
+ * <p>
+ * Directory is scanned once when index is loaded, after that index is maintained incrementally
+ * by {@link #touch(File)} and {@link #remove(String)}. Access order is persisted to snapshot file
+ * inside directory, so it survives restarts and doesn't depend on file's last modified date
+ * which can't be changed on some devices.
+ * <p>
+ * Directory inside cache directory is a single entry, e.g. group of HLS segments is evicted at
+ * once, its size is total size of its files.
+ * <p>
+ * Side files of data file ({@link CacheJournal}, index of {@link SparseFileCache} and their temp
+ * copies) are not separate entries: they are counted in size of data file's entry and deleted
+ * together with it, see {@link #filesOf(String)}.
+ * <p>
+ * Size of file is remembered when file is touched, so size of temp file being downloaded is
+ * refreshed when it is opened again or completed.
+ * <p>
+ * Not thread safe, used by single worker thread of {@link LruDiskUsage}.
+ */
+class LruIndex {
+
+    static final String SNAPSHOT_FILE_NAME = ".lru-index";
+    private static final Logger LOG = LoggerFactory.getLogger("LruIndex");
+    private static final int FORMAT_VERSION = 1;
+    private static final String[] SIDE_POSTFIXES = {CacheJournal.POSTFIX, SparseFileCache.INDEX_POSTFIX};
+    // side files are rewritten through temp copy, see CacheJournal and RangeIndex
+    private static final String SIDE_TEMP_POSTFIX = ".tmp";
+
+    private final File directory;
+    private final File snapshotFile;
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize;
+    private boolean dirty;
+
+    LruIndex(File directory) {
+        this.directory = directory;
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * Builds index from persisted snapshot and single scan of directory. Files unknown to snapshot
+     * are considered as most recently used in order of their last modified date.
+     */
+    void load() {
+        List<String> snapshotOrder = readSnapshot();
+        List<File> files = Files.getLruListFiles(directory);
+        Set<String> existing = new LinkedHashSet<>();
+        for (File file : files) {
+            if (!isServiceFile(file.getName())) {
+                existing.add(entryNameOf(file.getName()));
+            }
+        }
+        for (String name : snapshotOrder) {
+            if (existing.remove(name)) {
+                put(name, sizeOf(name));
+            }
+        }
+        for (String unknown : existing) {
+            put(unknown, sizeOf(unknown));
+        }
+        dirty = true;
+    }
+
+    /**
+     * Refreshes size of entry the file belongs to, entry is removed if none of its files exists.
+     */
+    void touch(File file) {
+        String name = file.getName();
+        if (isServiceFile(name)) {
+            return;
+        }
+        String entryName = entryNameOf(name);
+        if (exists(entryName)) {
+            put(entryName, sizeOf(entryName));
+        } else {
+            remove(entryName);
+        }
+    }
+
+    void remove(String name) {
+        Long size = sizes.remove(name);
+        if (size != null) {
+            totalSize -= size;
+            dirty = true;
+        }
+    }
+
+    private void put(String name, long size) {
+        Long previous = sizes.put(name, size);
+        totalSize += size - (previous == null ? 0 : previous);
+        dirty = true;
+    }
+
+    /**
+     * Returns files from least recently used. Iteration doesn't change access order, removing
+     * file by iterator updates total size.
+     */
+    Iterator<Map.Entry<String, Long>> lruIterator() {
+        final Iterator<Map.Entry<String, Long>> entries = sizes.entrySet().iterator();
+        return new Iterator<Map.Entry<String, Long>>() {
+
+            private Map.Entry<String, Long> current;
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, Long> next() {
+                current = entries.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                totalSize -= current.getValue();
+                entries.remove();
+                dirty = true;
+            }
+        };
+    }
+
+    File fileOf(String name) {
+        return new File(directory, name);
+    }
+
+    /**
+     * Returns data file of entry followed by its side files.
+     */
+    List<File> filesOf(String name) {
+        List<File> files = new ArrayList<>(1 + SIDE_POSTFIXES.length * 2);
+        files.add(fileOf(name));
+        for (String postfix : SIDE_POSTFIXES) {
+            files.add(fileOf(name + postfix));
+            files.add(fileOf(name + postfix + SIDE_TEMP_POSTFIX));
+        }
+        return files;
+    }
+
+    private boolean exists(String name) {
+        for (File file : filesOf(name)) {
+            if (file.exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long sizeOf(String name) {
+        long size = 0;
+        for (File file : filesOf(name)) {
+            if (file.exists()) {
+                size += Files.sizeOf(file);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns name of entry file belongs to: name of data file for side file or name itself.
+     */
+    private static String entryNameOf(String name) {
+        String withoutTemp = name.endsWith(SIDE_TEMP_POSTFIX)
+                ? name.substring(0, name.length() - SIDE_TEMP_POSTFIX.length()) : name;
+        for (String postfix : SIDE_POSTFIXES) {
+            if (withoutTemp.endsWith(postfix)) {
+                return withoutTemp.substring(0, withoutTemp.length() - postfix.length());
+            }
+        }
+        return name;
+    }
+
+    long totalSize() {
+        return totalSize;
+    }
+
+    int totalCount() {
+        return sizes.size();
+    }
+
+    void persistIfDirty() {
+        if (!dirty) {
+            return;
+        }
+        File tempFile = new File(directory, SNAPSHOT_FILE_NAME + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(sizes.size());
+                for (String name : sizes.keySet()) {
+                    out.writeUTF(name);
+                }
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(snapshotFile)) {
+                throw new IOException("Error renaming " + tempFile + " to " + snapshotFile);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            LOG.error("Error persisting LRU index snapshot " + snapshotFile, e);
+        }
+    }
+
+    private List<String> readSnapshot() {
+        List<String> names = new ArrayList<>();
+        if (!snapshotFile.exists()) {
+            return names;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(snapshotFile)));
+            try {
+                int version = in.readInt();
+                if (version != FORMAT_VERSION) {
+                    throw new IOException("Unsupported LRU index snapshot version " + version);
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    names.add(in.readUTF());
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Error reading LRU index snapshot " + snapshotFile + ", last modified dates are used", e);
+            names.clear();
+        }
+        return names;
+    }
+
+    private boolean isServiceFile(String name) {
+        return name.startsWith(SNAPSHOT_FILE_NAME);
+    }
+}
@@ -0,0 +1,124 @@
+package com.danikula.videocache.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sorted set of non-overlapping downloaded byte ranges {@code [start, end)} of a sparse cache file.
+ * Adjacent and overlapping ranges are merged on insert.
+ * <p>
+ * Not thread safe, guarded by its own monitor in owning {@link SparseFileCache}.
+ */
+class RangeIndex {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+    void add(long start, long end) {
+        if (end <= start) {
+            return;
+        }
+        Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        Map.Entry<Long, Long> next = ranges.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.ceilingEntry(start);
+        }
+        ranges.put(start, end);
+    }
+
+    /**
+     * Returns count of contiguous downloaded bytes starting exactly from {@code offset}.
+     */
+    long availableFrom(long offset) {
+        Map.Entry<Long, Long> floor = ranges.floorEntry(offset);
+        return floor != null && floor.getValue() > offset ? floor.getValue() - offset : 0;
+    }
+
+    /**
+     * Returns first not downloaded offset that is greater or equal to {@code offset}.
+     */
+    long firstMissingFrom(long offset) {
+        return offset + availableFrom(offset);
+    }
+
+    long totalBytes() {
+        long total = 0;
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            total += range.getValue() - range.getKey();
+        }
+        return total;
+    }
+
+    boolean covers(long length) {
+        return availableFrom(0) >= length;
+    }
+
+    void clear() {
+        ranges.clear();
+    }
+
+    RangeIndex copy() {
+        RangeIndex copy = new RangeIndex();
+        copy.ranges.putAll(ranges);
+        return copy;
+    }
+
+    void write(File file) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(ranges.size());
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                out.writeLong(range.getKey());
+                out.writeLong(range.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Error renaming " + tempFile + " to " + file);
+        }
+    }
+
+    void read(File file) throws IOException {
+        ranges.clear();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported ranges index version " + version + " in " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                add(in.readLong(), in.readLong());
+            }
+        } catch (EOFException e) {
+            ranges.clear();
+            throw new IOException("Ranges index " + file + " is truncated", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RangeIndex{" + ranges + '}';
+    }
+}
@@ -0,0 +1,227 @@
+package com.danikula.videocache.file;
+
+import com.danikula.videocache.ProxyCacheException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link FileCache} that can write data at any offset of file and keeps persisted index of
+ * downloaded byte ranges next to temp file. So data fetched after seeking far from the start of
+ * file is cached too and can be served later without downloading it again.
+ * <p>
+ * {@link #available()} returns length of downloaded prefix of file, so sparse cache can be used
+ * anywhere plain {@link FileCache} is expected.
+ * <p>
+ * Index is guarded by its own lock, so queries of downloaded ranges don't wait for writer that
+ * syncs file to disk while holding lock of cache.
+ */
+public class SparseFileCache extends FileCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger("SparseFileCache");
+    static final String INDEX_POSTFIX = ".ranges";
+    private static final long PERSIST_INTERVAL = 1024 * 1024;
+
+    private final RangeIndex index = new RangeIndex();
+    private final File indexFile;
+    private long notPersistedBytes;
+
+    public SparseFileCache(File file) throws ProxyCacheException {
+        this(file, new UnlimitedDiskUsage());
+    }
+
+    public SparseFileCache(File file, DiskUsage diskUsage) throws ProxyCacheException {
+        super(file, diskUsage);
+        this.indexFile = new File(this.file.getParentFile(), this.file.getName() + INDEX_POSTFIX);
+        if (!isCompleted()) {
+            loadIndex();
+            updateFileLength();
+        }
+    }
+
+    private void loadIndex() throws ProxyCacheException {
+        try {
+            if (indexFile.exists()) {
+                index.read(indexFile);
+            } else {
+                // without index there is no way to distinguish downloaded bytes from holes
+                dataFile.setLength(0);
+            }
+        } catch (IOException e) {
+            LOG.warn("Error reading ranges index " + indexFile + ", partial cache is dropped", e);
+            index.clear();
+            try {
+                dataFile.setLength(0);
+            } catch (IOException e1) {
+                throw new ProxyCacheException("Error truncating file " + file, e1);
+            }
+        }
+    }
+
+    @Override
+    public long available() throws ProxyCacheException {
+        return availableFrom(0);
+    }
+
+    /**
+     * Returns count of already downloaded bytes starting exactly from {@code offset}.
+     *
+     * @param offset an offset in file.
+     * @return count of contiguous cached bytes, {@code 0} if byte at {@code offset} isn't cached.
+     * @throws ProxyCacheException if error occur while reading file length.
+     */
+    public long availableFrom(long offset) throws ProxyCacheException {
+        if (!isCompleted()) {
+            long available;
+            synchronized (index) {
+                available = index.availableFrom(offset);
+            }
+            // index is cleared when file is completed right now, then length of file is used
+            if (available > 0 || !isCompleted()) {
+                return available;
+            }
+        }
+        return Math.max(0, super.available() - offset);
+    }
+
+    /**
+     * Returns first not downloaded offset that is greater or equal to {@code offset}.
+     *
+     * @param offset an offset to start search from.
+     * @return offset of first missing byte.
+     * @throws ProxyCacheException if error occur while reading file length.
+     */
+    public long firstMissingFrom(long offset) throws ProxyCacheException {
+        return offset + availableFrom(offset);
+    }
+
+    /**
+     * Returns total count of downloaded bytes in all cached ranges.
+     *
+     * @return count of cached bytes.
+     * @throws ProxyCacheException if error occur while reading file length.
+     */
+    public long cachedBytes() throws ProxyCacheException {
+        if (!isCompleted()) {
+            long total;
+            synchronized (index) {
+                total = index.totalBytes();
+            }
+            if (!isCompleted()) {
+                return total;
+            }
+        }
+        return super.available();
+    }
+
+    /**
+     * Checks whether all bytes in range {@code [0, length)} are downloaded.
+     *
+     * @param length a full length of source.
+     * @return {@code true} if file can be completed.
+     */
+    public boolean isFullyCached(long length) {
+        if (isCompleted()) {
+            return true;
+        }
+        synchronized (index) {
+            return index.covers(length);
+        }
+    }
+
+    @Override
+    public synchronized void append(byte[] data, int length) throws ProxyCacheException {
+        write(data, available(), length);
+    }
+
+    /**
+     * Writes data at specified offset of file and marks range as downloaded.
+     *
+     * @param data   a data to be written.
+     * @param offset an offset in file.
+     * @param length count of bytes from {@code data} to be written.
+     * @throws ProxyCacheException if cache is completed or error occur while writing file.
+     */
+    public synchronized void write(byte[] data, long offset, int length) throws ProxyCacheException {
+        if (isCompleted()) {
+            throw new ProxyCacheException("Error write cache: cache file " + file + " is completed!");
+        }
+        try {
+            dataFile.seek(offset);
+            dataFile.write(data, 0, length);
+        } catch (IOException e) {
+            String format = "Error writing %d bytes at offset %d to %s from buffer with size %d";
+            throw new ProxyCacheException(String.format(format, length, offset, file, data.length), e);
+        }
+        synchronized (index) {
+            index.add(offset, offset + length);
+        }
+        updateFileLength();
+        copyToMemory(data, offset, length);
+        notPersistedBytes += length;
+        if (notPersistedBytes >= PERSIST_INTERVAL) {
+            persistIndex();
+        }
+    }
+
+    @Override
+    boolean isJournaled() {
+        return false;
+    }
+
+    @Override
+    public synchronized void discard() throws ProxyCacheException {
+        super.discard();
+        synchronized (index) {
+            index.clear();
+        }
+        persistIndex();
+    }
+
+    @Override
+    public synchronized void close() throws ProxyCacheException {
+        if (!isCompleted()) {
+            persistIndex();
+        }
+        super.close();
+    }
+
+    @Override
+    public synchronized void complete() throws ProxyCacheException {
+        if (isCompleted()) {
+            return;
+        }
+        super.complete();
+        synchronized (index) {
+            index.clear();
+        }
+        if (indexFile.exists() && !indexFile.delete()) {
+            LOG.warn("Error deleting ranges index " + indexFile);
+        }
+    }
+
+    private void persistIndex() throws ProxyCacheException {
+        try {
+            // data must reach disk before index claims it is downloaded
+            dataFile.getFD().sync();
+            RangeIndex persisted;
+            synchronized (index) {
+                persisted = index.copy();
+            }
+            persisted.write(indexFile);
+            notPersistedBytes = 0;
+        } catch (IOException e) {
+            throw new ProxyCacheException("Error writing ranges index " + indexFile, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (index) {
+            return "SparseFileCache{file=" + file + ", " + index + '}';
+        }
+    }
+}
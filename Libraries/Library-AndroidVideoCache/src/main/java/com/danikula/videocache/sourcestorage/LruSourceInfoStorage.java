@@ -0,0 +1,170 @@
+package com.danikula.videocache.sourcestorage;
+
+import com.danikula.videocache.SourceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.danikula.videocache.Preconditions.checkAllNotNull;
+import static com.danikula.videocache.Preconditions.checkNotNull;
+
+/**
+ * In-memory LRU tier in front of other {@link SourceInfoStorage}.
+ * <p>
+ * Reads are served from memory after first lookup, writes are applied to memory immediately and
+ * persisted to wrapped storage in background. Several writes of the same url made before
+ * persisting are coalesced and writes that don't change info are skipped. Wrapped storage is
+ * released in background too, after pending writes are persisted.
+ */
+public class LruSourceInfoStorage implements SourceInfoStorage {
+
+    private static final Logger LOG = LoggerFactory.getLogger("LruSourceInfoStorage");
+
+    private final SourceInfoStorage delegate;
+    private final Map<String, SourceInfo> memory;
+    private final Map<String, SourceInfo> pendingWrites = new HashMap<>();
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    public LruSourceInfoStorage(SourceInfoStorage delegate, final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries count must be positive number!");
+        }
+        this.delegate = checkNotNull(delegate);
+        this.memory = new LinkedHashMap<String, SourceInfo>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SourceInfo> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public SourceInfo get(String url) {
+        checkNotNull(url);
+        synchronized (memory) {
+            SourceInfo sourceInfo = memory.get(url);
+            if (sourceInfo != null) {
+                return sourceInfo;
+            }
+        }
+        SourceInfo sourceInfo = getPersisted(url);
+        if (sourceInfo != null) {
+            synchronized (memory) {
+                if (!memory.containsKey(url)) {
+                    memory.put(url, sourceInfo);
+                }
+            }
+        }
+        return sourceInfo;
+    }
+
+    private SourceInfo getPersisted(String url) {
+        synchronized (pendingWrites) {
+            SourceInfo pending = pendingWrites.get(url);
+            if (pending != null) {
+                return pending;
+            }
+        }
+        return delegate.get(url);
+    }
+
+    @Override
+    public void put(String url, SourceInfo sourceInfo) {
+        checkAllNotNull(url, sourceInfo);
+        synchronized (memory) {
+            SourceInfo previous = memory.put(url, sourceInfo);
+            if (isSame(previous, sourceInfo)) {
+                return;
+            }
+        }
+        boolean flushScheduled;
+        synchronized (pendingWrites) {
+            flushScheduled = !pendingWrites.isEmpty();
+            pendingWrites.put(url, sourceInfo);
+        }
+        if (!flushScheduled) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        try {
+            writeExecutor.submit(new FlushRunnable());
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Not all source infos are persisted: storage is released");
+        }
+    }
+
+    private boolean isSame(SourceInfo first, SourceInfo second) {
+        return first != null && first.length == second.length && equals(first.url, second.url)
+                && equals(first.mime, second.mime);
+    }
+
+    private boolean equals(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    private void flush() {
+        Map<String, SourceInfo> writes;
+        synchronized (pendingWrites) {
+            writes = new HashMap<>(pendingWrites);
+        }
+        for (Map.Entry<String, SourceInfo> write : writes.entrySet()) {
+            try {
+                delegate.put(write.getKey(), write.getValue());
+            } catch (RuntimeException e) {
+                LOG.error("Error persisting source info " + write.getValue(), e);
+            }
+        }
+        synchronized (pendingWrites) {
+            for (Map.Entry<String, SourceInfo> write : writes.entrySet()) {
+                // keep info written again while flushing, it will be flushed by next task
+                if (pendingWrites.get(write.getKey()) == write.getValue()) {
+                    pendingWrites.remove(write.getKey());
+                }
+            }
+            if (!pendingWrites.isEmpty()) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * Persists pending writes and releases wrapped storage in background, so caller (usually main
+     * thread) isn't blocked. Repeated calls are ignored.
+     */
+    @Override
+    public void release() {
+        synchronized (writeExecutor) {
+            if (writeExecutor.isShutdown()) {
+                return;
+            }
+            writeExecutor.submit(new ReleaseRunnable());
+            writeExecutor.shutdown();
+        }
+    }
+
+    private final class FlushRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            flush();
+        }
+    }
+
+    private final class ReleaseRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            flush();
+            delegate.release();
+        }
+    }
+}
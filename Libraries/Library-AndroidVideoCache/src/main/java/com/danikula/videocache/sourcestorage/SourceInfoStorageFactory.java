@@ -9,8 +9,11 @@ import android.content.Context;
  */
 public class SourceInfoStorageFactory {
 
+    private static final int MEMORY_SOURCE_INFO_ENTRIES = 256;
+
     public static SourceInfoStorage newSourceInfoStorage(Context context) {
-        return new DatabaseSourceInfoStorage(context);
+        return new LruSourceInfoStorage(new DatabaseSourceInfoStorage(context),
+                MEMORY_SOURCE_INFO_ENTRIES);
     }
 
     public static SourceInfoStorage newEmptySourceInfoStorage() {
@@ -0,0 +1,188 @@
+package com.danikula.videocache;
+
+import com.danikula.videocache.file.FileCache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that head of file kept in memory tier is served from memory by zero-copy response of
+ * {@link HttpProxyCache}, and only the rest of file is transferred from disk.
+ */
+public class HttpProxyCacheMemoryTierTest {
+
+    private static final int FILE_SIZE = 256 * 1024;
+    private static final int HEAD_SIZE = 64 * 1024;
+    private static final byte ON_DISK = 1;
+    private static final byte IN_MEMORY = 2;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void hotHeadIsServedFromMemory() throws Exception {
+        File file = temporaryFolder.newFile("video.mp4");
+        byte[] onDisk = new byte[FILE_SIZE];
+        Arrays.fill(onDisk, ON_DISK);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(onDisk);
+        } finally {
+            out.close();
+        }
+        FileCache cache = new FileCache(file);
+        // memory copy of head differs from file, so every byte tells which tier served it
+        byte[] inMemory = new byte[HEAD_SIZE];
+        Arrays.fill(inMemory, IN_MEMORY);
+        SegmentedMemoryCache memoryCache = new MemoryCachePool(FILE_SIZE).get(file.getName());
+        assertTrue(memoryCache.tryAppend(inMemory, HEAD_SIZE));
+        cache.setMemoryCache(memoryCache);
+        HttpProxyCache proxyCache = new HttpProxyCache(new CachedOnlySource(FILE_SIZE), cache);
+
+        byte[] body = serve(proxyCache, new GetRequest("GET /video.mp4 HTTP/1.1\n"));
+
+        assertEquals(FILE_SIZE, body.length);
+        for (int i = 0; i < FILE_SIZE; i++) {
+            assertEquals("Byte " + i, i < HEAD_SIZE ? IN_MEMORY : ON_DISK, body[i]);
+        }
+    }
+
+    /**
+     * Serves request through socket accepted by channel, as blocking engine of
+     * {@link HttpProxyCacheServer} does, and returns body of response.
+     */
+    private byte[] serve(final HttpProxyCache proxyCache, final GetRequest request) throws Exception {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+            Socket client = new Socket("127.0.0.1", serverChannel.socket().getLocalPort());
+            final Socket socket = serverChannel.accept().socket();
+            assertNotNull(socket.getChannel());
+            Future<Void> response = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        proxyCache.processRequest(request, socket);
+                    } finally {
+                        socket.close();
+                    }
+                    return null;
+                }
+            });
+            byte[] received = readFully(client.getInputStream());
+            client.close();
+            response.get();
+            int headersEnd = indexOfHeadersEnd(received);
+            return Arrays.copyOfRange(received, headersEnd, received.length);
+        } finally {
+            executor.shutdownNow();
+            serverChannel.close();
+        }
+    }
+
+    private byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private int indexOfHeadersEnd(byte[] response) {
+        for (int i = 1; i < response.length; i++) {
+            if (response[i] == '\n' && response[i - 1] == '\n') {
+                return i + 1;
+            }
+        }
+        throw new AssertionError("No headers in response");
+    }
+
+    /**
+     * Source of fully cached file: network must not be touched at all.
+     */
+    private static final class CachedOnlySource implements UrlSource {
+
+        private final long length;
+
+        CachedOnlySource(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public void open(long offset) throws ProxyCacheException {
+            throw new ProxyCacheException("Cached file must not be fetched");
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public int read(byte[] buffer) throws ProxyCacheException {
+            throw new ProxyCacheException("Cached file must not be fetched");
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getMime() {
+            return "video/mp4";
+        }
+
+        @Override
+        public String getUrl() {
+            return "http://example.com/video.mp4";
+        }
+
+        @Override
+        public boolean isRangeSupported() {
+            return true;
+        }
+
+        @Override
+        public void setIfRange(String validator) {
+        }
+
+        @Override
+        public String getValidator() {
+            return null;
+        }
+
+        @Override
+        public long getResponseOffset() {
+            return 0;
+        }
+
+        @Override
+        public UrlSource copy() {
+            return this;
+        }
+    }
+}
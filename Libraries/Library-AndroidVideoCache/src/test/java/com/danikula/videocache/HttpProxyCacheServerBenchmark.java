@@ -0,0 +1,232 @@
+package com.danikula.videocache;
+
+import com.danikula.videocache.file.Md5FileNameGenerator;
+import com.danikula.videocache.file.TotalSizeLruDiskUsage;
+import com.danikula.videocache.headers.EmptyHeadersInjector;
+import com.danikula.videocache.sourcestorage.NoSourceInfoStorage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput benchmark of {@link HttpProxyCacheServer} running on JVM against local origin server.
+ * <p>
+ * Every round starts with empty cache: players read whole file through proxy while it is
+ * downloaded (cold pass) and then read it again from cache (warm pass). Both server engines are
+ * measured. Run {@link #main(String[])} from IDE or with test classpath, arguments are
+ * {@code [fileSizeMb] [players] [rounds]}.
+ */
+public class HttpProxyCacheServerBenchmark {
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("[Rr]ange: ?bytes=(\\d+)-");
+
+    private final byte[] content;
+    private final int players;
+    private final File cacheRoot;
+
+    public HttpProxyCacheServerBenchmark(int fileSize, int players, File cacheRoot) {
+        this.content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        this.players = players;
+        this.cacheRoot = cacheRoot;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int fileSizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        File cacheRoot = new File(System.getProperty("java.io.tmpdir"), "video-cache-benchmark");
+        HttpProxyCacheServerBenchmark benchmark = new HttpProxyCacheServerBenchmark(
+                fileSizeMb * 1024 * 1024, players, cacheRoot);
+        for (int round = 1; round <= rounds; round++) {
+            benchmark.run("blocking", false);
+            benchmark.run("nio", true);
+        }
+        System.exit(0);
+    }
+
+    public void run(String name, boolean nioServer) throws Exception {
+        deleteCache();
+        OriginServer origin = new OriginServer(content);
+        Config config = new Config(cacheRoot, new Md5FileNameGenerator(),
+                new TotalSizeLruDiskUsage(Long.MAX_VALUE), new NoSourceInfoStorage(),
+                new EmptyHeadersInjector(), false, nioServer, 1, 1, null, 0, null);
+        HttpProxyCacheServer proxy = new HttpProxyCacheServer(config);
+        try {
+            String proxyUrl = proxy.getProxyUrl(origin.url(), false);
+            long coldNanos = readByPlayers(proxyUrl);
+            long warmNanos = readByPlayers(proxyUrl);
+            CacheMetrics.Stats stats = proxy.getMetrics().snapshot().total;
+            System.out.println(String.format(Locale.US,
+                    "%-8s cold %8.1f MB/s, warm %8.1f MB/s, hit ratio %.2f, avg ttfb %d ms, max ttfb %d ms",
+                    name, throughput(coldNanos), throughput(warmNanos), stats.cacheHitRatio(),
+                    stats.averageTimeToFirstByteMs, stats.maxTimeToFirstByteMs));
+        } finally {
+            proxy.shutdown();
+            origin.shutdown();
+        }
+    }
+
+    private double throughput(long nanos) {
+        double megabytes = (double) content.length * players / (1024 * 1024);
+        return megabytes / (nanos / 1e9);
+    }
+
+    private long readByPlayers(final String proxyUrl) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(players);
+        try {
+            long start = System.nanoTime();
+            List<Future<Void>> results = new ArrayList<>();
+            for (int i = 0; i < players; i++) {
+                results.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        readAndVerify(proxyUrl);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void readAndVerify(String proxyUrl) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(proxyUrl).openConnection(Proxy.NO_PROXY);
+        InputStream in = connection.getInputStream();
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int offset = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != content[offset + i]) {
+                        throw new IllegalStateException("Wrong byte at offset " + (offset + i));
+                    }
+                }
+                offset += read;
+            }
+            if (offset != content.length) {
+                throw new IllegalStateException("Read " + offset + " bytes of " + content.length);
+            }
+        } finally {
+            in.close();
+            connection.disconnect();
+        }
+    }
+
+    private void deleteCache() {
+        File[] files = cacheRoot.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Minimal http server standing in for origin: serves single file with support of ranges.
+     */
+    private static final class OriginServer implements Runnable {
+
+        private final byte[] content;
+        private final ServerSocket serverSocket;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        OriginServer(byte[] content) throws IOException {
+            this.content = content;
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            executor.submit(this);
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/video.mp4";
+        }
+
+        void shutdown() throws IOException {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!serverSocket.isClosed()) {
+                    final Socket socket = serverSocket.accept();
+                    executor.submit(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                // server is closed
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                String requestLine = reader.readLine();
+                int offset = 0;
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    Matcher matcher = RANGE_PATTERN.matcher(line);
+                    if (matcher.find()) {
+                        offset = Integer.parseInt(matcher.group(1));
+                    }
+                }
+                boolean partial = offset > 0;
+                String headers = (partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n") +
+                        "Content-Type: video/mp4\r\n" +
+                        "Accept-Ranges: bytes\r\n" +
+                        "Connection: close\r\n" +
+                        "Content-Length: " + (content.length - offset) + "\r\n" +
+                        (partial ? "Content-Range: bytes " + offset + "-" + (content.length - 1) + "/" +
+                                content.length + "\r\n" : "") +
+                        "\r\n";
+                OutputStream out = socket.getOutputStream();
+                out.write(headers.getBytes("UTF-8"));
+                if (requestLine != null && requestLine.startsWith("GET")) {
+                    out.write(content, offset, content.length - offset);
+                }
+                out.flush();
+            } catch (IOException e) {
+                // client closed connection
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
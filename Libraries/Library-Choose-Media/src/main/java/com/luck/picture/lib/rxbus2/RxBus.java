@@ -1,20 +1,14 @@
 package com.luck.picture.lib.rxbus2;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.Scheduler;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.disposables.Disposable;
-import io.reactivex.functions.Consumer;
-import io.reactivex.functions.Function;
-import io.reactivex.functions.Predicate;
 import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.PublishSubject;
 import io.reactivex.subjects.Subject;
@@ -29,11 +23,17 @@ public class RxBus {
     public static final String LOG_BUS = "RXBUS_LOG";
     private static volatile RxBus defaultInstance;
 
-    private Map<Class, List<Disposable>> subscriptionsByEventType = new HashMap<>();
+    /**
+     * 不带 code 的订阅方法, 以 event 类型为 key
+     */
+    private final ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<SubscriberMethod>> subscriberMethodByEventType = new ConcurrentHashMap<>();
 
-    private Map<Object, List<Class>> eventTypesBySubscriber = new HashMap<>();
+    /**
+     * 带 code 的订阅方法, 以 code 为 key
+     */
+    private final ConcurrentHashMap<Integer, CopyOnWriteArrayList<SubscriberMethod>> subscriberMethodByCode = new ConcurrentHashMap<>();
 
-    private Map<Class, List<SubscriberMethod>> subscriberMethodByEventType = new HashMap<>();
+    private final ConcurrentHashMap<Object, List<SubscriberMethod>> subscriberMethodsBySubscriber = new ConcurrentHashMap<>();
 
     private final Subject<Object> bus;
 
@@ -66,193 +66,84 @@ public class RxBus {
     }
 
     /**
-     * 根据传递的code和 eventType 类型返回特定类型(eventType)的 被观察者
-     *
-     * @param code      事件code
-     * @param eventType 事件类型
-     */
-    private <T> Flowable<T> toObservable(final int code, final Class<T> eventType) {
-        return bus.toFlowable(BackpressureStrategy.BUFFER).ofType(Message.class)
-                .filter(new Predicate<Message>() {
-                    @Override
-                    public boolean test(Message o) throws Exception {
-                        return o.getCode() == code && eventType.isInstance(o.getObject());
-                    }
-                }).map(new Function<Message, Object>() {
-                    @Override
-                    public Object apply(Message o) throws Exception {
-                        return o.getObject();
-                    }
-                }).cast(eventType);
-    }
-
-    /**
-     * 注册
+     * 注册, 订阅方法在订阅者类第一次注册时解析并缓存
      *
      * @param subscriber 订阅者
      */
-    public void register(Object subscriber) {
-        Class<?> subClass = subscriber.getClass();
-        Method[] methods = subClass.getDeclaredMethods();
-        for (Method method : methods) {
-            if (method.isAnnotationPresent(Subscribe.class)) {
-                //获得参数类型
-                Class[] parameterType = method.getParameterTypes();
-                //参数不为空 且参数个数为1
-                if (parameterType != null && parameterType.length == 1) {
-
-                    Class eventType = parameterType[0];
-
-                    addEventTypeToMap(subscriber, eventType);
-                    Subscribe sub = method.getAnnotation(Subscribe.class);
-                    int code = sub.code();
-                    ThreadMode threadMode = sub.threadMode();
-
-                    SubscriberMethod subscriberMethod = new SubscriberMethod(subscriber, method, eventType, code,
-                            threadMode);
-                    addSubscriberToMap(eventType, subscriberMethod);
-
-                    addSubscriber(subscriberMethod);
-                } else if (parameterType == null || parameterType.length == 0) {
-
-                    Class eventType = BusData.class;
-
-                    addEventTypeToMap(subscriber, eventType);
-                    Subscribe sub = method.getAnnotation(Subscribe.class);
-                    int code = sub.code();
-                    ThreadMode threadMode = sub.threadMode();
-
-                    SubscriberMethod subscriberMethod = new SubscriberMethod(subscriber, method, eventType, code,
-                            threadMode);
-                    addSubscriberToMap(eventType, subscriberMethod);
-
-                    addSubscriber(subscriberMethod);
-                }
+    public synchronized void register(Object subscriber) {
+        if (subscriberMethodsBySubscriber.containsKey(subscriber)) {
+            return;
+        }
+        SubscriberMethodInfo[] infos = SubscriberMethodInfo.find(subscriber.getClass());
+        List<SubscriberMethod> subscriberMethods = new ArrayList<>(infos.length);
+        for (SubscriberMethodInfo info : infos) {
+            SubscriberMethod subscriberMethod = new SubscriberMethod(subscriber, info);
+            subscriberMethod.worker = createWorker(subscriberMethod.threadMode);
+            if (subscriberMethod.code == -1) {
+                addToMap(subscriberMethodByEventType, subscriberMethod.eventType, subscriberMethod);
+            } else {
+                addToMap(subscriberMethodByCode, subscriberMethod.code, subscriberMethod);
             }
-        }
-    }
-
-    /**
-     * 将event的类型以订阅中subscriber为key保存到map里
-     *
-     * @param subscriber 订阅者
-     * @param eventType  event类型
-     */
-    private void addEventTypeToMap(Object subscriber, Class eventType) {
-        List<Class> eventTypes = eventTypesBySubscriber.get(subscriber);
-        if (eventTypes == null) {
-            eventTypes = new ArrayList<>();
-            eventTypesBySubscriber.put(subscriber, eventTypes);
-        }
-
-        if (!eventTypes.contains(eventType)) {
-            eventTypes.add(eventType);
-        }
-    }
-
-    /**
-     * 将注解方法信息以event类型为key保存到map中
-     *
-     * @param eventType        event类型
-     * @param subscriberMethod 注解方法信息
-     */
-    private void addSubscriberToMap(Class eventType, SubscriberMethod subscriberMethod) {
-        List<SubscriberMethod> subscriberMethods = subscriberMethodByEventType.get(eventType);
-        if (subscriberMethods == null) {
-            subscriberMethods = new ArrayList<>();
-            subscriberMethodByEventType.put(eventType, subscriberMethods);
-        }
-
-        if (!subscriberMethods.contains(subscriberMethod)) {
             subscriberMethods.add(subscriberMethod);
         }
+        subscriberMethodsBySubscriber.put(subscriber, subscriberMethods);
     }
 
-    /**
-     * 将订阅事件以event类型为key保存到map,用于取消订阅时用
-     *
-     * @param eventType  event类型
-     * @param disposable 订阅事件
-     */
-    private void addSubscriptionToMap(Class eventType, Disposable disposable) {
-        List<Disposable> disposables = subscriptionsByEventType.get(eventType);
-        if (disposables == null) {
-            disposables = new ArrayList<>();
-            subscriptionsByEventType.put(eventType, disposables);
-        }
-
-        if (!disposables.contains(disposable)) {
-            disposables.add(disposable);
-        }
-    }
-
-    /**
-     * 用RxJava添加订阅者
-     *
-     * @param subscriberMethod d
-     */
-    @SuppressWarnings("unchecked")
-    private void addSubscriber(final SubscriberMethod subscriberMethod) {
-        Flowable flowable;
-        if (subscriberMethod.code == -1) {
-            flowable = toObservable(subscriberMethod.eventType);
-        } else {
-            flowable = toObservable(subscriberMethod.code, subscriberMethod.eventType);
+    private static <K> void addToMap(ConcurrentHashMap<K, CopyOnWriteArrayList<SubscriberMethod>> map, K key,
+                                     SubscriberMethod subscriberMethod) {
+        CopyOnWriteArrayList<SubscriberMethod> subscriberMethods = map.get(key);
+        if (subscriberMethods == null) {
+            subscriberMethods = new CopyOnWriteArrayList<>();
+            map.put(key, subscriberMethods);
         }
-        Disposable subscription = postToObservable(flowable, subscriberMethod)
-                .subscribe(new Consumer<Object>() {
-                    @Override
-                    public void accept(Object o) throws Exception {
-                        callEvent(subscriberMethod, o);
-                    }
-                });
-
-        addSubscriptionToMap(subscriberMethod.subscriber.getClass(), subscription);
+        subscriberMethods.add(subscriberMethod);
     }
 
     /**
-     * 用于处理订阅事件在那个线程中执行
+     * 用于处理订阅事件在那个线程中执行, CURRENT_THREAD 在发送事件的线程中直接回调
      *
-     * @param observable       d
-     * @param subscriberMethod d
-     * @return Observable
+     * @param threadMode threadMode
+     * @return 按顺序执行回调的 Worker, CURRENT_THREAD 时为 null
      */
-    private Flowable postToObservable(Flowable observable, SubscriberMethod subscriberMethod) {
-        Scheduler scheduler;
-        switch (subscriberMethod.threadMode) {
+    private Scheduler.Worker createWorker(ThreadMode threadMode) {
+        switch (threadMode) {
             case MAIN:
-                scheduler = AndroidSchedulers.mainThread();
-                break;
+                return AndroidSchedulers.mainThread().createWorker();
 
             case NEW_THREAD:
-                scheduler = Schedulers.newThread();
-                break;
+                return Schedulers.newThread().createWorker();
 
             case CURRENT_THREAD:
-                scheduler = Schedulers.trampoline();
-                break;
+                return null;
             default:
-                throw new IllegalStateException("Unknown thread mode: " + subscriberMethod.threadMode);
+                throw new IllegalStateException("Unknown thread mode: " + threadMode);
         }
-        return observable.observeOn(scheduler);
     }
 
     /**
-     * 回调到订阅者的方法中
+     * 回调到订阅者的方法中, 只回调参数类型与事件类型相同的方法
      *
-     * @param method code
-     * @param object obj
+     * @param subscriberMethods 订阅方法
+     * @param object            事件
      */
-    private void callEvent(SubscriberMethod method, Object object) {
-        Class eventClass = object.getClass();
-        List<SubscriberMethod> methods = subscriberMethodByEventType.get(eventClass);
-        if (methods != null && methods.size() > 0) {
-            for (SubscriberMethod subscriberMethod : methods) {
-                Subscribe sub = subscriberMethod.method.getAnnotation(Subscribe.class);
-                int c = sub.code();
-                if (c == method.code && method.subscriber.equals(subscriberMethod.subscriber) && method.method.equals(subscriberMethod.method)) {
-                    subscriberMethod.invoke(object);
-                }
+    private void callEvent(List<SubscriberMethod> subscriberMethods, final Object object) {
+        if (subscriberMethods == null) {
+            return;
+        }
+        Class<?> eventClass = object.getClass();
+        for (final SubscriberMethod subscriberMethod : subscriberMethods) {
+            if (subscriberMethod.eventType != eventClass) {
+                continue;
+            }
+            if (subscriberMethod.worker == null) {
+                subscriberMethod.invoke(object);
+            } else {
+                subscriberMethod.worker.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        subscriberMethod.invoke(object);
+                    }
+                });
             }
         }
     }
@@ -263,8 +154,8 @@ public class RxBus {
      * @param subscriber
      * @return
      */
-    public synchronized boolean isRegistered(Object subscriber) {
-        return eventTypesBySubscriber.containsKey(subscriber);
+    public boolean isRegistered(Object subscriber) {
+        return subscriberMethodsBySubscriber.containsKey(subscriber);
     }
 
     /**
@@ -272,93 +163,48 @@ public class RxBus {
      *
      * @param subscriber object
      */
-    public void unregister(Object subscriber) {
-        List<Class> subscribedTypes = eventTypesBySubscriber.get(subscriber);
-        if (subscribedTypes != null) {
-            for (Class<?> eventType : subscribedTypes) {
-                unSubscribeByEventType(subscriber.getClass());
-                unSubscribeMethodByEventType(subscriber, eventType);
-            }
-            eventTypesBySubscriber.remove(subscriber);
-        }
-    }
-
-    /**
-     * subscriptions unsubscribe
-     *
-     * @param eventType eventType
-     */
-    private void unSubscribeByEventType(Class eventType) {
-        List<Disposable> disposables = subscriptionsByEventType.get(eventType);
-        if (disposables != null) {
-            Iterator<Disposable> iterator = disposables.iterator();
-            while (iterator.hasNext()) {
-                Disposable disposable = iterator.next();
-                if (disposable != null && !disposable.isDisposed()) {
-                    disposable.dispose();
-                    iterator.remove();
+    public synchronized void unregister(Object subscriber) {
+        List<SubscriberMethod> subscriberMethods = subscriberMethodsBySubscriber.remove(subscriber);
+        if (subscriberMethods != null) {
+            for (SubscriberMethod subscriberMethod : subscriberMethods) {
+                if (subscriberMethod.code == -1) {
+                    removeFromMap(subscriberMethodByEventType, subscriberMethod.eventType, subscriberMethod);
+                } else {
+                    removeFromMap(subscriberMethodByCode, subscriberMethod.code, subscriberMethod);
+                }
+                if (subscriberMethod.worker != null) {
+                    subscriberMethod.worker.dispose();
                 }
             }
         }
     }
 
     /**
-     * 移除subscriber对应的subscriberMethods
-     *
-     * @param subscriber subscriber
-     * @param eventType  eventType
+     * 移除订阅方法, 没有订阅方法的 key 一并移除
      */
-    private void unSubscribeMethodByEventType(Object subscriber, Class eventType) {
-        List<SubscriberMethod> subscriberMethods = subscriberMethodByEventType.get(eventType);
+    private static <K> void removeFromMap(ConcurrentHashMap<K, CopyOnWriteArrayList<SubscriberMethod>> map, K key,
+                                          SubscriberMethod subscriberMethod) {
+        CopyOnWriteArrayList<SubscriberMethod> subscriberMethods = map.get(key);
         if (subscriberMethods != null) {
-            Iterator<SubscriberMethod> iterator = subscriberMethods.iterator();
-            while (iterator.hasNext()) {
-                SubscriberMethod subscriberMethod = iterator.next();
-                if (subscriberMethod.subscriber.equals(subscriber)) {
-                    iterator.remove();
-                }
+            subscriberMethods.remove(subscriberMethod);
+            if (subscriberMethods.isEmpty()) {
+                map.remove(key);
             }
         }
     }
 
     public void send(int code, Object o) {
-        bus.onNext(new Message(code, o));
+        callEvent(subscriberMethodByCode.get(code), o);
     }
 
     public void post(Object o) {
-        bus.onNext(o);
+        callEvent(subscriberMethodByEventType.get(o.getClass()), o);
+        if (bus.hasSubscribers()) {
+            bus.onNext(o);
+        }
     }
 
     public void send(int code) {
-        bus.onNext(new Message(code, new BusData()));
-    }
-
-    private class Message {
-        private int code;
-        private Object object;
-
-        public Message() {
-        }
-
-        private Message(int code, Object o) {
-            this.code = code;
-            this.object = o;
-        }
-
-        private int getCode() {
-            return code;
-        }
-
-        public void setCode(int code) {
-            this.code = code;
-        }
-
-        private Object getObject() {
-            return object;
-        }
-
-        public void setObject(Object object) {
-            this.object = object;
-        }
+        send(code, new BusData());
     }
 }
@@ -3,6 +3,8 @@ package com.luck.picture.lib.rxbus2;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import io.reactivex.Scheduler;
+
 /**
  * Created by gorden on 2016/7/23.
  */
@@ -12,6 +14,11 @@ public class SubscriberMethod {
     public Class<?> eventType;
     public Object subscriber;
     public int code;
+    private final boolean hasParameter;
+    /**
+     * 按顺序执行 MAIN 和 NEW_THREAD 的回调, 取消注册时 dispose
+     */
+    Scheduler.Worker worker;
 
     public SubscriberMethod(Object subscriber, Method method, Class<?> eventType, int code, ThreadMode threadMode) {
         this.method = method;
@@ -19,6 +26,16 @@ public class SubscriberMethod {
         this.eventType = eventType;
         this.subscriber = subscriber;
         this.code = code;
+        this.hasParameter = method.getParameterTypes().length == 1;
+    }
+
+    SubscriberMethod(Object subscriber, SubscriberMethodInfo info) {
+        this.method = info.method;
+        this.threadMode = info.threadMode;
+        this.eventType = info.eventType;
+        this.subscriber = subscriber;
+        this.code = info.code;
+        this.hasParameter = info.hasParameter;
     }
 
     /**
@@ -28,10 +45,9 @@ public class SubscriberMethod {
      */
     public void invoke(Object o) {
         try {
-            Class[] parameterType = method.getParameterTypes();
-            if (parameterType != null && parameterType.length == 1) {
+            if (hasParameter) {
                 method.invoke(subscriber, o);
-            } else if (parameterType == null || parameterType.length == 0) {
+            } else {
                 method.invoke(subscriber);
             }
         } catch (IllegalAccessException e) {
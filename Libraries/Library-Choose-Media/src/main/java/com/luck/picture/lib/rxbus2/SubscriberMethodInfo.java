@@ -0,0 +1,70 @@
+package com.luck.picture.lib.rxbus2;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 订阅方法的元数据(参数类型、注解的值),每个订阅者类只在第一次注册时解析一次
+ */
+final class SubscriberMethodInfo {
+    private static final ConcurrentHashMap<Class<?>, SubscriberMethodInfo[]> METHOD_CACHE = new ConcurrentHashMap<>();
+    private static final SubscriberMethodInfo[] NO_METHODS = new SubscriberMethodInfo[0];
+
+    final Method method;
+    final Class<?> eventType;
+    final int code;
+    final ThreadMode threadMode;
+    /**
+     * 方法没有参数时 eventType 为 {@link BusData}
+     */
+    final boolean hasParameter;
+
+    private SubscriberMethodInfo(Method method, Class<?> eventType, int code, ThreadMode threadMode,
+                                 boolean hasParameter) {
+        this.method = method;
+        this.eventType = eventType;
+        this.code = code;
+        this.threadMode = threadMode;
+        this.hasParameter = hasParameter;
+    }
+
+    /**
+     * 获取订阅者类中带 {@link Subscribe} 注解的方法
+     *
+     * @param subscriberClass 订阅者类
+     * @return 订阅方法, 不要修改返回的数组
+     */
+    static SubscriberMethodInfo[] find(Class<?> subscriberClass) {
+        SubscriberMethodInfo[] infos = METHOD_CACHE.get(subscriberClass);
+        if (infos == null) {
+            infos = scan(subscriberClass);
+            SubscriberMethodInfo[] previous = METHOD_CACHE.putIfAbsent(subscriberClass, infos);
+            if (previous != null) {
+                infos = previous;
+            }
+        }
+        return infos;
+    }
+
+    private static SubscriberMethodInfo[] scan(Class<?> subscriberClass) {
+        List<SubscriberMethodInfo> infos = new ArrayList<>();
+        for (Method method : subscriberClass.getDeclaredMethods()) {
+            Subscribe sub = method.getAnnotation(Subscribe.class);
+            if (sub == null) {
+                continue;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (parameterTypes.length > 1) {
+                continue;
+            }
+            boolean hasParameter = parameterTypes.length == 1;
+            Class<?> eventType = hasParameter ? parameterTypes[0] : BusData.class;
+            // 省去每次调用时的访问检查
+            method.setAccessible(true);
+            infos.add(new SubscriberMethodInfo(method, eventType, sub.code(), sub.threadMode(), hasParameter));
+        }
+        return infos.isEmpty() ? NO_METHODS : infos.toArray(new SubscriberMethodInfo[infos.size()]);
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ *  Copyright (c) 2019 YobertJomi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package custom.org.greenrobot.eventbus.annotationprocessor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates {@code SubscriberInfoIndex} of all classes with {@code @Subscribe} methods of the
+ * module. Index carries custom {@code tag} of methods and calls them with generated invoker, so
+ * neither registration nor event delivery needs reflection.
+ * <p/>
+ * Index class name is set with {@code eventBusIndex} processor option. Without option index is
+ * generated as {@code custom.org.greenrobot.eventbus.EventBusIndex}, which {@code EventBusBuilder}
+ * picks up automatically; only one module of an app may use the default name.
+ * <p/>
+ * Classes that can't be referenced from index package (e.g. private or anonymous ones) are left
+ * out of index and are handled by reflection as before.
+ */
+@SupportedAnnotationTypes(EventBusAnnotationProcessor.SUBSCRIBE)
+@SupportedOptions(value = {EventBusAnnotationProcessor.OPTION_EVENT_BUS_INDEX,
+        EventBusAnnotationProcessor.OPTION_VERBOSE})
+public class EventBusAnnotationProcessor extends AbstractProcessor {
+    public static final String OPTION_EVENT_BUS_INDEX = "eventBusIndex";
+    public static final String OPTION_VERBOSE = "verbose";
+
+    static final String SUBSCRIBE = "custom.org.greenrobot.eventbus.Subscribe";
+    static final String DEFAULT_INDEX = "custom.org.greenrobot.eventbus.EventBusIndex";
+    private static final String DEFAULT_TAG = "EventBus";
+    private static final String DEFAULT_THREAD_MODE = "POSTING";
+
+    /**
+     * Found subscriber methods for a class (without superclasses).
+     */
+    private final Map<TypeElement, List<ExecutableElement>> methodsByClass = new LinkedHashMap<>();
+    private final Set<TypeElement> classesToSkip = new HashSet<>();
+
+    private boolean writerRoundDone;
+    private int round;
+    private boolean verbose;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latest();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        Messager messager = processingEnv.getMessager();
+        try {
+            String index = processingEnv.getOptions().get(OPTION_EVENT_BUS_INDEX);
+            if (index == null) {
+                index = DEFAULT_INDEX;
+            }
+            verbose = Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_VERBOSE));
+            int lastPeriod = index.lastIndexOf('.');
+            String indexPackage = lastPeriod != -1 ? index.substring(0, lastPeriod) : "";
+
+            round++;
+            if (verbose) {
+                messager.printMessage(Diagnostic.Kind.NOTE, "Processing round " + round + ", new annotations: " +
+                        !annotations.isEmpty() + ", processingOver: " + env.processingOver());
+            }
+            if (env.processingOver()) {
+                if (!annotations.isEmpty()) {
+                    messager.printMessage(Diagnostic.Kind.ERROR,
+                            "Unexpected processing state: annotations still available after processing over");
+                    return false;
+                }
+            }
+            if (annotations.isEmpty()) {
+                return false;
+            }
+
+            if (writerRoundDone) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Unexpected processing state: annotations still available after writing.");
+            }
+            collectSubscribers(annotations, env, messager);
+            checkForSubscribersToSkip(messager, indexPackage);
+
+            if (!methodsByClass.isEmpty()) {
+                createInfoIndexFile(index);
+            } else {
+                messager.printMessage(Diagnostic.Kind.WARNING, "No @Subscribe annotations found");
+            }
+            writerRoundDone = true;
+        } catch (RuntimeException e) {
+            // IntelliJ does not handle exceptions nicely, so log and print a message
+            e.printStackTrace();
+            messager.printMessage(Diagnostic.Kind.ERROR, "Unexpected error in EventBusAnnotationProcessor: " + e);
+        }
+        return true;
+    }
+
+    private void collectSubscribers(Set<? extends TypeElement> annotations, RoundEnvironment env,
+                                    Messager messager) {
+        for (TypeElement annotation : annotations) {
+            Set<? extends Element> elements = env.getElementsAnnotatedWith(annotation);
+            for (Element element : elements) {
+                if (element instanceof ExecutableElement) {
+                    ExecutableElement method = (ExecutableElement) element;
+                    if (checkHasNoErrors(method, messager)) {
+                        TypeElement classElement = (TypeElement) method.getEnclosingElement();
+                        List<ExecutableElement> methods = methodsByClass.get(classElement);
+                        if (methods == null) {
+                            methods = new ArrayList<>();
+                            methodsByClass.put(classElement, methods);
+                        }
+                        methods.add(method);
+                    }
+                } else {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "@Subscribe is only valid for methods", element);
+                }
+            }
+        }
+    }
+
+    private boolean checkHasNoErrors(ExecutableElement element, Messager messager) {
+        if (element.getModifiers().contains(Modifier.STATIC)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Subscriber method must not be static", element);
+            return false;
+        }
+
+        if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Subscriber method must be public", element);
+            return false;
+        }
+
+        List<? extends VariableElement> parameters = element.getParameters();
+        if (parameters.size() != 1) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Subscriber method must have exactly 1 parameter", element);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Subscriber classes and event types of their methods must be accessible from index class.
+     */
+    private void checkForSubscribersToSkip(Messager messager, String indexPackage) {
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+            TypeElement subscriberClass = entry.getKey();
+            if (!isVisible(indexPackage, subscriberClass)) {
+                skip(messager, subscriberClass, "class is not accessible from index package " + indexPackage);
+                continue;
+            }
+            for (ExecutableElement method : entry.getValue()) {
+                TypeMirror eventType = getEventType(method);
+                if (eventType instanceof DeclaredType) {
+                    TypeElement eventTypeElement = (TypeElement) ((DeclaredType) eventType).asElement();
+                    if (!isVisible(indexPackage, eventTypeElement)) {
+                        skip(messager, subscriberClass, "event type " + eventTypeElement +
+                                " is not accessible from index package " + indexPackage);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void skip(Messager messager, TypeElement subscriberClass, String reason) {
+        classesToSkip.add(subscriberClass);
+        if (verbose) {
+            messager.printMessage(Diagnostic.Kind.NOTE, "Falling back to reflection for " + subscriberClass +
+                    ": " + reason);
+        }
+    }
+
+    private boolean isVisible(String indexPackage, TypeElement typeElement) {
+        if (typeElement.getNestingKind() == NestingKind.ANONYMOUS
+                || typeElement.getNestingKind() == NestingKind.LOCAL) {
+            return false;
+        }
+        Set<Modifier> modifiers = typeElement.getModifiers();
+        boolean visible;
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            visible = true;
+        } else if (modifiers.contains(Modifier.PRIVATE)) {
+            visible = false;
+        } else {
+            visible = getPackageElement(typeElement).getQualifiedName().toString().equals(indexPackage);
+        }
+        Element enclosing = typeElement.getEnclosingElement();
+        if (visible && enclosing instanceof TypeElement) {
+            return isVisible(indexPackage, (TypeElement) enclosing);
+        }
+        return visible;
+    }
+
+    private PackageElement getPackageElement(TypeElement typeElement) {
+        Element candidate = typeElement.getEnclosingElement();
+        while (!(candidate instanceof PackageElement)) {
+            candidate = candidate.getEnclosingElement();
+        }
+        return (PackageElement) candidate;
+    }
+
+    private TypeMirror getEventType(ExecutableElement method) {
+        TypeMirror type = method.getParameters().get(0).asType();
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    private void createInfoIndexFile(String index) {
+        BufferedWriter writer = null;
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(index);
+            int period = index.lastIndexOf('.');
+            String myPackage = period > 0 ? index.substring(0, period) : null;
+            String clazz = index.substring(period + 1);
+            writer = new BufferedWriter(sourceFile.openWriter());
+            if (myPackage != null) {
+                writer.write("package " + myPackage + ";\n\n");
+            }
+            writer.write("import custom.org.greenrobot.eventbus.ThreadMode;\n");
+            writer.write("import custom.org.greenrobot.eventbus.meta.SimpleSubscriberInfo;\n");
+            writer.write("import custom.org.greenrobot.eventbus.meta.SubscriberInfo;\n");
+            writer.write("import custom.org.greenrobot.eventbus.meta.SubscriberInfoIndex;\n");
+            writer.write("import custom.org.greenrobot.eventbus.meta.SubscriberMethodInfo;\n");
+            writer.write("import custom.org.greenrobot.eventbus.meta.SubscriberMethodInvoker;\n\n");
+            writer.write("import java.util.HashMap;\n");
+            writer.write("import java.util.Map;\n\n");
+            writer.write("/** This class is generated by EventBus, do not edit. */\n");
+            writer.write("@SuppressWarnings(\"unchecked\")\n");
+            writer.write("public class " + clazz + " implements SubscriberInfoIndex {\n");
+            writer.write("    private static final Map<Class<?>, SubscriberInfo> SUBSCRIBER_INDEX;\n\n");
+            writer.write("    static {\n");
+            writer.write("        SUBSCRIBER_INDEX = new HashMap<Class<?>, SubscriberInfo>();\n\n");
+            List<String> invocations = writeIndexLines(writer);
+            writer.write("    }\n\n");
+            writer.write("    private static void putIndex(SubscriberInfo info) {\n");
+            writer.write("        SUBSCRIBER_INDEX.put(info.getSubscriberClass(), info);\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {\n");
+            writer.write("        return SUBSCRIBER_INDEX.get(subscriberClass);\n");
+            writer.write("    }\n\n");
+            writeInvoker(writer, invocations);
+            writer.write("}\n");
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write source for " + index, e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    //Silent
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes index entries of all subscriber classes.
+     *
+     * @return statements calling subscriber methods, position of statement is id of its invoker.
+     */
+    private List<String> writeIndexLines(BufferedWriter writer) throws IOException {
+        List<String> invocations = new ArrayList<>();
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+            TypeElement subscriberTypeElement = entry.getKey();
+            if (classesToSkip.contains(subscriberTypeElement)) {
+                continue;
+            }
+            String subscriberClass = subscriberTypeElement.getQualifiedName().toString();
+            writer.write("        putIndex(new SimpleSubscriberInfo(" + subscriberClass +
+                    ".class, true, new SubscriberMethodInfo[] {\n");
+            for (ExecutableElement method : entry.getValue()) {
+                String eventClass = getEventType(method).toString();
+                String invoker = "null";
+                if (throwsOnlyExceptions(method)) {
+                    invoker = "new Invoker(" + invocations.size() + ")";
+                    invocations.add("((" + subscriberClass + ") subscriber)." + method.getSimpleName() +
+                            "((" + eventClass + ") event);");
+                }
+                writer.write("            " + createSubscriberMethodInfo(method, eventClass, invoker) + ",\n");
+            }
+            writer.write("        }));\n\n");
+        }
+        return invocations;
+    }
+
+    /**
+     * Generated invoker declares {@link Exception}, methods throwing other throwables are called
+     * by reflection.
+     */
+    private boolean throwsOnlyExceptions(ExecutableElement method) {
+        TypeMirror exception = processingEnv.getElementUtils().getTypeElement("java.lang.Exception").asType();
+        for (TypeMirror thrownType : method.getThrownTypes()) {
+            if (!processingEnv.getTypeUtils().isAssignable(thrownType, exception)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String createSubscriberMethodInfo(ExecutableElement method, String eventClass, String invoker) {
+        AnnotationMirror subscribe = getSubscribeMirror(method);
+        String threadMode = DEFAULT_THREAD_MODE;
+        int priority = 0;
+        boolean sticky = false;
+        String tag = DEFAULT_TAG;
+        boolean conflate = false;
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(subscribe);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : values.entrySet()) {
+            String name = value.getKey().getSimpleName().toString();
+            Object constant = value.getValue().getValue();
+            if ("threadMode".equals(name)) {
+                threadMode = ((VariableElement) constant).getSimpleName().toString();
+            } else if ("priority".equals(name)) {
+                priority = (Integer) constant;
+            } else if ("sticky".equals(name)) {
+                sticky = (Boolean) constant;
+            } else if ("tag".equals(name)) {
+                tag = (String) constant;
+            } else if ("conflate".equals(name)) {
+                conflate = (Boolean) constant;
+            }
+        }
+        return "new SubscriberMethodInfo(\"" + method.getSimpleName() + "\", " + eventClass + ".class, " +
+                "ThreadMode." + threadMode + ", " + priority + ", " + sticky + ", " + toLiteral(tag) + ", " +
+                conflate + ", " + invoker + ")";
+    }
+
+    private AnnotationMirror getSubscribeMirror(ExecutableElement method) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(SUBSCRIBE)) {
+                return mirror;
+            }
+        }
+        throw new IllegalStateException("No @Subscribe annotation on " + method);
+    }
+
+    private void writeInvoker(BufferedWriter writer, List<String> invocations) throws IOException {
+        writer.write("    private static final class Invoker implements SubscriberMethodInvoker {\n");
+        writer.write("        private final int id;\n\n");
+        writer.write("        Invoker(int id) {\n");
+        writer.write("            this.id = id;\n");
+        writer.write("        }\n\n");
+        writer.write("        @Override\n");
+        writer.write("        public void invoke(Object subscriber, Object event) throws Exception {\n");
+        writer.write("            switch (id) {\n");
+        for (int i = 0; i < invocations.size(); i++) {
+            writer.write("                case " + i + ":\n");
+            writer.write("                    " + invocations.get(i) + "\n");
+            writer.write("                    return;\n");
+        }
+        writer.write("                default:\n");
+        writer.write("                    throw new IllegalStateException(\"Unknown subscriber method \" + id);\n");
+        writer.write("            }\n");
+        writer.write("        }\n");
+        writer.write("    }\n");
+    }
+
+    private static String toLiteral(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                // keeps generated source independent of compiler encoding
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
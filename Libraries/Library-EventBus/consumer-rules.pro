@@ -0,0 +1,2 @@
+# EventBusBuilder loads index generated with default name by Class.forName
+-keep class custom.org.greenrobot.eventbus.EventBusIndex { <init>(); }
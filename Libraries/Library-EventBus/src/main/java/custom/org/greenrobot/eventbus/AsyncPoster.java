@@ -16,32 +16,14 @@
 package custom.org.greenrobot.eventbus;
 
 /**
- * Posts events in background.
+ * Posts events in background, each event may be delivered in another thread.
  *
  * @author Markus
  */
-class AsyncPoster implements Runnable {
+class AsyncPoster extends ExecutorPoster {
 
-    private final PendingPostQueue queue;
-    private final EventBus eventBus;
-
-    AsyncPoster(EventBus eventBus) {
-        this.eventBus = eventBus;
-        queue = new PendingPostQueue();
-    }
-
-    public void enqueue(Subscription subscription, Object event) {
-        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
-        queue.enqueue(pendingPost);
-        eventBus.getExecutorService().execute(this);
-    }
-
-    @Override
-    public void run() {
-        PendingPost pendingPost = queue.poll();
-        if (pendingPost == null) {
-            throw new IllegalStateException("No pending post available");
-        }
-        eventBus.invokeSubscriber(pendingPost);
+    AsyncPoster(EventBus eventBus, int parallelism, int capacity, RejectionPolicy rejectionPolicy,
+                PosterMetrics metrics) {
+        super(eventBus, ThreadMode.ASYNC, parallelism, 0, capacity, rejectionPolicy, metrics);
     }
 }
@@ -15,59 +15,15 @@
  */
 package custom.org.greenrobot.eventbus;
 
-import android.util.Log;
-
 /**
- * Posts events in background.
+ * Posts events in background, one by one in single thread.
  *
  * @author Markus
  */
-final class BackgroundPoster implements Runnable {
-
-    private final PendingPostQueue queue;
-    private final EventBus eventBus;
-
-    private volatile boolean executorRunning;
-
-    BackgroundPoster(EventBus eventBus) {
-        this.eventBus = eventBus;
-        queue = new PendingPostQueue();
-    }
-
-    public void enqueue(Subscription subscription, Object event) {
-        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
-        synchronized (this) {
-            queue.enqueue(pendingPost);
-            if (!executorRunning) {
-                executorRunning = true;
-                eventBus.getExecutorService().execute(this);
-            }
-        }
-    }
+final class BackgroundPoster extends ExecutorPoster {
 
-    @Override
-    public void run() {
-        try {
-            try {
-                while (true) {
-                    PendingPost pendingPost = queue.poll(1000);
-                    if (pendingPost == null) {
-                        synchronized (this) {
-                            // Check again, this time in synchronized
-                            pendingPost = queue.poll();
-                            if (pendingPost == null) {
-                                executorRunning = false;
-                                return;
-                            }
-                        }
-                    }
-                    eventBus.invokeSubscriber(pendingPost);
-                }
-            } catch (InterruptedException e) {
-                Log.w("Event", Thread.currentThread().getName() + " was interruppted", e);
-            }
-        } finally {
-            executorRunning = false;
-        }
+    BackgroundPoster(EventBus eventBus, int capacity, RejectionPolicy rejectionPolicy,
+                     PosterMetrics metrics) {
+        super(eventBus, ThreadMode.BACKGROUND, 1, 1000, capacity, rejectionPolicy, metrics);
     }
 }
@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c) 2019 YobertJomi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package custom.org.greenrobot.eventbus;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Main thread poster draining its queue once per frame: events enqueued between two frames are
+ * delivered together in {@link Choreographer} frame callback, and if delivery takes longer than
+ * frame budget, the rest waits for the next frame. So bursts of events can't flood main looper
+ * with messages and starve drawing.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class ChoreographerPoster implements Poster, Choreographer.FrameCallback {
+
+    private final PendingPostQueue queue;
+    private final long maxNanosPerFrame;
+    private final EventBus eventBus;
+    private final Handler handler;
+    /**
+     * Choreographer is thread local, so it is obtained on main thread by first scheduling.
+     */
+    private volatile Choreographer choreographer;
+    private boolean frameScheduled;
+
+    private final Runnable scheduleOnMainThread = new Runnable() {
+        @Override
+        public void run() {
+            choreographer = Choreographer.getInstance();
+            choreographer.postFrameCallback(ChoreographerPoster.this);
+        }
+    };
+
+    protected ChoreographerPoster(EventBus eventBus, Looper looper, int maxMillisPerFrame) {
+        this.eventBus = eventBus;
+        this.maxNanosPerFrame = maxMillisPerFrame * 1000_000L;
+        handler = new Handler(looper);
+        queue = new PendingPostQueue();
+    }
+
+    public void enqueue(Subscription subscription, Object event) {
+        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
+        synchronized (this) {
+            queue.enqueueOrConflate(pendingPost);
+            if (!frameScheduled) {
+                frameScheduled = true;
+                scheduleFrame();
+            }
+        }
+    }
+
+    private void scheduleFrame() {
+        Choreographer choreographer = this.choreographer;
+        if (choreographer != null) {
+            choreographer.postFrameCallback(this);
+        } else if (!handler.post(scheduleOnMainThread)) {
+            throw new EventBusException("Could not send handler message");
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        boolean handled = false;
+        try {
+            long started = System.nanoTime();
+            while (true) {
+                PendingPost pendingPost = queue.poll();
+                if (pendingPost == null) {
+                    synchronized (this) {
+                        // Check again, this time in synchronized
+                        pendingPost = queue.poll();
+                        if (pendingPost == null) {
+                            frameScheduled = false;
+                            handled = true;
+                            return;
+                        }
+                    }
+                }
+                eventBus.invokeSubscriber(pendingPost);
+                if (System.nanoTime() - started >= maxNanosPerFrame) {
+                    handled = true;
+                    choreographer.postFrameCallback(this);
+                    return;
+                }
+            }
+        } finally {
+            if (!handled) {
+                // subscriber has thrown, the rest of queue is still delivered with next frame
+                choreographer.postFrameCallback(this);
+            }
+        }
+    }
+}
@@ -20,7 +20,11 @@ import android.text.TextUtils;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +33,9 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 
+import custom.org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import custom.org.greenrobot.eventbus.meta.SubscriberMethodInvoker;
+
 /**
  * EventBus is a central publish/subscribe event system for Android. Events are posted
  * ({@link #post(Object, String)}) to the
@@ -53,11 +60,32 @@ public class EventBus {
     static volatile EventBus defaultInstance;
 
     private static final EventBusBuilder DEFAULT_BUILDER = new EventBusBuilder();
-    private static final Map<Class<?>, List<Class<?>>> eventTypesCache = new HashMap<>();
+    private static final ConcurrentHashMap<Class<?>, List<Class<?>>> eventTypesCache =
+            new ConcurrentHashMap<>();
 
-    private final Map<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
+    /*
+     * Subscription maps are modified only in synchronized register/unregister, but read without
+     * lock by post: maps are concurrent and subscription lists are copy-on-write, so posting thread
+     * always sees consistent snapshot and never waits for a registration.
+     */
+    private final ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
+    /**
+     * Same subscriptions indexed by event type and tag, so post touches only subscribers of its
+     * tag. Subscriptions with empty tag can't receive events and are not indexed.
+     */
+    private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, CopyOnWriteArrayList<Subscription>>> subscriptionsByEventTypeAndTag;
     private final Map<Object, List<Class<?>>> typesBySubscriber;
-    private final Map<Class<?>, Object> stickyEvents;
+    /**
+     * Sticky events by event type and tag, tags of each type are ordered from least to most
+     * recently posted.
+     */
+    private final Map<Class<?>, LinkedHashMap<String, Object>> stickyEvents;
+    /**
+     * Types of sticky events by all their super classes and interfaces (including type itself),
+     * so sticky subscriber finds matching events without checking all of them. Guarded by
+     * {@link #stickyEvents}.
+     */
+    private final Map<Class<?>, Set<Class<?>>> stickyEventTypesBySupertype;
 
     private final ThreadLocal<PostingThreadState> currentPostingThreadState =
             new ThreadLocal<PostingThreadState>() {
@@ -73,6 +101,7 @@ public class EventBus {
     private final Poster mainThreadPoster;
     private final BackgroundPoster backgroundPoster;
     private final AsyncPoster asyncPoster;
+    private final PosterMetrics posterMetrics;
     private final SubscriberMethodFinder subscriberMethodFinder;
     private final ExecutorService executorService;
 
@@ -123,16 +152,21 @@ public class EventBus {
 
     EventBus(EventBusBuilder builder) {
         logger = builder.getLogger();
-        subscriptionsByEventType = new HashMap<>();
+        subscriptionsByEventType = new ConcurrentHashMap<>();
+        subscriptionsByEventTypeAndTag = new ConcurrentHashMap<>();
         typesBySubscriber = new HashMap<>();
         stickyEvents = new ConcurrentHashMap<>();
+        stickyEventTypesBySupertype = new HashMap<>();
         mainThreadSupport = builder.getMainThreadSupport();
         mainThreadPoster = mainThreadSupport != null ? mainThreadSupport.createPoster(this) : null;
-        backgroundPoster = new BackgroundPoster(this);
-        asyncPoster = new AsyncPoster(this);
-        indexCount = builder.subscriberInfoIndexes != null ?
-                builder.subscriberInfoIndexes.size() : 0;
-        subscriberMethodFinder = new SubscriberMethodFinder(builder.subscriberInfoIndexes, builder
+        posterMetrics = new PosterMetrics();
+        backgroundPoster = new BackgroundPoster(this, builder.maxQueuedEvents,
+                builder.rejectionPolicy, posterMetrics);
+        asyncPoster = new AsyncPoster(this, builder.asyncParallelism, builder.maxQueuedEvents,
+                builder.rejectionPolicy, posterMetrics);
+        List<SubscriberInfoIndex> subscriberInfoIndexes = builder.getSubscriberInfoIndexes();
+        indexCount = subscriberInfoIndexes != null ? subscriberInfoIndexes.size() : 0;
+        subscriberMethodFinder = new SubscriberMethodFinder(subscriberInfoIndexes, builder
                 .strictMethodVerification, builder.ignoreGeneratedIndex);
         logSubscriberExceptions = builder.logSubscriberExceptions;
         logNoSubscriberMessages = builder.logNoSubscriberMessages;
@@ -179,12 +213,22 @@ public class EventBus {
             }
         }
 
-        int size = subscriptions.size();
-        for (int i = 0; i <= size; i++) {
-            if (i == size || subscriberMethod.priority > subscriptions.get(i).subscriberMethod.priority) {
-                subscriptions.add(i, newSubscription);
-                break;
+        addByPriority(subscriptions, newSubscription);
+
+        if (!TextUtils.isEmpty(subscriberMethod.tag)) {
+            ConcurrentHashMap<String, CopyOnWriteArrayList<Subscription>> subscriptionsByTag =
+                    subscriptionsByEventTypeAndTag.get(eventType);
+            if (subscriptionsByTag == null) {
+                subscriptionsByTag = new ConcurrentHashMap<>();
+                subscriptionsByEventTypeAndTag.put(eventType, subscriptionsByTag);
+            }
+            CopyOnWriteArrayList<Subscription> tagSubscriptions =
+                    subscriptionsByTag.get(subscriberMethod.tag);
+            if (tagSubscriptions == null) {
+                tagSubscriptions = new CopyOnWriteArrayList<>();
+                subscriptionsByTag.put(subscriberMethod.tag, tagSubscriptions);
             }
+            addByPriority(tagSubscriptions, newSubscription);
         }
 
         List<Class<?>> subscribedEvents = typesBySubscriber.get(subscriber);
@@ -195,38 +239,60 @@ public class EventBus {
         subscribedEvents.add(eventType);
 
         if (subscriberMethod.sticky) {
-            if (eventInheritance) {
-                // Existing sticky events of all subclasses of eventType have to be considered.
-                // Note: Iterating over all events may be inefficient with lots of sticky events,
-                // thus data structure should be changed to allow a more efficient lookup
-                // (e.g. an additional map storing sub classes of super classes: Class ->
-                // List<Class>).
-                Set<Map.Entry<Class<?>, Object>> entries = stickyEvents.entrySet();
-                for (Map.Entry<Class<?>, Object> entry : entries) {
-                    Class<?> candidateEventType = entry.getKey();
-                    if (eventType.isAssignableFrom(candidateEventType)) {
-                        Object stickyEvent = entry.getValue();
-                        checkPostStickyEventToSubscription(newSubscription, stickyEvent,
-                                subscriberMethod.tag);//我修改
+            // only sticky events posted with tag of subscriber are replayed to it
+            List<Object> matchingStickyEvents = new ArrayList<>();
+            synchronized (stickyEvents) {
+                if (eventInheritance) {
+                    // Existing sticky events of all subclasses of eventType have to be considered.
+                    Set<Class<?>> stickyEventTypes = stickyEventTypesBySupertype.get(eventType);
+                    if (stickyEventTypes != null) {
+                        for (Class<?> stickyEventType : stickyEventTypes) {
+                            addIfNotNull(matchingStickyEvents,
+                                    stickyEvents.get(stickyEventType).get(subscriberMethod.tag));
+                        }
+                    }
+                } else {
+                    LinkedHashMap<String, Object> stickyEventsByTag = stickyEvents.get(eventType);
+                    if (stickyEventsByTag != null) {
+                        addIfNotNull(matchingStickyEvents, stickyEventsByTag.get(subscriberMethod.tag));
                     }
                 }
-            } else {
-                Object stickyEvent = stickyEvents.get(eventType);
-                checkPostStickyEventToSubscription(newSubscription, stickyEvent,
-                        subscriberMethod.tag);//我修改
             }
+            for (Object stickyEvent : matchingStickyEvents) {
+                checkPostStickyEventToSubscription(newSubscription, stickyEvent);
+            }
+        }
+    }
+
+    /**
+     * Inserts subscription with single copy of list, so concurrent post sees either old or new
+     * subscribers, never partially updated list.
+     */
+    private static void addByPriority(CopyOnWriteArrayList<Subscription> subscriptions,
+                                      Subscription newSubscription) {
+        int size = subscriptions.size();
+        for (int i = 0; i <= size; i++) {
+            if (i == size || newSubscription.subscriberMethod.priority > subscriptions.get(i).subscriberMethod.priority) {
+                subscriptions.add(i, newSubscription);
+                break;
+            }
+        }
+    }
+
+    private static void addIfNotNull(List<Object> events, Object event) {
+        if (event != null) {
+            events.add(event);
         }
     }
 
     private void checkPostStickyEventToSubscription(Subscription newSubscription,
-                                                    Object stickyEvent, String tag) {
-        //我修改
+                                                    Object stickyEvent) {
         if (stickyEvent != null) {
             // If the subscriber is trying to abort the event, it will fail (event is not tracked
             // in posting state)
             // --> Strange corner case, which we don't take care of here.
             postToSubscription(newSubscription, stickyEvent,
-                    Looper.getMainLooper() == Looper.myLooper(), tag);
+                    Looper.getMainLooper() == Looper.myLooper());
         }
     }
 
@@ -238,7 +304,7 @@ public class EventBus {
      * called from a background
      * poster.
      */
-    private boolean isMainThread() {
+    boolean isMainThread() {
         return mainThreadSupport != null ? mainThreadSupport.isMainThread() : true;
     }
 
@@ -249,22 +315,50 @@ public class EventBus {
     //我修改
 
     /**
-     * Only updates subscriptionsByEventType, not typesBySubscriber! Caller must update
-     * typesBySubscriber.
+     * Only updates subscriptionsByEventType and subscriptionsByEventTypeAndTag, not
+     * typesBySubscriber! Caller must update typesBySubscriber.
      */
     private void unsubscribeByEventType(Object subscriber, Class<?> eventType) {
-        List<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
+        CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
         if (subscriptions != null) {
-            int size = subscriptions.size();
-            for (int i = 0; i < size; i++) {
-                Subscription subscription = subscriptions.get(i);
-                if (subscription.subscriber == subscriber) {
-                    subscription.active = false;
-                    subscriptions.remove(i);
-                    i--;
-                    size--;
+            removeSubscriber(subscriptions, subscriber);
+            if (subscriptions.isEmpty()) {
+                subscriptionsByEventType.remove(eventType);
+            }
+        }
+        Map<String, CopyOnWriteArrayList<Subscription>> subscriptionsByTag =
+                subscriptionsByEventTypeAndTag.get(eventType);
+        if (subscriptionsByTag != null) {
+            Iterator<CopyOnWriteArrayList<Subscription>> tagSubscriptions =
+                    subscriptionsByTag.values().iterator();
+            while (tagSubscriptions.hasNext()) {
+                CopyOnWriteArrayList<Subscription> tagSubscriptionList = tagSubscriptions.next();
+                removeSubscriber(tagSubscriptionList, subscriber);
+                if (tagSubscriptionList.isEmpty()) {
+                    tagSubscriptions.remove();
                 }
             }
+            if (subscriptionsByTag.isEmpty()) {
+                subscriptionsByEventTypeAndTag.remove(eventType);
+            }
+        }
+    }
+
+    /**
+     * Removes all subscriptions of subscriber with single copy of list and deactivates them, so
+     * events already queued in posters are not delivered anymore.
+     */
+    private static void removeSubscriber(CopyOnWriteArrayList<Subscription> subscriptions,
+                                         Object subscriber) {
+        List<Subscription> removed = new ArrayList<>(1);
+        for (Subscription subscription : subscriptions) {
+            if (subscription.subscriber == subscriber) {
+                subscription.active = false;
+                removed.add(subscription);
+            }
+        }
+        if (!removed.isEmpty()) {
+            subscriptions.removeAll(removed);
         }
     }
 
@@ -345,50 +439,131 @@ public class EventBus {
     public void postSticky(Object event, String tag)//我修改
     {
         synchronized (stickyEvents) {
-            stickyEvents.put(event.getClass(), event);
+            LinkedHashMap<String, Object> stickyEventsByTag = stickyEvents.get(event.getClass());
+            if (stickyEventsByTag == null) {
+                stickyEventsByTag = new LinkedHashMap<>();
+                stickyEvents.put(event.getClass(), stickyEventsByTag);
+                indexStickyEventType(event.getClass());
+            }
+            // re-insert, so most recent tag goes last
+            stickyEventsByTag.remove(tag);
+            stickyEventsByTag.put(tag, event);
         }
         // Should be posted after it is putted, in case the subscriber wants to remove immediately
         post(event, tag);
     }
 
     /**
-     * Gets the most recent sticky event for the given type.
+     * Gets the most recent sticky event for the given type posted with any tag.
      *
      * @see #postSticky(Object, String)
      */
     public <T> T getStickyEvent(Class<T> eventType) {
         synchronized (stickyEvents) {
-            return eventType.cast(stickyEvents.get(eventType));
+            return eventType.cast(mostRecent(stickyEvents.get(eventType)));
+        }
+    }
+
+    /**
+     * Gets the most recent sticky event for the given type posted with the given tag.
+     *
+     * @see #postSticky(Object, String)
+     */
+    public <T> T getStickyEvent(Class<T> eventType, String tag) {
+        synchronized (stickyEvents) {
+            LinkedHashMap<String, Object> stickyEventsByTag = stickyEvents.get(eventType);
+            return stickyEventsByTag != null ? eventType.cast(stickyEventsByTag.get(tag)) : null;
         }
     }
 
     /**
-     * Remove and gets the recent sticky event for the given event type.
+     * Remove sticky events of the given event type posted with any tag and gets the most recent
+     * one.
      *
      * @see #postSticky(Object, String)
      */
     public <T> T removeStickyEvent(Class<T> eventType) {
         synchronized (stickyEvents) {
-            return eventType.cast(stickyEvents.remove(eventType));
+            LinkedHashMap<String, Object> stickyEventsByTag = stickyEvents.remove(eventType);
+            if (stickyEventsByTag != null) {
+                unindexStickyEventType(eventType);
+            }
+            return eventType.cast(mostRecent(stickyEventsByTag));
         }
     }
 
     /**
-     * Removes the sticky event if it equals to the given event.
+     * Remove and gets the recent sticky event for the given event type and tag.
+     *
+     * @see #postSticky(Object, String)
+     */
+    public <T> T removeStickyEvent(Class<T> eventType, String tag) {
+        synchronized (stickyEvents) {
+            LinkedHashMap<String, Object> stickyEventsByTag = stickyEvents.get(eventType);
+            if (stickyEventsByTag == null) {
+                return null;
+            }
+            Object stickyEvent = stickyEventsByTag.remove(tag);
+            if (stickyEventsByTag.isEmpty()) {
+                stickyEvents.remove(eventType);
+                unindexStickyEventType(eventType);
+            }
+            return eventType.cast(stickyEvent);
+        }
+    }
+
+    /**
+     * Removes the sticky event if it equals to the given event, whatever tag it was posted with.
      *
      * @return true if the events matched and the sticky event was removed.
      */
     public boolean removeStickyEvent(Object event) {
         synchronized (stickyEvents) {
             Class<?> eventType = event.getClass();
-            Object existingEvent = stickyEvents.get(eventType);
-            if (event.equals(existingEvent)) {
-                stickyEvents.remove(eventType);
-                return true;
-            } else {
+            LinkedHashMap<String, Object> stickyEventsByTag = stickyEvents.get(eventType);
+            if (stickyEventsByTag == null) {
                 return false;
             }
+            boolean removed = stickyEventsByTag.values().removeAll(Collections.singleton(event));
+            if (stickyEventsByTag.isEmpty()) {
+                stickyEvents.remove(eventType);
+                unindexStickyEventType(eventType);
+            }
+            return removed;
+        }
+    }
+
+    // Must be called in synchronized (stickyEvents) block
+    private void indexStickyEventType(Class<?> eventType) {
+        for (Class<?> supertype : lookupAllEventTypes(eventType)) {
+            Set<Class<?>> stickyEventTypes = stickyEventTypesBySupertype.get(supertype);
+            if (stickyEventTypes == null) {
+                stickyEventTypes = new LinkedHashSet<>();
+                stickyEventTypesBySupertype.put(supertype, stickyEventTypes);
+            }
+            stickyEventTypes.add(eventType);
+        }
+    }
+
+    // Must be called in synchronized (stickyEvents) block
+    private void unindexStickyEventType(Class<?> eventType) {
+        for (Class<?> supertype : lookupAllEventTypes(eventType)) {
+            Set<Class<?>> stickyEventTypes = stickyEventTypesBySupertype.get(supertype);
+            if (stickyEventTypes != null && stickyEventTypes.remove(eventType)
+                    && stickyEventTypes.isEmpty()) {
+                stickyEventTypesBySupertype.remove(supertype);
+            }
+        }
+    }
+
+    private static Object mostRecent(LinkedHashMap<String, Object> stickyEventsByTag) {
+        Object mostRecent = null;
+        if (stickyEventsByTag != null) {
+            for (Object stickyEvent : stickyEventsByTag.values()) {
+                mostRecent = stickyEvent;
+            }
         }
+        return mostRecent;
     }
 
     /**
@@ -397,27 +572,51 @@ public class EventBus {
     public void removeAllStickyEvents() {
         synchronized (stickyEvents) {
             stickyEvents.clear();
+            stickyEventTypesBySupertype.clear();
         }
     }
 
+    /**
+     * Checks whether there is any subscriber of the given event class with any tag.
+     */
     public boolean hasSubscriberForEvent(Class<?> eventClass) {
         List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
-        if (eventTypes != null) {
-            int countTypes = eventTypes.size();
-            for (int h = 0; h < countTypes; h++) {
-                Class<?> clazz = eventTypes.get(h);
-                CopyOnWriteArrayList<Subscription> subscriptions;
-                synchronized (this) {
-                    subscriptions = subscriptionsByEventType.get(clazz);
-                }
-                if (subscriptions != null && !subscriptions.isEmpty()) {
-                    return true;
-                }
+        int countTypes = eventTypes.size();
+        for (int h = 0; h < countTypes; h++) {
+            Class<?> clazz = eventTypes.get(h);
+            CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(clazz);
+            if (subscriptions != null && !subscriptions.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether event of the given class posted with the given tag has any subscriber.
+     */
+    public boolean hasSubscriberForEvent(Class<?> eventClass, String tag) {
+        if (TextUtils.isEmpty(tag)) {
+            return false;
+        }
+        List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
+        int countTypes = eventTypes.size();
+        for (int h = 0; h < countTypes; h++) {
+            CopyOnWriteArrayList<Subscription> subscriptions = getSubscriptions(eventTypes.get(h), tag);
+            if (subscriptions != null && !subscriptions.isEmpty()) {
+                return true;
             }
         }
         return false;
     }
 
+    // Lock free, see subscriptionsByEventType
+    private CopyOnWriteArrayList<Subscription> getSubscriptions(Class<?> eventType, String tag) {
+        Map<String, CopyOnWriteArrayList<Subscription>> subscriptionsByTag =
+                subscriptionsByEventTypeAndTag.get(eventType);
+        return subscriptionsByTag != null ? subscriptionsByTag.get(tag) : null;
+    }
+
     //我修改
     private void postSingleEvent(Object event, PostingThreadState postingState, String tag) throws Error {
         Class<?> eventClass = event.getClass();
@@ -447,17 +646,17 @@ public class EventBus {
     private boolean postSingleEventForEventType(Object event, PostingThreadState postingState,
                                                 Class<?> eventClass,
                                                 String tag) {
-        CopyOnWriteArrayList<Subscription> subscriptions;
-        synchronized (this) {
-            subscriptions = subscriptionsByEventType.get(eventClass);
+        if (TextUtils.isEmpty(tag)) {
+            return false;
         }
+        CopyOnWriteArrayList<Subscription> subscriptions = getSubscriptions(eventClass, tag);
         if (subscriptions != null && !subscriptions.isEmpty()) {
             for (Subscription subscription : subscriptions) {
                 postingState.event = event;
                 postingState.subscription = subscription;
                 boolean aborted = false;
                 try {
-                    postToSubscription(subscription, event, postingState.isMainThread, tag);
+                    postToSubscription(subscription, event, postingState.isMainThread);
                     aborted = postingState.canceled;
                 } finally {
                     postingState.event = null;
@@ -473,9 +672,9 @@ public class EventBus {
         return false;
     }
 
-    private void postToSubscription(Subscription subscription, Object event, boolean isMainThread
-            , String tag) {
-        if (!TextUtils.isEmpty(tag) && TextUtils.equals(subscription.subscriberMethod.tag, tag)) {
+    private void postToSubscription(Subscription subscription, Object event, boolean isMainThread) {
+        // subscriptions are looked up by tag of event, so all of them match it
+        if (!TextUtils.isEmpty(subscription.subscriberMethod.tag)) {
             switch (subscription.subscriberMethod.threadMode) {
                 case POSTING:
                     invokeSubscriber(subscription, event);
@@ -514,23 +713,27 @@ public class EventBus {
 
     /**
      * Looks up all Class objects including super classes and interfaces. Should also work for
-     * interfaces.
+     * interfaces. Lists are cached unmodifiable and shared by all threads and EventBus instances
+     * without locking.
      */
     private static List<Class<?>> lookupAllEventTypes(Class<?> eventClass) {
-        synchronized (eventTypesCache) {
-            List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
-            if (eventTypes == null) {
-                eventTypes = new ArrayList<>();
-                Class<?> clazz = eventClass;
-                while (clazz != null) {
-                    eventTypes.add(clazz);
-                    addInterfaces(eventTypes, clazz.getInterfaces());
-                    clazz = clazz.getSuperclass();
-                }
-                eventTypesCache.put(eventClass, eventTypes);
+        List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
+        if (eventTypes == null) {
+            List<Class<?>> newEventTypes = new ArrayList<>();
+            Class<?> clazz = eventClass;
+            while (clazz != null) {
+                newEventTypes.add(clazz);
+                addInterfaces(newEventTypes, clazz.getInterfaces());
+                clazz = clazz.getSuperclass();
+            }
+            eventTypes = Collections.unmodifiableList(newEventTypes);
+            // racing threads compute equal lists, first published one wins
+            List<Class<?>> published = eventTypesCache.putIfAbsent(eventClass, eventTypes);
+            if (published != null) {
+                eventTypes = published;
             }
-            return eventTypes;
         }
+        return eventTypes;
     }
 
     /**
@@ -564,6 +767,11 @@ public class EventBus {
     }
 
     void invokeSubscriber(Subscription subscription, Object event) {
+        SubscriberMethodInvoker invoker = subscription.subscriberMethod.invoker;
+        if (invoker != null) {
+            invokeSubscriber(invoker, subscription, event);
+            return;
+        }
         try {
             subscription.subscriberMethod.method.invoke(subscription.subscriber, event);
         } catch (InvocationTargetException e) {
@@ -573,6 +781,19 @@ public class EventBus {
         }
     }
 
+    /**
+     * Calls subscriber by generated invoker. Anything thrown by subscriber is handled the same
+     * way as cause of {@link InvocationTargetException} thrown by reflective call.
+     */
+    private void invokeSubscriber(SubscriberMethodInvoker invoker, Subscription subscription,
+                                  Object event) {
+        try {
+            invoker.invoke(subscription.subscriber, event);
+        } catch (Throwable e) {
+            handleSubscriberException(subscription, event, e);
+        }
+    }
+
     private void handleSubscriberException(Subscription subscription, Object event,
                                            Throwable cause) {
         if (event instanceof SubscriberExceptionEvent) {
@@ -620,6 +841,13 @@ public class EventBus {
         return executorService;
     }
 
+    /**
+     * Returns metrics of {@link ThreadMode#BACKGROUND} and {@link ThreadMode#ASYNC} deliveries.
+     */
+    public PosterMetrics getPosterMetrics() {
+        return posterMetrics;
+    }
+
     /**
      * For internal use only.
      */
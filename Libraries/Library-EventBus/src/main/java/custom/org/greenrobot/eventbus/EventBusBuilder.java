@@ -18,6 +18,7 @@ package custom.org.greenrobot.eventbus;
 import android.os.Looper;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -31,6 +32,12 @@ import custom.org.greenrobot.eventbus.meta.SubscriberInfoIndex;
  */
 public class EventBusBuilder {
     private final static ExecutorService DEFAULT_EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+    /**
+     * Index generated by EventBus' annotation processor when no "eventBusIndex" option is given.
+     */
+    static final String DEFAULT_INDEX_CLASS = "custom.org.greenrobot.eventbus.EventBusIndex";
+    private static volatile SubscriberInfoIndex defaultIndex;
+    private static volatile boolean defaultIndexLoaded;
 
     boolean logSubscriberExceptions = true;
     boolean logNoSubscriberMessages = true;
@@ -45,6 +52,10 @@ public class EventBusBuilder {
     List<SubscriberInfoIndex> subscriberInfoIndexes;
     Logger logger;
     MainThreadSupport mainThreadSupport;
+    int mainThreadFrameBudgetMillis;
+    int asyncParallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+    int maxQueuedEvents = Integer.MAX_VALUE;
+    RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS_OFF_MAIN_THREAD;
 
     EventBusBuilder() {
     }
@@ -122,6 +133,45 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * Limits number of threads of executor service delivering {@link ThreadMode#ASYNC} events
+     * at once (default: number of processors, at least 2). Events waiting for thread are ordered
+     * by {@link Subscribe#priority()}. {@link ThreadMode#BACKGROUND} events are always delivered
+     * by single thread.
+     */
+    public EventBusBuilder asyncParallelism(int asyncParallelism) {
+        if (asyncParallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.asyncParallelism = asyncParallelism;
+        return this;
+    }
+
+    /**
+     * Limits number of events waiting for delivery in background and in async poster each
+     * (default: unlimited). Events over the limit are handled by
+     * {@link #rejectionPolicy(RejectionPolicy)}.
+     */
+    public EventBusBuilder maxQueuedEvents(int maxQueuedEvents) {
+        if (maxQueuedEvents < 1) {
+            throw new IllegalArgumentException("Max queued events must be positive");
+        }
+        this.maxQueuedEvents = maxQueuedEvents;
+        return this;
+    }
+
+    /**
+     * Sets what happens to background or async event when queue is full (default:
+     * {@link RejectionPolicy#CALLER_RUNS_OFF_MAIN_THREAD}, which never delivers in main thread).
+     */
+    public EventBusBuilder rejectionPolicy(RejectionPolicy rejectionPolicy) {
+        if (rejectionPolicy == null) {
+            throw new NullPointerException("Rejection policy must not be null");
+        }
+        this.rejectionPolicy = rejectionPolicy;
+        return this;
+    }
+
     /**
      * Method name verification is done for methods starting with onEvent to avoid typos; using
      * this method you can
@@ -154,7 +204,8 @@ public class EventBusBuilder {
     }
 
     /**
-     * Adds an index generated by EventBus' annotation preprocessor.
+     * Adds an index generated by EventBus' annotation preprocessor. If no index is added, index
+     * generated with default name is used when it is present.
      */
     public EventBusBuilder addIndex(SubscriberInfoIndex index) {
         if (subscriberInfoIndexes == null) {
@@ -175,6 +226,47 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * Delivers events queued for main thread once per frame, spending at most given time per
+     * frame; the rest is delivered with next frames (default: 0, events are delivered by Handler
+     * messages as soon as possible). Works on Android 4.1+ and with
+     * {@link Subscribe#conflate()} keeps high-frequency events from flooding main thread.
+     */
+    public EventBusBuilder mainThreadFrameBudget(int maxMillisPerFrame) {
+        this.mainThreadFrameBudgetMillis = maxMillisPerFrame;
+        return this;
+    }
+
+    List<SubscriberInfoIndex> getSubscriberInfoIndexes() {
+        if (subscriberInfoIndexes != null || ignoreGeneratedIndex) {
+            return subscriberInfoIndexes;
+        }
+        SubscriberInfoIndex index = getDefaultIndex();
+        return index != null ? Collections.singletonList(index) : null;
+    }
+
+    private static SubscriberInfoIndex getDefaultIndex() {
+        if (!defaultIndexLoaded) {
+            synchronized (EventBusBuilder.class) {
+                if (!defaultIndexLoaded) {
+                    defaultIndex = loadDefaultIndex();
+                    defaultIndexLoaded = true;
+                }
+            }
+        }
+        return defaultIndex;
+    }
+
+    private static SubscriberInfoIndex loadDefaultIndex() {
+        try {
+            return (SubscriberInfoIndex) Class.forName(DEFAULT_INDEX_CLASS).newInstance();
+        } catch (ClassNotFoundException e) {
+            return null; // annotation processor isn't used, methods are found by reflection
+        } catch (InstantiationException | IllegalAccessException | ClassCastException e) {
+            throw new EventBusException("Could not instantiate generated index " + DEFAULT_INDEX_CLASS, e);
+        }
+    }
+
     Logger getLogger() {
         if (logger != null) {
             return logger;
@@ -192,7 +284,8 @@ public class EventBusBuilder {
         } else if (Logger.AndroidLogger.isAndroidLogAvailable()) {
             Object looperOrNull = getAndroidMainLooperOrNull();
             return looperOrNull == null ? null :
-                    new MainThreadSupport.AndroidHandlerMainThreadSupport((Looper) looperOrNull);
+                    new MainThreadSupport.AndroidHandlerMainThreadSupport((Looper) looperOrNull,
+                            mainThreadFrameBudgetMillis);
         } else {
             return null;
         }
@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c) 2019 YobertJomi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package custom.org.greenrobot.eventbus;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+
+/**
+ * Delivers events in threads of {@link EventBus#getExecutorService()}. Events wait in bounded
+ * queue ordered by subscriber priority and are drained by at most {@code parallelism} tasks, so
+ * burst of events doesn't occupy more threads of executor. Events which don't fit in queue, or
+ * which no task would deliver because executor rejected it, are passed to {@link RejectionPolicy}.
+ */
+class ExecutorPoster implements Runnable, Poster {
+
+    private final PriorityPendingPostQueue queue;
+    private final EventBus eventBus;
+    private final ThreadMode threadMode;
+    private final int parallelism;
+    private final int keepAliveMillis;
+    private final RejectionPolicy rejectionPolicy;
+    private final PosterMetrics metrics;
+    private int activeTasks;
+
+    /**
+     * @param keepAliveMillis how long idle task waits for new events before it finishes.
+     */
+    ExecutorPoster(EventBus eventBus, ThreadMode threadMode, int parallelism, int keepAliveMillis,
+                   int capacity, RejectionPolicy rejectionPolicy, PosterMetrics metrics) {
+        this.eventBus = eventBus;
+        this.threadMode = threadMode;
+        this.parallelism = parallelism;
+        this.keepAliveMillis = keepAliveMillis;
+        this.rejectionPolicy = rejectionPolicy;
+        this.metrics = metrics;
+        queue = new PriorityPendingPostQueue(capacity);
+    }
+
+    public void enqueue(final Subscription subscription, final Object event) {
+        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
+        pendingPost.enqueuedNanos = System.nanoTime();
+        synchronized (this) {
+            if (queue.offer(pendingPost)) {
+                boolean drained = activeTasks >= parallelism || startTask();
+                // When executor refused the task and no other task is running, nobody would
+                // ever drain the post, so it is taken back and rejected
+                if (drained || activeTasks > 0 || !queue.remove(pendingPost)) {
+                    metrics.onEnqueued(event.getClass());
+                    return;
+                }
+            }
+        }
+        PendingPost.releasePendingPost(pendingPost);
+        metrics.onRejected(event.getClass());
+        rejectionPolicy.rejected(eventBus, event, subscription.subscriber, threadMode, new Runnable() {
+            @Override
+            public void run() {
+                eventBus.invokeSubscriber(subscription, event);
+            }
+        });
+    }
+
+    /**
+     * Must be called in synchronized block.
+     *
+     * @return false if executor rejected the task (e.g. it was shut down).
+     */
+    private boolean startTask() {
+        activeTasks++;
+        try {
+            eventBus.getExecutorService().execute(this);
+            return true;
+        } catch (RejectedExecutionException e) {
+            activeTasks--;
+            eventBus.getLogger().log(Level.WARNING, "Executor rejected " + threadMode + " poster task", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean finished = false;
+        try {
+            while (true) {
+                PendingPost pendingPost = keepAliveMillis > 0 ? queue.poll(keepAliveMillis) : queue.poll();
+                if (pendingPost == null) {
+                    synchronized (this) {
+                        // Check again, this time in synchronized
+                        pendingPost = queue.poll();
+                        if (pendingPost == null) {
+                            activeTasks--;
+                            finished = true;
+                            return;
+                        }
+                    }
+                }
+                deliver(pendingPost);
+            }
+        } catch (InterruptedException e) {
+            eventBus.getLogger().log(Level.WARNING, Thread.currentThread().getName() + " was interrupted", e);
+        } finally {
+            if (!finished) {
+                synchronized (this) {
+                    activeTasks--;
+                }
+            }
+        }
+    }
+
+    private void deliver(PendingPost pendingPost) {
+        Class<?> eventType = pendingPost.event.getClass();
+        long started = System.nanoTime();
+        long waitNanos = started - pendingPost.enqueuedNanos;
+        try {
+            eventBus.invokeSubscriber(pendingPost);
+        } finally {
+            metrics.onDelivered(eventType, waitNanos, System.nanoTime() - started);
+        }
+    }
+}
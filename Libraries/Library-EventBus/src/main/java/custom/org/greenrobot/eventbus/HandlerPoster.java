@@ -37,7 +37,7 @@ public class HandlerPoster extends Handler implements Poster {
     public void enqueue(Subscription subscription, Object event) {
         PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
         synchronized (this) {
-            queue.enqueue(pendingPost);
+            queue.enqueueOrConflate(pendingPost);
             if (!handlerActive) {
                 handlerActive = true;
                 if (!sendMessage(obtainMessage())) {
@@ -15,6 +15,7 @@
  */
 package custom.org.greenrobot.eventbus;
 
+import android.os.Build;
 import android.os.Looper;
 
 /**
@@ -30,9 +31,20 @@ public interface MainThreadSupport {
     class AndroidHandlerMainThreadSupport implements MainThreadSupport {
 
         private final Looper looper;
+        private final int maxMillisPerFrame;
 
         public AndroidHandlerMainThreadSupport(Looper looper) {
+            this(looper, 0);
+        }
+
+        /**
+         * @param maxMillisPerFrame if positive, queued events are delivered with frames by
+         *                          {@link ChoreographerPoster} (Android 4.1+), spending at most
+         *                          given time per frame.
+         */
+        public AndroidHandlerMainThreadSupport(Looper looper, int maxMillisPerFrame) {
             this.looper = looper;
+            this.maxMillisPerFrame = maxMillisPerFrame;
         }
 
         @Override
@@ -42,6 +54,9 @@ public interface MainThreadSupport {
 
         @Override
         public Poster createPoster(EventBus eventBus) {
+            if (maxMillisPerFrame > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                return new ChoreographerPoster(eventBus, looper, maxMillisPerFrame);
+            }
             return new HandlerPoster(eventBus, looper, 10);
         }
     }
@@ -15,15 +15,37 @@
  */
 package custom.org.greenrobot.eventbus;
 
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * Delivery of event queued by poster. Posts are recycled without shared lock on every post: each
+ * thread keeps its own cache of free posts, and only full magazines of {@value #MAGAZINE_SIZE}
+ * posts are exchanged through shared depot, so threads posting events and threads delivering them
+ * meet at depot lock once per magazine. Pool holds at most {@value #MAX_DEPOT_MAGAZINES} magazines
+ * in depot plus two magazines per thread.
+ */
 final class PendingPost {
-    private final static List<PendingPost> pendingPostPool = new ArrayList<PendingPost>();
+    private static final int MAGAZINE_SIZE = 32;
+    private static final int MAX_DEPOT_MAGAZINES = 256;
+
+    /**
+     * Full magazines, each is chain of {@value #MAGAZINE_SIZE} posts linked by {@link #next}.
+     */
+    private static final PendingPost[] depot = new PendingPost[MAX_DEPOT_MAGAZINES];
+    private static int depotSize; // guarded by depot
+
+    private static final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+    };
 
     Object event;
     Subscription subscription;
     PendingPost next;
+    /**
+     * {@link System#nanoTime()} when post was queued by background or async poster.
+     */
+    long enqueuedNanos;
 
     private PendingPost(Object event, Subscription subscription) {
         this.event = event;
@@ -31,28 +53,68 @@ final class PendingPost {
     }
 
     static PendingPost obtainPendingPost(Subscription subscription, Object event) {
-        synchronized (pendingPostPool) {
-            int size = pendingPostPool.size();
-            if (size > 0) {
-                PendingPost pendingPost = pendingPostPool.remove(size - 1);
-                pendingPost.event = event;
-                pendingPost.subscription = subscription;
-                pendingPost.next = null;
-                return pendingPost;
+        ThreadCache cache = threadCache.get();
+        if (cache.size == 0) {
+            cache.head = takeMagazine();
+            if (cache.head == null) {
+                return new PendingPost(event, subscription);
             }
+            cache.size = MAGAZINE_SIZE;
         }
-        return new PendingPost(event, subscription);
+        PendingPost pendingPost = cache.head;
+        cache.head = pendingPost.next;
+        cache.size--;
+        pendingPost.event = event;
+        pendingPost.subscription = subscription;
+        pendingPost.next = null;
+        return pendingPost;
     }
 
     static void releasePendingPost(PendingPost pendingPost) {
         pendingPost.event = null;
         pendingPost.subscription = null;
-        pendingPost.next = null;
-        synchronized (pendingPostPool) {
-            // Don't let the pool grow indefinitely
-            if (pendingPostPool.size() < 10000) {
-                pendingPostPool.add(pendingPost);
+        ThreadCache cache = threadCache.get();
+        pendingPost.next = cache.head;
+        cache.head = pendingPost;
+        cache.size++;
+        if (cache.size == 2 * MAGAZINE_SIZE) {
+            // keep one magazine for obtaining in this thread, share the other one
+            PendingPost last = cache.head;
+            for (int i = 1; i < MAGAZINE_SIZE; i++) {
+                last = last.next;
             }
+            PendingPost magazine = last.next;
+            last.next = null;
+            cache.size = MAGAZINE_SIZE;
+            putMagazine(magazine);
         }
     }
-}
\ No newline at end of file
+
+    private static PendingPost takeMagazine() {
+        synchronized (depot) {
+            if (depotSize == 0) {
+                return null;
+            }
+            PendingPost magazine = depot[--depotSize];
+            depot[depotSize] = null;
+            return magazine;
+        }
+    }
+
+    private static void putMagazine(PendingPost magazine) {
+        synchronized (depot) {
+            // Don't let the pool grow indefinitely, extra magazine is left to garbage collector
+            if (depotSize < MAX_DEPOT_MAGAZINES) {
+                depot[depotSize++] = magazine;
+            }
+        }
+    }
+
+    /**
+     * Free posts of one thread linked by {@link #next}.
+     */
+    private static final class ThreadCache {
+        PendingPost head;
+        int size;
+    }
+}
@@ -16,9 +16,16 @@
 
 package custom.org.greenrobot.eventbus;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 final class PendingPostQueue {
     private PendingPost head;
     private PendingPost tail;
+    /**
+     * Queued posts of subscriptions with {@link Subscribe#conflate()}, created on first one.
+     */
+    private Map<Subscription, PendingPost> conflatablePosts;
 
     synchronized void enqueue(PendingPost pendingPost) {
         if (pendingPost == null) {
@@ -35,6 +42,32 @@ final class PendingPostQueue {
         notifyAll();
     }
 
+    /**
+     * Enqueues post like {@link #enqueue(PendingPost)}, but if its subscription conflates events
+     * and has post still waiting in queue, replaces event of waiting post and recycles given one.
+     *
+     * @return false if post was conflated into already queued one.
+     */
+    synchronized boolean enqueueOrConflate(PendingPost pendingPost) {
+        Subscription subscription = pendingPost.subscription;
+        if (!subscription.subscriberMethod.conflate) {
+            enqueue(pendingPost);
+            return true;
+        }
+        if (conflatablePosts == null) {
+            conflatablePosts = new IdentityHashMap<>();
+        }
+        PendingPost queuedPost = conflatablePosts.get(subscription);
+        if (queuedPost != null) {
+            queuedPost.event = pendingPost.event;
+            PendingPost.releasePendingPost(pendingPost);
+            return false;
+        }
+        conflatablePosts.put(subscription, pendingPost);
+        enqueue(pendingPost);
+        return true;
+    }
+
     synchronized PendingPost poll() {
         PendingPost pendingPost = head;
         if (head != null) {
@@ -42,6 +75,9 @@ final class PendingPostQueue {
             if (head == null) {
                 tail = null;
             }
+            if (conflatablePosts != null && pendingPost.subscription.subscriberMethod.conflate) {
+                conflatablePosts.remove(pendingPost.subscription);
+            }
         }
         return pendingPost;
     }
@@ -0,0 +1,162 @@
+/*
+ *  Copyright (c) 2019 YobertJomi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package custom.org.greenrobot.eventbus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects metrics of {@link ThreadMode#BACKGROUND} and {@link ThreadMode#ASYNC} deliveries per
+ * event type: queued, delivered and rejected events, queue depth, time events waited in queue and
+ * time spent in subscribers. Get it with {@link EventBus#getPosterMetrics()} and poll
+ * {@link #snapshot()}.
+ */
+public final class PosterMetrics {
+
+    private final ConcurrentHashMap<Class<?>, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Returns current values of metrics.
+     *
+     * @return immutable map of metrics by event type.
+     */
+    public Map<Class<?>, Stats> snapshot() {
+        Map<Class<?>, Stats> stats = new HashMap<>();
+        for (Map.Entry<Class<?>, Counters> entry : counters.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().toStats());
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    void onEnqueued(Class<?> eventType) {
+        counters(eventType).onEnqueued();
+    }
+
+    void onRejected(Class<?> eventType) {
+        counters(eventType).onRejected();
+    }
+
+    void onDelivered(Class<?> eventType, long waitNanos, long handlerNanos) {
+        counters(eventType).onDelivered(waitNanos, handlerNanos);
+    }
+
+    private Counters counters(Class<?> eventType) {
+        Counters eventCounters = counters.get(eventType);
+        if (eventCounters == null) {
+            Counters newCounters = new Counters();
+            eventCounters = counters.putIfAbsent(eventType, newCounters);
+            if (eventCounters == null) {
+                eventCounters = newCounters;
+            }
+        }
+        return eventCounters;
+    }
+
+    /**
+     * Metrics of single event type.
+     */
+    public static final class Stats {
+
+        public final long enqueued;
+        public final long delivered;
+        public final long rejected;
+        public final long queueDepth;
+        public final long maxQueueDepth;
+        public final long averageWaitMicros;
+        public final long maxWaitMicros;
+        public final long averageHandlerMicros;
+        public final long maxHandlerMicros;
+
+        Stats(long enqueued, long delivered, long rejected, long queueDepth, long maxQueueDepth,
+              long averageWaitMicros, long maxWaitMicros, long averageHandlerMicros,
+              long maxHandlerMicros) {
+            this.enqueued = enqueued;
+            this.delivered = delivered;
+            this.rejected = rejected;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.averageWaitMicros = averageWaitMicros;
+            this.maxWaitMicros = maxWaitMicros;
+            this.averageHandlerMicros = averageHandlerMicros;
+            this.maxHandlerMicros = maxHandlerMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{enqueued=" + enqueued + ", delivered=" + delivered + ", rejected=" +
+                    rejected + ", queueDepth=" + queueDepth + ", maxQueueDepth=" + maxQueueDepth +
+                    ", averageWaitMicros=" + averageWaitMicros + ", maxWaitMicros=" + maxWaitMicros +
+                    ", averageHandlerMicros=" + averageHandlerMicros + ", maxHandlerMicros=" +
+                    maxHandlerMicros + '}';
+        }
+    }
+
+    private static final class Counters {
+
+        private final AtomicLong enqueued = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong queueDepth = new AtomicLong();
+        private final AtomicLong maxQueueDepth = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong totalHandlerNanos = new AtomicLong();
+        private final AtomicLong maxHandlerNanos = new AtomicLong();
+
+        void onEnqueued() {
+            enqueued.incrementAndGet();
+            updateMax(maxQueueDepth, queueDepth.incrementAndGet());
+        }
+
+        void onRejected() {
+            rejected.incrementAndGet();
+        }
+
+        void onDelivered(long waitNanos, long handlerNanos) {
+            queueDepth.decrementAndGet();
+            delivered.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            updateMax(maxWaitNanos, waitNanos);
+            totalHandlerNanos.addAndGet(handlerNanos);
+            updateMax(maxHandlerNanos, handlerNanos);
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current;
+            do {
+                current = max.get();
+            } while (value > current && !max.compareAndSet(current, value));
+        }
+
+        Stats toStats() {
+            long deliveredCount = delivered.get();
+            long averageWait = deliveredCount == 0 ? 0 : totalWaitNanos.get() / deliveredCount;
+            long averageHandler = deliveredCount == 0 ? 0 : totalHandlerNanos.get() / deliveredCount;
+            return new Stats(enqueued.get(), deliveredCount, rejected.get(),
+                    Math.max(0, queueDepth.get()), maxQueueDepth.get(), toMicros(averageWait),
+                    toMicros(maxWaitNanos.get()), toMicros(averageHandler),
+                    toMicros(maxHandlerNanos.get()));
+        }
+
+        private static long toMicros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright (c) 2019 YobertJomi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package custom.org.greenrobot.eventbus;
+
+/**
+ * Bounded queue of pending posts ordered by {@link Subscribe#priority()} of their subscribers,
+ * posts of equal priority are polled in order they were enqueued. Posts are kept in one linked
+ * list per priority, subscribers usually use few priorities.
+ */
+final class PriorityPendingPostQueue {
+
+    private final int capacity;
+    /**
+     * Non-empty lists ordered from highest priority.
+     */
+    private Bucket first;
+    private int size;
+
+    PriorityPendingPostQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return false if queue is full.
+     */
+    synchronized boolean offer(PendingPost pendingPost) {
+        if (pendingPost == null) {
+            throw new NullPointerException("null cannot be enqueued");
+        }
+        if (size >= capacity) {
+            return false;
+        }
+        int priority = pendingPost.subscription.subscriberMethod.priority;
+        Bucket previous = null;
+        Bucket bucket = first;
+        while (bucket != null && bucket.priority > priority) {
+            previous = bucket;
+            bucket = bucket.next;
+        }
+        if (bucket == null || bucket.priority != priority) {
+            Bucket newBucket = new Bucket(priority);
+            newBucket.next = bucket;
+            if (previous == null) {
+                first = newBucket;
+            } else {
+                previous.next = newBucket;
+            }
+            bucket = newBucket;
+        }
+        if (bucket.tail != null) {
+            bucket.tail.next = pendingPost;
+        } else {
+            bucket.head = pendingPost;
+        }
+        bucket.tail = pendingPost;
+        size++;
+        notifyAll();
+        return true;
+    }
+
+    synchronized PendingPost poll() {
+        Bucket bucket = first;
+        if (bucket == null) {
+            return null;
+        }
+        PendingPost pendingPost = bucket.head;
+        bucket.head = pendingPost.next;
+        pendingPost.next = null;
+        if (bucket.head == null) {
+            first = bucket.next;
+        }
+        size--;
+        return pendingPost;
+    }
+
+    /**
+     * @return false if post isn't in queue (anymore).
+     */
+    synchronized boolean remove(PendingPost pendingPost) {
+        Bucket previous = null;
+        for (Bucket bucket = first; bucket != null; previous = bucket, bucket = bucket.next) {
+            PendingPost before = null;
+            for (PendingPost post = bucket.head; post != null; before = post, post = post.next) {
+                if (post != pendingPost) {
+                    continue;
+                }
+                if (before == null) {
+                    bucket.head = post.next;
+                } else {
+                    before.next = post.next;
+                }
+                if (bucket.tail == post) {
+                    bucket.tail = before;
+                }
+                post.next = null;
+                if (bucket.head == null) {
+                    if (previous == null) {
+                        first = bucket.next;
+                    } else {
+                        previous.next = bucket.next;
+                    }
+                }
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized PendingPost poll(int maxMillisToWait) throws InterruptedException {
+        if (first == null) {
+            wait(maxMillisToWait);
+        }
+        return poll();
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private static final class Bucket {
+
+        final int priority;
+        PendingPost head;
+        PendingPost tail;
+        Bucket next;
+
+        Bucket(int priority) {
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2019 YobertJomi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package custom.org.greenrobot.eventbus;
+
+import java.util.logging.Level;
+
+/**
+ * Decides what happens to {@link ThreadMode#BACKGROUND} or {@link ThreadMode#ASYNC} event which
+ * can't be queued because queue of poster is full (see
+ * {@link EventBusBuilder#maxQueuedEvents(int)}). Called in posting thread.
+ */
+public interface RejectionPolicy {
+
+    /**
+     * Delivers rejected event in posting thread, so posting slows down to the speed of
+     * subscribers. Don't use it when events are posted from main thread: background subscriber
+     * would then block UI.
+     */
+    RejectionPolicy CALLER_RUNS = new RejectionPolicy() {
+        @Override
+        public void rejected(EventBus eventBus, Object event, Object subscriber,
+                             ThreadMode threadMode, Runnable delivery) {
+            delivery.run();
+        }
+    };
+
+    /**
+     * Never delivers rejected event in main thread. {@link ThreadMode#BACKGROUND} events are only
+     * queued when posted from main thread, so they are discarded like with {@link #DISCARD};
+     * {@link ThreadMode#ASYNC} event is discarded when posted from main thread and otherwise
+     * delivered in posting thread like with {@link #CALLER_RUNS}. Discarded events are counted as
+     * rejected in {@link EventBus#getPosterMetrics()}. Default policy.
+     */
+    RejectionPolicy CALLER_RUNS_OFF_MAIN_THREAD = new RejectionPolicy() {
+        @Override
+        public void rejected(EventBus eventBus, Object event, Object subscriber,
+                             ThreadMode threadMode, Runnable delivery) {
+            if (threadMode == ThreadMode.ASYNC && !eventBus.isMainThread()) {
+                delivery.run();
+            } else {
+                DISCARD.rejected(eventBus, event, subscriber, threadMode, delivery);
+            }
+        }
+    };
+
+    /**
+     * Drops rejected event and logs it.
+     */
+    RejectionPolicy DISCARD = new RejectionPolicy() {
+        @Override
+        public void rejected(EventBus eventBus, Object event, Object subscriber,
+                             ThreadMode threadMode, Runnable delivery) {
+            eventBus.getLogger().log(Level.WARNING, "Queue of " + threadMode + " poster is full, " +
+                    "event " + event.getClass() + " to " + subscriber.getClass() + " is discarded");
+        }
+    };
+
+    /**
+     * Throws {@link EventBusException} to posting thread.
+     */
+    RejectionPolicy ABORT = new RejectionPolicy() {
+        @Override
+        public void rejected(EventBus eventBus, Object event, Object subscriber,
+                             ThreadMode threadMode, Runnable delivery) {
+            throw new EventBusException("Queue of " + threadMode + " poster is full, can't post " +
+                    "event " + event.getClass() + " to " + subscriber.getClass());
+        }
+    };
+
+    /**
+     * @param delivery calls subscriber with event in current thread when run.
+     */
+    void rejected(EventBus eventBus, Object event, Object subscriber, ThreadMode threadMode,
+                  Runnable delivery);
+}
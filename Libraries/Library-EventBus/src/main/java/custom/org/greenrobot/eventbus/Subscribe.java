@@ -48,5 +48,14 @@ public @interface Subscribe {
      * 我更改添加tag
      */
     String tag() default "EventBus";
+
+    /**
+     * If true, events queued for this subscriber on the main thread ({@link ThreadMode#MAIN} posted
+     * from background thread and {@link ThreadMode#MAIN_ORDERED}) are conflated: while an event of
+     * the same type is still waiting for delivery, new one replaces it, so within one frame only
+     * the latest event is delivered. Use it for state like progress, where intermediate values
+     * are useless. Events delivered in posting thread are never conflated.
+     */
+    boolean conflate() default false;
 }
 
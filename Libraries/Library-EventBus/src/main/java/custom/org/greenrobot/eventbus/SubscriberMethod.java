@@ -17,15 +17,27 @@ package custom.org.greenrobot.eventbus;
 
 import java.lang.reflect.Method;
 
+import custom.org.greenrobot.eventbus.meta.SubscriberMethodInvoker;
+
 /**
  * Used internally by EventBus and generated subscriber indexes.
  */
 public class SubscriberMethod {
+    /**
+     * Reflected method, {@code null} for methods created from generated index with invoker.
+     */
     final Method method;
+    final SubscriberMethodInvoker invoker;
+    final Class<?> declaringClass;
+    final String methodName;
     final ThreadMode threadMode;
     final Class<?> eventType;
     final int priority;
     final boolean sticky;
+    /**
+     * @see Subscribe#conflate()
+     */
+    final boolean conflate;
     /**
      * Used for efficient comparison
      */
@@ -36,12 +48,47 @@ public class SubscriberMethod {
     public SubscriberMethod(Method method, Class<?> eventType, ThreadMode threadMode,
                             int priority, boolean sticky,
                             String tag) {
+        this(method, eventType, threadMode, priority, sticky, tag, false);
+    }
+
+    public SubscriberMethod(Method method, Class<?> eventType, ThreadMode threadMode,
+                            int priority, boolean sticky, String tag, boolean conflate) {
+        this(method, null, method.getDeclaringClass(), method.getName(), eventType, threadMode,
+                priority, sticky, tag, conflate);
+    }
+
+    /**
+     * Creates method called by generated invoker, so neither finding nor invoking it needs
+     * reflection.
+     */
+    public SubscriberMethod(Class<?> declaringClass, String methodName, Class<?> eventType,
+                            ThreadMode threadMode, int priority, boolean sticky, String tag,
+                            SubscriberMethodInvoker invoker) {
+        this(declaringClass, methodName, eventType, threadMode, priority, sticky, tag, false,
+                invoker);
+    }
+
+    public SubscriberMethod(Class<?> declaringClass, String methodName, Class<?> eventType,
+                            ThreadMode threadMode, int priority, boolean sticky, String tag,
+                            boolean conflate, SubscriberMethodInvoker invoker) {
+        this(null, invoker, declaringClass, methodName, eventType, threadMode, priority, sticky,
+                tag, conflate);
+    }
+
+    private SubscriberMethod(Method method, SubscriberMethodInvoker invoker,
+                             Class<?> declaringClass, String methodName, Class<?> eventType,
+                             ThreadMode threadMode, int priority, boolean sticky, String tag,
+                             boolean conflate) {
         this.method = method;
+        this.invoker = invoker;
+        this.declaringClass = declaringClass;
+        this.methodName = methodName;
         this.threadMode = threadMode;
         this.eventType = eventType;
         this.priority = priority;
         this.sticky = sticky;
         this.tag = tag;
+        this.conflate = conflate;
     }
 
     @Override
@@ -64,8 +111,8 @@ public class SubscriberMethod {
         if (methodString == null) {
             // Method.toString has more overhead, just take relevant parts of the method
             StringBuilder builder = new StringBuilder(64);
-            builder.append(method.getDeclaringClass().getName());
-            builder.append('#').append(method.getName());
+            builder.append(declaringClass.getName());
+            builder.append('#').append(methodName);
             builder.append('(').append(eventType.getName());
             methodString = builder.toString();
         }
@@ -73,6 +120,7 @@ public class SubscriberMethod {
 
     @Override
     public int hashCode() {
-        return method.hashCode();
+        checkMethodString();
+        return methodString.hashCode();
     }
 }
\ No newline at end of file
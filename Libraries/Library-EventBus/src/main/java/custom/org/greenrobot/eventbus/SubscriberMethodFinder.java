@@ -98,7 +98,7 @@ class SubscriberMethodFinder {
             if (findState.subscriberInfo != null) {
                 SubscriberMethod[] array = findState.subscriberInfo.getSubscriberMethods();
                 for (SubscriberMethod subscriberMethod : array) {
-                    if (findState.checkAdd(subscriberMethod.method, subscriberMethod.eventType)) {
+                    if (findState.checkAdd(subscriberMethod)) {
                         findState.subscriberMethods.add(subscriberMethod);
                     }
                 }
@@ -191,12 +191,13 @@ class SubscriberMethodFinder {
                     Subscribe subscribeAnnotation = method.getAnnotation(Subscribe.class);
                     if (subscribeAnnotation != null) {
                         Class<?> eventType = parameterTypes[0];
-                        if (findState.checkAdd(method, eventType)) {
-                            findState.subscriberMethods.add(new SubscriberMethod(method, eventType,
-                                    subscribeAnnotation.threadMode(),
-                                    subscribeAnnotation.priority(), subscribeAnnotation.sticky(),
-                                    subscribeAnnotation
-                                    .tag()));//我修改
+                        SubscriberMethod subscriberMethod = new SubscriberMethod(method, eventType,
+                                subscribeAnnotation.threadMode(),
+                                subscribeAnnotation.priority(), subscribeAnnotation.sticky(),
+                                subscribeAnnotation
+                                .tag(), subscribeAnnotation.conflate());//我修改
+                        if (findState.checkAdd(subscriberMethod)) {
+                            findState.subscriberMethods.add(subscriberMethod);
                         }
                     }
                 } else if (strictMethodVerification && method.isAnnotationPresent(Subscribe.class)) {
@@ -246,33 +247,34 @@ class SubscriberMethodFinder {
             subscriberInfo = null;
         }
 
-        boolean checkAdd(Method method, Class<?> eventType) {
+        boolean checkAdd(SubscriberMethod method) {
             // 2 level check: 1st level with event type only (fast), 2nd level with complete
             // signature when required.
             // Usually a subscriber doesn't have methods listening to the same event type.
+            Class<?> eventType = method.eventType;
             Object existing = anyMethodByEventType.put(eventType, method);
             if (existing == null) {
                 return true;
             } else {
-                if (existing instanceof Method) {
-                    if (!checkAddWithMethodSignature((Method) existing, eventType)) {
+                if (existing instanceof SubscriberMethod) {
+                    if (!checkAddWithMethodSignature((SubscriberMethod) existing, eventType)) {
                         // Paranoia check
                         throw new IllegalStateException();
                     }
-                    // Put any non-Method object to "consume" the existing Method
+                    // Put any non-SubscriberMethod object to "consume" the existing one
                     anyMethodByEventType.put(eventType, this);
                 }
                 return checkAddWithMethodSignature(method, eventType);
             }
         }
 
-        private boolean checkAddWithMethodSignature(Method method, Class<?> eventType) {
+        private boolean checkAddWithMethodSignature(SubscriberMethod method, Class<?> eventType) {
             methodKeyBuilder.setLength(0);
-            methodKeyBuilder.append(method.getName());
+            methodKeyBuilder.append(method.methodName);
             methodKeyBuilder.append('>').append(eventType.getName());
 
             String methodKey = methodKeyBuilder.toString();
-            Class<?> methodClass = method.getDeclaringClass();
+            Class<?> methodClass = method.declaringClass;
             Class<?> methodClassOld = subscriberClassByMethodKey.put(methodKey, methodClass);
             if (methodClassOld == null || methodClassOld.isAssignableFrom(methodClass)) {
                 // Only add if not already found in a sub class
@@ -44,6 +44,6 @@ final class Subscription {
 
     @Override
     public int hashCode() {
-        return subscriber.hashCode() + subscriberMethod.methodString.hashCode();
+        return subscriber.hashCode() + subscriberMethod.hashCode();
     }
 }
\ No newline at end of file
@@ -68,12 +68,38 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
         return createSubscriberMethod(methodName, eventType, threadMode, 0, false, tag);
     }
 
-    @SuppressWarnings("unchecked")
     protected SubscriberMethod createSubscriberMethod(String methodName, Class<?> eventType, ThreadMode threadMode,
                                                       int priority, boolean sticky, String tag) {//我修改
+        return createSubscriberMethod(methodName, eventType, threadMode, priority, sticky, tag, false,
+                null);
+    }
+
+    /**
+     * Creates subscriber method called by generated invoker, it doesn't look up method by
+     * reflection.
+     */
+    protected SubscriberMethod createSubscriberMethod(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                                      int priority, boolean sticky, String tag,
+                                                      SubscriberMethodInvoker invoker) {
+        return createSubscriberMethod(methodName, eventType, threadMode, priority, sticky, tag, false,
+                invoker);
+    }
+
+    /**
+     * @param invoker generated invoker of method, {@code null} to find and call method by
+     *                reflection.
+     */
+    @SuppressWarnings("unchecked")
+    protected SubscriberMethod createSubscriberMethod(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                                      int priority, boolean sticky, String tag,
+                                                      boolean conflate, SubscriberMethodInvoker invoker) {
+        if (invoker != null) {
+            return new SubscriberMethod(subscriberClass, methodName, eventType, threadMode, priority, sticky, tag,
+                    conflate, invoker);
+        }
         try {
             Method method = subscriberClass.getDeclaredMethod(methodName, eventType);
-            return new SubscriberMethod(method, eventType, threadMode, priority, sticky, tag);
+            return new SubscriberMethod(method, eventType, threadMode, priority, sticky, tag, conflate);
         } catch (NoSuchMethodException e) {
             throw new EventBusException("Could not find subscriber method in " + subscriberClass + ". Maybe a missing ProGuard rule?", e);
         }
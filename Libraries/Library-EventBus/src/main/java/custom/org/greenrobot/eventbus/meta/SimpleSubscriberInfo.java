@@ -38,7 +38,7 @@ public class SimpleSubscriberInfo extends AbstractSubscriberInfo {
         for (int i = 0; i < length; i++) {
             SubscriberMethodInfo info = methodInfos[i];
             methods[i] = createSubscriberMethod(info.methodName, info.eventType, info.threadMode,
-                    info.priority, info.sticky, info.tag);
+                    info.priority, info.sticky, info.tag, info.conflate, info.invoker);
         }
         return methods;
     }
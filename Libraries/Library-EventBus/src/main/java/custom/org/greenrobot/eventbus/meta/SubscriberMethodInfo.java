@@ -24,9 +24,32 @@ public class SubscriberMethodInfo {
     final int priority;
     final boolean sticky;
     String tag = null;
+    final boolean conflate;
+    final SubscriberMethodInvoker invoker;
 
     public SubscriberMethodInfo(String methodName, Class<?> eventType, ThreadMode threadMode,
                                 int priority, boolean sticky, String tag) {
+        this(methodName, eventType, threadMode, priority, sticky, tag, null);
+    }
+
+    /**
+     * @param invoker generated invoker of method, {@code null} to find and call method by
+     *                reflection.
+     */
+    public SubscriberMethodInfo(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                int priority, boolean sticky, String tag,
+                                SubscriberMethodInvoker invoker) {
+        this(methodName, eventType, threadMode, priority, sticky, tag, false, invoker);
+    }
+
+    /**
+     * @param conflate see {@link custom.org.greenrobot.eventbus.Subscribe#conflate()}.
+     */
+    public SubscriberMethodInfo(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                int priority, boolean sticky, String tag, boolean conflate,
+                                SubscriberMethodInvoker invoker) {
+        this.invoker = invoker;
+        this.conflate = conflate;
         this.methodName = methodName;
         this.threadMode = threadMode;
         this.eventType = eventType;
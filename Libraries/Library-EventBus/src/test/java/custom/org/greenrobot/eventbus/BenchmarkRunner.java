@@ -0,0 +1,159 @@
+package custom.org.greenrobot.eventbus;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal JMH-like harness: runs each benchmark in warmup and measured iterations of fixed
+ * duration and reports mean throughput with error of measured iterations.
+ * <p>
+ * Results can be saved to tab separated file and compared with file saved by previous run, so
+ * runs of different commits on the same machine are comparable.
+ */
+final class BenchmarkRunner {
+
+    /**
+     * Benchmarked code.
+     */
+    interface Benchmark {
+
+        /**
+         * Runs benchmarked operation {@code operations} times.
+         */
+        void run(int operations) throws Exception;
+    }
+
+    /**
+     * Consumes results, so JIT can't eliminate code computing them.
+     */
+    static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final long iterationNanos;
+    private final String filter;
+    private final List<Result> results = new ArrayList<>();
+
+    BenchmarkRunner(int warmupIterations, int measuredIterations, int iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.iterationNanos = iterationMillis * 1000_000L;
+        this.filter = filter;
+    }
+
+    static void consume(Object value) {
+        sink = value;
+    }
+
+    /**
+     * Measures benchmark if its name contains filter.
+     *
+     * @param batchSize operations per call of {@link Benchmark#run(int)}.
+     */
+    void measure(String name, int batchSize, Benchmark benchmark) throws Exception {
+        if (filter != null && !name.contains(filter)) {
+            return;
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(batchSize, benchmark);
+        }
+        double[] throughputs = new double[measuredIterations];
+        for (int i = 0; i < measuredIterations; i++) {
+            throughputs[i] = iteration(batchSize, benchmark);
+        }
+        Result result = new Result(name, throughputs);
+        results.add(result);
+        System.out.println(result);
+    }
+
+    private double iteration(int batchSize, Benchmark benchmark) throws Exception {
+        long operations = 0;
+        long started = System.nanoTime();
+        long elapsed;
+        do {
+            benchmark.run(batchSize);
+            operations += batchSize;
+            elapsed = System.nanoTime() - started;
+        } while (elapsed < iterationNanos);
+        return operations / (elapsed / 1e9);
+    }
+
+    void save(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            for (Result result : results) {
+                writer.println(result.name + '\t' + result.mean + '\t' + result.error);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Prints change of throughput against results saved before by {@link #save(File)}.
+     */
+    void compare(File baselineFile) throws IOException {
+        Map<String, double[]> baseline = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new FileReader(baselineFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split("\t");
+                baseline.put(columns[0], new double[]{Double.parseDouble(columns[1]), Double.parseDouble(columns[2])});
+            }
+        } finally {
+            reader.close();
+        }
+        System.out.println("Compared with " + baselineFile + ":");
+        for (Result result : results) {
+            double[] base = baseline.get(result.name);
+            if (base == null) {
+                System.out.println(String.format(Locale.US, "%-40s %14s", result.name, "new"));
+                continue;
+            }
+            double change = (result.mean - base[0]) / base[0] * 100;
+            boolean significant = Math.abs(result.mean - base[0]) > result.error + base[1];
+            System.out.println(String.format(Locale.US, "%-40s %+13.1f%%%s", result.name, change,
+                    significant ? "" : " (within error)"));
+        }
+    }
+
+    static final class Result {
+
+        final String name;
+        final double mean;
+        /**
+         * Half width of 99.9% confidence interval (normal approximation), like JMH reports.
+         */
+        final double error;
+
+        Result(String name, double[] throughputs) {
+            this.name = name;
+            double sum = 0;
+            for (double throughput : throughputs) {
+                sum += throughput;
+            }
+            mean = sum / throughputs.length;
+            double squares = 0;
+            for (double throughput : throughputs) {
+                squares += (throughput - mean) * (throughput - mean);
+            }
+            double deviation = throughputs.length > 1 ? Math.sqrt(squares / (throughputs.length - 1)) : 0;
+            error = 3.29 * deviation / Math.sqrt(throughputs.length);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-40s %14.0f +- %12.0f ops/s", name, mean, error);
+        }
+    }
+}
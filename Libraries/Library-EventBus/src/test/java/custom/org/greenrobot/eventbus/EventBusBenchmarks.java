@@ -0,0 +1,670 @@
+package custom.org.greenrobot.eventbus;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks of EventBus hot paths running on JVM: registration of subscriber classes with many
+ * methods, post in every {@link ThreadMode}, fan-out of tagged events, replay of sticky events
+ * and posting from many threads competing with registrations. Main thread is emulated by
+ * {@link JvmMainThreadSupport}.
+ * <p>
+ * Run {@link #main(String[])} from IDE or with test classpath, arguments are
+ * {@code [filter] [resultsFile] [baselineFile]}: only benchmarks with names containing filter
+ * ({@code all} for every one) are run, results are saved to results file and compared with
+ * results file of previous run. Iteration counts and durations are fixed, so results of different
+ * commits measured on the same machine are comparable.
+ */
+public class EventBusBenchmarks {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final int ITERATION_MILLIS = 1000;
+    private static final int FAN_OUT_SUBSCRIBERS = 16;
+    private static final String TAG = "EventBus";
+
+    private final BenchmarkRunner runner;
+    private final JvmMainThreadSupport mainThreadSupport = new JvmMainThreadSupport();
+
+    public EventBusBenchmarks(String filter) {
+        runner = new BenchmarkRunner(WARMUP_ITERATIONS, MEASURED_ITERATIONS, ITERATION_MILLIS, filter);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 && !"all".equals(args[0]) ? args[0] : null;
+        EventBusBenchmarks benchmarks = new EventBusBenchmarks(filter);
+        benchmarks.run();
+        if (args.length > 1) {
+            benchmarks.runner.save(new File(args[1]));
+        }
+        if (args.length > 2) {
+            benchmarks.runner.compare(new File(args[2]));
+        }
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        System.out.println(System.getProperty("java.vm.name") + " " + System.getProperty("java.version") +
+                ", " + Runtime.getRuntime().availableProcessors() + " processors");
+        measureRegistration();
+        measurePost();
+        measureTagFanOut();
+        measureStickyReplay();
+        measureMultiThreadedPost();
+        measurePendingPostRecycling();
+        mainThreadSupport.shutdown();
+    }
+
+    private void measureRegistration() throws Exception {
+        final EventBus eventBus = mainThreadSupport.builder().build();
+        final FatSubscriber subscriber = new FatSubscriber();
+        runner.measure("register.fatSubscriber", 10, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    eventBus.register(subscriber);
+                    eventBus.unregister(subscriber);
+                }
+            }
+        });
+        runner.measure("register.fatSubscriber.uncached", 10, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    EventBus.clearCaches();
+                    eventBus.register(subscriber);
+                    eventBus.unregister(subscriber);
+                }
+            }
+        });
+    }
+
+    private void measurePost() throws Exception {
+        final EventBus eventBus = mainThreadSupport.builder().build();
+        final ThreadModeSubscriber subscriber = new ThreadModeSubscriber();
+        eventBus.register(subscriber);
+        Object[] events = {new PostingEvent(), new MainEvent(), new MainOrderedEvent(),
+                new BackgroundEvent(), new AsyncEvent()};
+        for (final Object event : events) {
+            String name = event.getClass().getSimpleName();
+            BenchmarkRunner.Benchmark benchmark = new BenchmarkRunner.Benchmark() {
+                @Override
+                public void run(int operations) {
+                    long expected = subscriber.received.get() + operations;
+                    for (int i = 0; i < operations; i++) {
+                        eventBus.post(event, TAG);
+                    }
+                    awaitDeliveries(subscriber.received, expected);
+                }
+            };
+            // Background subscriber is called right in posting thread unless event is posted from
+            // main thread, only then it goes through background poster and its queue
+            runner.measure("post." + name, 1000,
+                    event instanceof BackgroundEvent ? inMainThread(benchmark) : benchmark);
+        }
+    }
+
+    private void measureTagFanOut() throws Exception {
+        final EventBus eventBus = mainThreadSupport.builder().build();
+        final AtomicLong received = new AtomicLong();
+        for (int i = 0; i < FAN_OUT_SUBSCRIBERS; i++) {
+            eventBus.register(new TagSubscriber(received));
+            eventBus.register(new OtherTagSubscriber(received));
+        }
+        final PostingEvent event = new PostingEvent();
+        runner.measure("tag.fanOut." + FAN_OUT_SUBSCRIBERS, 1000, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void run(int operations) {
+                long expected = received.get() + (long) operations * FAN_OUT_SUBSCRIBERS;
+                for (int i = 0; i < operations; i++) {
+                    eventBus.post(event, "tag");
+                }
+                awaitDeliveries(received, expected);
+            }
+        });
+        runner.measure("tag.noSubscriber", 1000, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    eventBus.post(event, "none");
+                }
+            }
+        });
+    }
+
+    private void measureStickyReplay() throws Exception {
+        final EventBus eventBus = mainThreadSupport.builder().build();
+        StickyBase[] events = {
+                new Event0(), new Event1(), new Event2(), new Event3(),
+                new Event4(), new Event5(), new Event6(), new Event7(),
+                new Event8(), new Event9(), new Event10(), new Event11(),
+                new Event12(), new Event13(), new Event14(), new Event15(),
+                new Event16(), new Event17(), new Event18(), new Event19(),
+                new Event20(), new Event21(), new Event22(), new Event23(),
+                new Event24(), new Event25(), new Event26(), new Event27(),
+                new Event28(), new Event29(), new Event30(), new Event31()
+        };
+        for (StickyBase event : events) {
+            eventBus.postSticky(event, TAG);
+            eventBus.postSticky(event, "other");
+        }
+        final StickySubscriber subscriber = new StickySubscriber();
+        runner.measure("sticky.replay." + events.length, 100, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    eventBus.register(subscriber);
+                    eventBus.unregister(subscriber);
+                }
+            }
+        });
+    }
+
+    /**
+     * Posts from many threads while another thread keeps registering and unregistering subscriber,
+     * so posting competes with registrations as in app with screens coming and going.
+     */
+    private void measureMultiThreadedPost() throws Exception {
+        final EventBus eventBus = mainThreadSupport.builder().build();
+        final ThreadModeSubscriber subscriber = new ThreadModeSubscriber();
+        eventBus.register(subscriber);
+        final PostingEvent event = new PostingEvent();
+        final AtomicBoolean churning = new AtomicBoolean(true);
+        Thread churn = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                OtherTagSubscriber other = new OtherTagSubscriber(new AtomicLong());
+                while (churning.get()) {
+                    eventBus.register(other);
+                    eventBus.unregister(other);
+                }
+            }
+        }, "churn");
+        churn.setDaemon(true);
+        churn.start();
+        try {
+            int maxThreads = Runtime.getRuntime().availableProcessors();
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                final BenchmarkRunner.Benchmark posting = inThreads(threads, new BenchmarkRunner.Benchmark() {
+                    @Override
+                    public void run(int operations) {
+                        for (int i = 0; i < operations; i++) {
+                            eventBus.post(event, TAG);
+                        }
+                    }
+                });
+                runner.measure("post.threads." + threads, 10_000 * threads, new BenchmarkRunner.Benchmark() {
+                    @Override
+                    public void run(int operations) throws Exception {
+                        long before = subscriber.received.get();
+                        posting.run(operations);
+                        long received = subscriber.received.get() - before;
+                        if (received != operations) {
+                            throw new IllegalStateException("Posted " + operations + " events, received " + received);
+                        }
+                    }
+                });
+            }
+        } finally {
+            churning.set(false);
+            churn.join();
+        }
+    }
+
+    /**
+     * Every queued delivery takes pending post from pool in posting thread and returns it in
+     * delivering thread.
+     */
+    private void measurePendingPostRecycling() throws Exception {
+        final EventBus eventBus = mainThreadSupport.builder().build();
+        final ThreadModeSubscriber subscriber = new ThreadModeSubscriber();
+        eventBus.register(subscriber);
+        final Subscription subscription = new Subscription(subscriber, new SubscriberMethod(
+                ThreadModeSubscriber.class.getMethod("onPosting", PostingEvent.class),
+                PostingEvent.class, ThreadMode.POSTING, 0, false, TAG));
+        final PostingEvent event = new PostingEvent();
+        final AsyncEvent asyncEvent = new AsyncEvent();
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            runner.measure("pendingPost.recycle.threads." + threads, 10_000 * threads,
+                    inThreads(threads, new BenchmarkRunner.Benchmark() {
+                        @Override
+                        public void run(int operations) {
+                            for (int i = 0; i < operations; i++) {
+                                PendingPost.releasePendingPost(PendingPost.obtainPendingPost(subscription, event));
+                            }
+                        }
+                    }));
+            runner.measure("pendingPost.async.threads." + threads, 1000 * threads,
+                    inThreads(threads, new BenchmarkRunner.Benchmark() {
+                        @Override
+                        public void run(int operations) {
+                            long expected = subscriber.received.get() + operations;
+                            for (int i = 0; i < operations; i++) {
+                                eventBus.post(asyncEvent, TAG);
+                            }
+                            awaitDeliveries(subscriber.received, expected);
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * Splits operations of benchmark between given number of threads.
+     */
+    private static BenchmarkRunner.Benchmark inThreads(final int threadCount,
+                                                       final BenchmarkRunner.Benchmark benchmark) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        return new BenchmarkRunner.Benchmark() {
+            @Override
+            public void run(int operations) throws Exception {
+                final int perThread = operations / threadCount;
+                List<Future<Void>> results = new ArrayList<>();
+                for (int t = 0; t < threadCount; t++) {
+                    results.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            benchmark.run(perThread);
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> result : results) {
+                    result.get();
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs benchmark in emulated main thread.
+     */
+    private BenchmarkRunner.Benchmark inMainThread(final BenchmarkRunner.Benchmark benchmark) {
+        return new BenchmarkRunner.Benchmark() {
+            @Override
+            public void run(final int operations) throws Exception {
+                mainThreadSupport.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        benchmark.run(operations);
+                        return null;
+                    }
+                }).get();
+            }
+        };
+    }
+
+    private static void awaitDeliveries(AtomicLong received, long expected) {
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+    }
+
+    private static void consume(Object event) {
+        BenchmarkRunner.consume(event);
+    }
+
+    public static final class PostingEvent {
+    }
+
+    public static final class MainEvent {
+    }
+
+    public static final class MainOrderedEvent {
+    }
+
+    public static final class BackgroundEvent {
+    }
+
+    public static final class AsyncEvent {
+    }
+
+    public static class StickyBase {
+    }
+
+    public static final class Event0 extends StickyBase {
+    }
+
+    public static final class Event1 extends StickyBase {
+    }
+
+    public static final class Event2 extends StickyBase {
+    }
+
+    public static final class Event3 extends StickyBase {
+    }
+
+    public static final class Event4 extends StickyBase {
+    }
+
+    public static final class Event5 extends StickyBase {
+    }
+
+    public static final class Event6 extends StickyBase {
+    }
+
+    public static final class Event7 extends StickyBase {
+    }
+
+    public static final class Event8 extends StickyBase {
+    }
+
+    public static final class Event9 extends StickyBase {
+    }
+
+    public static final class Event10 extends StickyBase {
+    }
+
+    public static final class Event11 extends StickyBase {
+    }
+
+    public static final class Event12 extends StickyBase {
+    }
+
+    public static final class Event13 extends StickyBase {
+    }
+
+    public static final class Event14 extends StickyBase {
+    }
+
+    public static final class Event15 extends StickyBase {
+    }
+
+    public static final class Event16 extends StickyBase {
+    }
+
+    public static final class Event17 extends StickyBase {
+    }
+
+    public static final class Event18 extends StickyBase {
+    }
+
+    public static final class Event19 extends StickyBase {
+    }
+
+    public static final class Event20 extends StickyBase {
+    }
+
+    public static final class Event21 extends StickyBase {
+    }
+
+    public static final class Event22 extends StickyBase {
+    }
+
+    public static final class Event23 extends StickyBase {
+    }
+
+    public static final class Event24 extends StickyBase {
+    }
+
+    public static final class Event25 extends StickyBase {
+    }
+
+    public static final class Event26 extends StickyBase {
+    }
+
+    public static final class Event27 extends StickyBase {
+    }
+
+    public static final class Event28 extends StickyBase {
+    }
+
+    public static final class Event29 extends StickyBase {
+    }
+
+    public static final class Event30 extends StickyBase {
+    }
+
+    public static final class Event31 extends StickyBase {
+    }
+
+    public static class ThreadModeSubscriber {
+
+        final AtomicLong received = new AtomicLong();
+
+        @Subscribe(threadMode = ThreadMode.POSTING)
+        public void onPosting(PostingEvent event) {
+            received.incrementAndGet();
+        }
+
+        @Subscribe(threadMode = ThreadMode.MAIN)
+        public void onMain(MainEvent event) {
+            received.incrementAndGet();
+        }
+
+        @Subscribe(threadMode = ThreadMode.MAIN_ORDERED)
+        public void onMainOrdered(MainOrderedEvent event) {
+            received.incrementAndGet();
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND)
+        public void onBackground(BackgroundEvent event) {
+            received.incrementAndGet();
+        }
+
+        @Subscribe(threadMode = ThreadMode.ASYNC)
+        public void onAsync(AsyncEvent event) {
+            received.incrementAndGet();
+        }
+    }
+
+    public static class TagSubscriber {
+
+        private final AtomicLong received;
+
+        TagSubscriber(AtomicLong received) {
+            this.received = received;
+        }
+
+        @Subscribe(tag = "tag")
+        public void onEvent(PostingEvent event) {
+            received.incrementAndGet();
+        }
+    }
+
+    public static class OtherTagSubscriber {
+
+        private final AtomicLong received;
+
+        OtherTagSubscriber(AtomicLong received) {
+            this.received = received;
+        }
+
+        @Subscribe(tag = "other")
+        public void onEvent(PostingEvent event) {
+            received.incrementAndGet();
+        }
+    }
+
+    public static class StickySubscriber {
+
+        @Subscribe(sticky = true)
+        public void onEvent(StickyBase event) {
+            consume(event);
+        }
+    }
+
+    /**
+     * Subscriber with many methods in class hierarchy, like screen listening to lots of events.
+     */
+    public static class FatSubscriberBase {
+
+        @Subscribe
+        public void onEvent0(Event0 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent1(Event1 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent2(Event2 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent3(Event3 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent4(Event4 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent5(Event5 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent6(Event6 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent7(Event7 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent8(Event8 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent9(Event9 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent10(Event10 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent11(Event11 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent12(Event12 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent13(Event13 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent14(Event14 event) {
+            consume(event);
+        }
+
+        @Subscribe
+        public void onEvent15(Event15 event) {
+            consume(event);
+        }
+    }
+
+    public static class FatSubscriber extends FatSubscriberBase {
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 1)
+        public void onEvent16(Event16 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 2)
+        public void onEvent17(Event17 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 0)
+        public void onEvent18(Event18 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 1)
+        public void onEvent19(Event19 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 2)
+        public void onEvent20(Event20 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 0)
+        public void onEvent21(Event21 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 1)
+        public void onEvent22(Event22 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 2)
+        public void onEvent23(Event23 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 0)
+        public void onEvent24(Event24 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 1)
+        public void onEvent25(Event25 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 2)
+        public void onEvent26(Event26 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 0)
+        public void onEvent27(Event27 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 1)
+        public void onEvent28(Event28 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 2)
+        public void onEvent29(Event29 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 0)
+        public void onEvent30(Event30 event) {
+            consume(event);
+        }
+
+        @Subscribe(threadMode = ThreadMode.BACKGROUND, priority = 1)
+        public void onEvent31(Event31 event) {
+            consume(event);
+        }
+    }
+}
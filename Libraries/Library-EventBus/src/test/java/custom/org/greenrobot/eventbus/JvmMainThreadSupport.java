@@ -0,0 +1,67 @@
+package custom.org.greenrobot.eventbus;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link MainThreadSupport} for JVM: single thread of executor plays role of Android main thread
+ * and main thread poster delivers events in it like Handler does in main looper.
+ */
+final class JvmMainThreadSupport implements MainThreadSupport {
+
+    private volatile Thread mainThread;
+    private final ExecutorService looper = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            mainThread = new Thread(runnable, "main-looper");
+            mainThread.setDaemon(true);
+            return mainThread;
+        }
+    });
+
+    /**
+     * Creates builder of EventBus which has this main thread and logs to console.
+     */
+    EventBusBuilder builder() {
+        EventBusBuilder builder = EventBus.builder()
+                .logger(new Logger.SystemOutLogger())
+                .logNoSubscriberMessages(false)
+                .sendNoSubscriberEvent(false);
+        builder.mainThreadSupport = this;
+        return builder;
+    }
+
+    /**
+     * Runs task in main thread, e.g. to post events the way UI code does.
+     */
+    <T> Future<T> submit(Callable<T> task) {
+        return looper.submit(task);
+    }
+
+    @Override
+    public boolean isMainThread() {
+        return Thread.currentThread() == mainThread;
+    }
+
+    @Override
+    public Poster createPoster(final EventBus eventBus) {
+        return new Poster() {
+            @Override
+            public void enqueue(final Subscription subscription, final Object event) {
+                looper.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        eventBus.invokeSubscriber(subscription, event);
+                    }
+                });
+            }
+        };
+    }
+
+    void shutdown() {
+        looper.shutdownNow();
+    }
+}
@@ -29,6 +29,9 @@ public class JSONParseUtil {
         return instance;
     }
 
+    /**
+     * 参数为String response的方法每次调用都会解析一次response，同一个response读取多个字段时用{@link ParsedResponse}
+     */
     public String optString(String response, String key) {
         return optString(response, key, "");
     }
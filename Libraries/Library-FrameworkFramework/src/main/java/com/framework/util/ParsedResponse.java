@@ -0,0 +1,144 @@
+package com.framework.util;
+
+import android.text.TextUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * 只解析一次的json返回：构造时把response解析成JSONObject，之后读取字段不再解析。
+ * JSONParseUtil中参数为String response的方法每次调用都会重新解析一次，同一个response读取多个字段时用这个类，
+ * 最好在子线程里调用{@link #parse(String)}
+ *
+ * @author YobertJomi
+ * className ParsedResponse
+ * created at  2020/9/21  10:15
+ */
+public final class ParsedResponse {
+    private final String raw;
+    private final JSONObject jsonObject;
+
+    private ParsedResponse(String raw, JSONObject jsonObject) {
+        this.raw = raw;
+        this.jsonObject = jsonObject;
+    }
+
+    /**
+     * 解析response
+     *
+     * @param response 网络返回的内容
+     * @return ParsedResponse 不是json对象时{@link #isJSONObject()}返回false，读取字段都返回默认值
+     */
+    public static ParsedResponse parse(String response) {
+        JSONObject object = null;
+        if (!TextUtils.isEmpty(response)) {
+            try {
+                object = new JSONObject(response);
+            } catch (JSONException e) {
+                object = null;
+            }
+        }
+        return new ParsedResponse(response, object);
+    }
+
+    /**
+     * 包装已经解析的JSONObject，如response中的data
+     */
+    public static ParsedResponse wrap(JSONObject jsonObject) {
+        return new ParsedResponse(null, jsonObject);
+    }
+
+    /**
+     * @return 原始的response，wrap时为null
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    public boolean isJSONObject() {
+        return null != jsonObject;
+    }
+
+    public JSONObject getJSONObject() {
+        return jsonObject;
+    }
+
+    public boolean has(String key) {
+        return null != jsonObject && jsonObject.has(key);
+    }
+
+    public String optString(String key) {
+        return optString(key, "");
+    }
+
+    public String optString(String key, String defaultValue) {
+        return null == jsonObject ? defaultValue : JSONParseUtil.getInstance().optString(jsonObject, key,
+                defaultValue);
+    }
+
+    public boolean optBoolean(String key) {
+        return optBoolean(key, false);
+    }
+
+    public boolean optBoolean(String key, boolean defaultValue) {
+        return null == jsonObject ? defaultValue : jsonObject.optBoolean(key, defaultValue);
+    }
+
+    public int optInt(String key) {
+        return optInt(key, 0);
+    }
+
+    public int optInt(String key, int defaultValue) {
+        return null == jsonObject ? defaultValue : jsonObject.optInt(key, defaultValue);
+    }
+
+    public long optLong(String key) {
+        return optLong(key, 0L);
+    }
+
+    public long optLong(String key, long defaultValue) {
+        return null == jsonObject ? defaultValue : jsonObject.optLong(key, defaultValue);
+    }
+
+    public float optFloat(String key) {
+        return optFloat(key, 0F);
+    }
+
+    public float optFloat(String key, float defaultValue) {
+        return null == jsonObject ? defaultValue : JSONParseUtil.getInstance().optFloat(jsonObject, key,
+                defaultValue);
+    }
+
+    public double optDouble(String key) {
+        return optDouble(key, 0D);
+    }
+
+    public double optDouble(String key, double defaultValue) {
+        return null == jsonObject ? defaultValue : JSONParseUtil.getInstance().optDouble(jsonObject, key,
+                defaultValue);
+    }
+
+    public JSONObject optJSONObject(String key) {
+        return null == jsonObject ? null : jsonObject.optJSONObject(key);
+    }
+
+    public JSONArray optJSONArray(String key) {
+        return null == jsonObject ? null : jsonObject.optJSONArray(key);
+    }
+
+    /**
+     * 读取嵌套的json对象，如response中的data，不存在时返回的ParsedResponse读取字段都返回默认值
+     *
+     * @param key key
+     * @return ParsedResponse 不为null
+     */
+    public ParsedResponse optParsedResponse(String key) {
+        return wrap(optJSONObject(key));
+    }
+
+    @Override
+    public String toString() {
+        return null != raw ? raw : String.valueOf(jsonObject);
+    }
+}
@@ -5,6 +5,7 @@ import android.content.Context;
 import com.library.network.okhttp3.callback.DownloadFileCallback;
 import com.library.network.okhttp3.callback.ICallback;
 import com.library.network.okhttp3.callback.UploadFilesCallback;
+import com.library.network.okhttp3.upload_dowload.SegmentedDownloader;
 
 import org.json.JSONObject;
 
@@ -135,4 +136,20 @@ public interface BaseHttpAPI {
                                final String destinationFilePath, final
                                String fileName, final long offsetBytes,
                                final DownloadFileCallback downloadFileCallback);
+
+    /**
+     * 分段并行下载文件(GET)，暂停后或进程重启后再次start()可以续传
+     *
+     * @param url                  String url
+     * @param destinationFilePath  保存的文件夹
+     * @param fileName             String
+     * @param downloadFileCallback DownloadFilesResponse
+     * @return SegmentedDownloader 用于暂停、继续、取消，参数异常时返回null
+     */
+    SegmentedDownloader doSegmentedDownloadRequest(final Context context, final String url,
+                                                   final Map<String, String> headers,
+                                                   final String destinationFilePath,
+                                                   final String fileName,
+                                                   final boolean callBackOnUiThread,
+                                                   final DownloadFileCallback downloadFileCallback);
 }
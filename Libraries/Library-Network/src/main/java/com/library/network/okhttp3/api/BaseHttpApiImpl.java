@@ -12,6 +12,7 @@ import com.library.network.okhttp3.request.DownloadRequest;
 import com.library.network.okhttp3.request.StringRequest;
 import com.library.network.okhttp3.request.UploadFileRequest;
 import com.library.network.okhttp3.upload_dowload.ProgressRequestBody;
+import com.library.network.okhttp3.upload_dowload.SegmentedDownloader;
 import com.library.network.okhttp3.util.Ok3Util;
 
 import org.json.JSONArray;
@@ -253,19 +254,78 @@ public final class BaseHttpApiImpl implements BaseHttpAPI {
                                       final boolean callBackOnUiThread,
                                       final DownloadFileCallback
                                               downloadFileCallback) {
+        if (!checkDownloadParams(context, url, destinationFilePath, fileName, downloadFileCallback)) {
+            return;
+        }
+        DownloadRequest downloadRequest = new DownloadRequest.Builder()
+                .addHeaders(headers)
+                .url(url)
+                .isReturnBody(true)
+                .callBackOnUiThread(callBackOnUiThread)
+                .postString_json(null == jsonObject ? null : jsonObject.toString())
+                .header("RANGE", "bytes=" + offsetBytes + "-")// 断点续传要用到的，指示下载的区间
+                .build(downloadFileCallback);
+        downloadRequest.setDestinationFile(new File(destinationFilePath, fileName).getAbsolutePath());
+        downloadRequest.setOffsetBytes(offsetBytes);
+        Ok3Util.getInstance().addToRequestQueueAsynchoronous(downloadRequest);
+    }
+
+    /**
+     * @see #doDownloadFileRequest(Context, String, String, Map, JSONObject, String, String, long, boolean,
+     * DownloadFileCallback)
+     */
+    @Override
+    public void doDownloadFileRequest(final Context context, final String url, final String method,
+                                      final Map<String, String> headers,
+                                      final JSONObject jsonObject,
+                                      final String destinationFilePath, final
+                                      String fileName, final long offsetBytes,
+                                      final DownloadFileCallback downloadFileCallback) {
+        doDownloadFileRequest(context, url, method, headers, jsonObject, destinationFilePath,
+                fileName, offsetBytes, true, downloadFileCallback);
+    }
+
+    @Override
+    public SegmentedDownloader doSegmentedDownloadRequest(final Context context, final String url,
+                                                          final Map<String, String> headers,
+                                                          final String destinationFilePath,
+                                                          final String fileName,
+                                                          final boolean callBackOnUiThread,
+                                                          final DownloadFileCallback downloadFileCallback) {
+        if (!checkDownloadParams(context, url, destinationFilePath, fileName, downloadFileCallback)) {
+            return null;
+        }
+        SegmentedDownloader downloader = new SegmentedDownloader.Builder()
+                .url(url)
+                .addHeaders(headers)
+                .destination(new File(destinationFilePath, fileName))
+                .callBackOnUiThread(callBackOnUiThread)
+                .build(downloadFileCallback);
+        downloader.start();
+        return downloader;
+    }
+
+    /**
+     * 检查网络和下载参数，创建保存的文件夹
+     *
+     * @return false 参数异常，已回调onFail
+     */
+    private boolean checkDownloadParams(final Context context, final String url,
+                                        final String destinationFilePath, final String fileName,
+                                        final DownloadFileCallback downloadFileCallback) {
         if (!NetworkUtil.getInstance().isNetworkAvailable(context)) {
             autoTryCount.set(0);
             if (null != downloadFileCallback) {
                 downloadFileCallback.onFail(ResultCode.ERROR_NETWORK_NONE, new Exception(
                         "网络未连接，请检查你的网络"));
             }
-            return;
+            return false;
         }
         if (TextUtils.isEmpty(url)) {
             if (null != downloadFileCallback) {
                 downloadFileCallback.onFail(ResultCode.ERROR_PARAMS, new Exception("参数异常"));
             }
-            return;
+            return false;
         }
         if (TextUtils.isEmpty(destinationFilePath)) {
             if (null != downloadFileCallback) {
@@ -273,14 +333,14 @@ public final class BaseHttpApiImpl implements BaseHttpAPI {
                         new Exception
                                 ("存储文件路径为空"));
             }
-            return;
+            return false;
         }
         if (TextUtils.isEmpty(fileName)) {
             if (null != downloadFileCallback) {
                 downloadFileCallback.onFail(ResultCode.ERROR_DOWNLOAD_FILE_NAME, new Exception(
                         "存储文件名为空"));
             }
-            return;
+            return false;
         }
         File dirFile = new File(destinationFilePath);
         try {
@@ -294,33 +354,8 @@ public final class BaseHttpApiImpl implements BaseHttpAPI {
                         new Exception
                                 ("目标文件夹不存在"));
             }
-            return;
+            return false;
         }
-        DownloadRequest downloadRequest = new DownloadRequest.Builder()
-                .addHeaders(headers)
-                .url(url)
-                .isReturnBody(true)
-                .callBackOnUiThread(callBackOnUiThread)
-                .postString_json(null == jsonObject ? null : jsonObject.toString())
-                .header("RANGE", "bytes=" + offsetBytes + "-")// 断点续传要用到的，指示下载的区间
-                .build(downloadFileCallback);
-        downloadRequest.setDestinationFile(destinationFilePath);
-        downloadRequest.setOffsetBytes(offsetBytes);
-        Ok3Util.getInstance().addToRequestQueueAsynchoronous(downloadRequest);
-    }
-
-    /**
-     * @see #doDownloadFileRequest(Context, String, String, Map, JSONObject, String, String, long, boolean,
-     * DownloadFileCallback)
-     */
-    @Override
-    public void doDownloadFileRequest(final Context context, final String url, final String method,
-                                      final Map<String, String> headers,
-                                      final JSONObject jsonObject,
-                                      final String destinationFilePath, final
-                                      String fileName, final long offsetBytes,
-                                      final DownloadFileCallback downloadFileCallback) {
-        doDownloadFileRequest(context, url, method, headers, jsonObject, destinationFilePath,
-                fileName, offsetBytes, true, downloadFileCallback);
+        return true;
     }
 }
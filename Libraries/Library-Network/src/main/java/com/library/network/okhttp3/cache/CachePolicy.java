@@ -0,0 +1,30 @@
+package com.library.network.okhttp3.cache;
+
+/**
+ * GET请求的缓存策略，需要先调用{@link com.library.network.okhttp3.util.Ok3Util#setResponseCache}开启缓存，
+ * 非GET请求不使用缓存
+ *
+ * @author YobertJomi
+ * className CachePolicy
+ * created at  2020/9/14  16:05
+ */
+public enum CachePolicy {
+    /**
+     * 不读缓存，总是请求网络
+     */
+    NETWORK_ONLY,
+    /**
+     * 按HTTP缓存头：未过期的直接用缓存，过期的带上If-None-Match/If-Modified-Since验证，
+     * 服务器返回304时使用缓存
+     */
+    DEFAULT,
+    /**
+     * 有缓存就用缓存(不管是否过期)，没有缓存再请求网络
+     */
+    CACHE_ELSE_NETWORK,
+    /**
+     * 有缓存时立即返回缓存(不管是否过期)，同时在后台验证并更新缓存，下次请求返回新的内容；
+     * 没有缓存时请求网络
+     */
+    STALE_WHILE_REVALIDATE
+}
@@ -0,0 +1,70 @@
+package com.library.network.okhttp3.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 返回内容的内存缓存(LRU)，{@link CachePolicy#CACHE_ELSE_NETWORK}和
+ * {@link CachePolicy#STALE_WHILE_REVALIDATE}先查内存，命中时不用读磁盘缓存
+ *
+ * @author YobertJomi
+ * className MemoryResponseCache
+ * created at  2020/9/14  16:20
+ */
+public final class MemoryResponseCache {
+
+    private final LinkedHashMap<String, String> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxSize;
+    private int size;
+
+    /**
+     * @param maxSize 缓存内容的最大字符数
+     */
+    public MemoryResponseCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public synchronized String get(String key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(String key, String value) {
+        if (null == key || null == value) {
+            return;
+        }
+        String previous = map.remove(key);
+        if (null != previous) {
+            size -= previous.length();
+        }
+        if (value.length() > maxSize) {
+            return;
+        }
+        map.put(key, value);
+        size += value.length();
+        Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getValue().length();
+            iterator.remove();
+        }
+    }
+
+    public synchronized void remove(String key) {
+        String previous = map.remove(key);
+        if (null != previous) {
+            size -= previous.length();
+        }
+    }
+
+    public synchronized void evictAll() {
+        map.clear();
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
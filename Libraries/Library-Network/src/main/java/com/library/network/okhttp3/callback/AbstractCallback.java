@@ -3,6 +3,8 @@ package com.library.network.okhttp3.callback;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.library.network.okhttp3.util.RequestLane;
+
 import java.io.IOException;
 
 import okhttp3.Call;
@@ -25,6 +27,7 @@ public abstract class AbstractCallback implements Callback {
 
     private String tag;
     private String action;
+    private RequestLane lane = RequestLane.NORMAL;
 
     public abstract void onSuccess(Call call, ResponseBody reponseBody);//子线程返回
 
@@ -54,6 +57,17 @@ public abstract class AbstractCallback implements Callback {
         this.action = action;
     }
 
+    public RequestLane getLane() {
+        return lane;
+    }
+
+    /**
+     * @param lane 请求走的通道 {@link RequestLane}
+     */
+    public void setLane(RequestLane lane) {
+        this.lane = null == lane ? RequestLane.NORMAL : lane;
+    }
+
     /**
      * 设置结果返回到主线程
      *
@@ -94,25 +108,8 @@ public abstract class AbstractCallback implements Callback {
     @Override
     public void onResponse(final Call call, final Response reponse) throws IOException {
         try {
-            if (callBackOnUiThread && !isReturnBody()) {
-                final String result = reponse.body().string();
-                handler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            onSuccess(call, result);
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                });
-            } else if (!isReturnBody()) {
-                try {
-                    final String result = reponse.body().string();
-                    onSuccess(call, result);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+            if (!isReturnBody()) {
+                onResponse(call, reponse.body().string());
             } else {
                 onSuccess(call, reponse.body());
             }
@@ -120,4 +117,31 @@ public abstract class AbstractCallback implements Callback {
             e.printStackTrace();
         }
     }
+
+    /**
+     * 返回已读取的内容(网络返回或者缓存)，callBackOnUiThread时切到主线程
+     *
+     * @param call   Call，内存缓存命中时为null
+     * @param result 返回的内容
+     */
+    public void onResponse(final Call call, final String result) {
+        if (callBackOnUiThread) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        onSuccess(call, result);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        } else {
+            try {
+                onSuccess(call, result);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
 }
@@ -6,15 +6,14 @@ import android.text.TextUtils;
 
 import com.library.network.okhttp3.callback.AbstractCallback;
 import com.library.network.okhttp3.callback.DownloadFileCallback;
+import com.library.network.okhttp3.upload_dowload.DownloadBrokenUtil;
+import com.library.network.okhttp3.util.RequestLane;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
 import java.util.Map;
 
 import okhttp3.Call;
@@ -80,42 +79,13 @@ public final class DownloadRequest extends AbstractCallback {
     @Override
     public void onSuccess(Call call, ResponseBody reponseBody) {
         if (builder != null && builder.isReturnBody) {
-            InputStream in = reponseBody.byteStream();
-            FileChannel channelOut = null;
-            // 随机访问文件，可以指定断点续传的起始位置
-            RandomAccessFile randomAccessFile = null;
             try {
-                randomAccessFile = new RandomAccessFile(destinationFile,
-                        "rwd");
-                // Chanel
-                // NIO中的用法，由于RandomAccessFile没有使用缓存策略，直接使用会使得下载速度变慢，亲测缓存下载3.3秒的文件，用普通的RandomAccessFile需要20多秒。
-                channelOut = randomAccessFile.getChannel();
-                // 内存映射，直接使用RandomAccessFile，是用其seek方法指定下载的起始位置，使用缓存下载，在这里指定下载位置。
-                MappedByteBuffer mappedBuffer = channelOut.map(
-                        FileChannel.MapMode.READ_WRITE, offsetBytes,
-                        reponseBody.contentLength());
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = in.read(buffer)) != -1) {
-                    mappedBuffer.put(buffer, 0, len);
-                }
+                DownloadBrokenUtil.writeToFile(reponseBody.source(), new File(destinationFile), offsetBytes);
                 this.onSuccess(call, "下载完成");
             } catch (IOException e) {
                 this.onFail(call, e);
             } finally {
-                try {
-                    if (null != in) {
-                        in.close();
-                    }
-                    if (channelOut != null) {
-                        channelOut.close();
-                    }
-                    if (randomAccessFile != null) {
-                        randomAccessFile.close();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                reponseBody.close();
             }
         }
     }
@@ -164,6 +134,7 @@ public final class DownloadRequest extends AbstractCallback {
         boolean isReturnBody = true;
         public DownloadFileCallback callback;
         Request request;
+        RequestLane lane = RequestLane.BULK;
         Request.Builder requstBuilder = new Request.Builder();
 
         public Builder() {
@@ -176,6 +147,7 @@ public final class DownloadRequest extends AbstractCallback {
             this.params = request.params;
             this.callBackOnUiThread = request.callBackOnUiThread;
             this.isReturnBody = request.isReturnBody;
+            this.lane = request.getLane();
         }
 
         public Builder callBackOnUiThread(boolean callBackOnUiThread) {
@@ -188,6 +160,16 @@ public final class DownloadRequest extends AbstractCallback {
             return this;
         }
 
+        /**
+         * 请求走的通道，默认{@link RequestLane#BULK}
+         *
+         * @param lane RequestLane
+         */
+        public Builder lane(RequestLane lane) {
+            this.lane = lane;
+            return this;
+        }
+
         public Builder header(String name, String value) {
             requstBuilder.header(name, value);
             return this;
@@ -339,6 +321,7 @@ public final class DownloadRequest extends AbstractCallback {
             DownloadRequest downloadFileCallback = new DownloadRequest(this);
             downloadFileCallback.setCallBackOnUiThread(callBackOnUiThread);
             downloadFileCallback.setReturnBody(isReturnBody);
+            downloadFileCallback.setLane(lane);
             builder = this;
             return downloadFileCallback;
         }
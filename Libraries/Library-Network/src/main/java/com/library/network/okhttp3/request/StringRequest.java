@@ -2,8 +2,10 @@ package com.library.network.okhttp3.request;
 
 import android.text.TextUtils;
 
+import com.library.network.okhttp3.cache.CachePolicy;
 import com.library.network.okhttp3.callback.AbstractCallback;
 import com.library.network.okhttp3.callback.ICallback;
+import com.library.network.okhttp3.util.RequestLane;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -34,6 +36,7 @@ public class StringRequest extends AbstractCallback {
     private String params;
     private boolean callBackOnUiThread;
     private boolean isReturnBody;
+    private CachePolicy cachePolicy;
 
     public StringRequest(Builder builder) {
         this.baseUrl = builder.baseUrl;
@@ -42,6 +45,7 @@ public class StringRequest extends AbstractCallback {
         this.isReturnBody = builder.isReturnBody;
         this.callback = builder.callback;
         this.request = builder.request;
+        this.cachePolicy = builder.cachePolicy;
     }
 
     public StringRequest.Builder newBuilder() {
@@ -57,6 +61,10 @@ public class StringRequest extends AbstractCallback {
         return callback;
     }
 
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
     @Override
     public String getRequestType() {
         return "STRING";
@@ -95,6 +103,8 @@ public class StringRequest extends AbstractCallback {
         boolean isReturnBody;
         ICallback callback;
         Request request;
+        RequestLane lane = RequestLane.NORMAL;
+        CachePolicy cachePolicy = CachePolicy.DEFAULT;
         Request.Builder requstBuilder = new Request.Builder();
 
         public Builder() {
@@ -107,6 +117,8 @@ public class StringRequest extends AbstractCallback {
             this.params = request.params;
             this.callBackOnUiThread = request.callBackOnUiThread;
             this.isReturnBody = request.isReturnBody;
+            this.lane = request.getLane();
+            this.cachePolicy = request.cachePolicy;
         }
 
         public Builder callBackOnUiThread(boolean callBackOnUiThread) {
@@ -119,6 +131,26 @@ public class StringRequest extends AbstractCallback {
             return this;
         }
 
+        /**
+         * 请求走的通道，默认{@link RequestLane#NORMAL}
+         *
+         * @param lane RequestLane
+         */
+        public Builder lane(RequestLane lane) {
+            this.lane = lane;
+            return this;
+        }
+
+        /**
+         * GET请求的缓存策略，默认{@link CachePolicy#DEFAULT}
+         *
+         * @param cachePolicy CachePolicy
+         */
+        public Builder cachePolicy(CachePolicy cachePolicy) {
+            this.cachePolicy = null == cachePolicy ? CachePolicy.DEFAULT : cachePolicy;
+            return this;
+        }
+
         public Builder header(String name, String value) {
             requstBuilder.header(name, value);
             return this;
@@ -295,6 +327,7 @@ public class StringRequest extends AbstractCallback {
             StringRequest stringRequest = new StringRequest(this);
             stringRequest.setCallBackOnUiThread(callBackOnUiThread);
             stringRequest.setReturnBody(isReturnBody);
+            stringRequest.setLane(lane);
             builder = this;
             return stringRequest;
         }
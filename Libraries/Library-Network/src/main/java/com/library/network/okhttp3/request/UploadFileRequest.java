@@ -6,6 +6,7 @@ import android.text.TextUtils;
 
 import com.library.network.okhttp3.callback.AbstractCallback;
 import com.library.network.okhttp3.callback.UploadFilesCallback;
+import com.library.network.okhttp3.util.RequestLane;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -103,6 +104,7 @@ public final class UploadFileRequest extends AbstractCallback {
         boolean isReturnBody = true;
         public UploadFilesCallback callback;
         Request request;
+        RequestLane lane = RequestLane.BULK;
         Request.Builder requstBuilder = new Request.Builder();
 
         public Builder() {
@@ -115,6 +117,7 @@ public final class UploadFileRequest extends AbstractCallback {
             this.params = request.params;
             this.callBackOnUiThread = request.callBackOnUiThread;
             this.isReturnBody = request.isReturnBody;
+            this.lane = request.getLane();
         }
 
         public Builder callBackOnUiThread(boolean callBackOnUiThread) {
@@ -127,6 +130,16 @@ public final class UploadFileRequest extends AbstractCallback {
             return this;
         }
 
+        /**
+         * 请求走的通道，默认{@link RequestLane#BULK}
+         *
+         * @param lane RequestLane
+         */
+        public Builder lane(RequestLane lane) {
+            this.lane = lane;
+            return this;
+        }
+
         public Builder header(String name, String value) {
             requstBuilder.header(name, value);
             return this;
@@ -278,6 +291,7 @@ public final class UploadFileRequest extends AbstractCallback {
             UploadFileRequest uploadFileRequest = new UploadFileRequest(this);
             uploadFileRequest.setCallBackOnUiThread(callBackOnUiThread);
             uploadFileRequest.setReturnBody(isReturnBody);
+            uploadFileRequest.setLane(lane);
             builder = this;
             return uploadFileRequest;
         }
@@ -1,10 +1,12 @@
 package com.library.network.okhttp3.upload_dowload;
 
+import com.library.network.okhttp3.util.Ok3Util;
+import com.library.network.okhttp3.util.RequestLane;
+
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 import okhttp3.Call;
@@ -13,10 +15,10 @@ import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import okhttp3.ResponseBody;
+import okio.BufferedSource;
 
 /**
- * 带进度监听download功能的辅助类
+ * 带进度监听download功能的辅助类，大文件分段并行下载见{@link SegmentedDownloader}
  *
  * @author YobertJomi className DownloadBrokenUtil created at 2017/9/20 10:55
  */
@@ -59,7 +61,9 @@ public class DownloadBrokenUtil {
             }
         };
 
-        return new OkHttpClient.Builder().addNetworkInterceptor(interceptor)
+        // 共用BULK通道的Dispatcher和连接池
+        return Ok3Util.getInstance().getOkHttpClient(RequestLane.BULK).newBuilder()
+                .addNetworkInterceptor(interceptor)
                 .build();
     }
 
@@ -87,39 +91,42 @@ public class DownloadBrokenUtil {
     }
 
     private void save(Response response, long startsPoint) {
-        ResponseBody body = response.body();
-        InputStream in = body.byteStream();
-        FileChannel channelOut = null;
-        // 随机访问文件，可以指定断点续传的起始位置
-        RandomAccessFile randomAccessFile = null;
         try {
-            randomAccessFile = new RandomAccessFile(destination, "rwd");
-            // Chanel
-            // NIO中的用法，由于RandomAccessFile没有使用缓存策略，直接使用会使得下载速度变慢，亲测缓存下载3.3秒的文件，用普通的RandomAccessFile需要20多秒。
-            channelOut = randomAccessFile.getChannel();
-            // 内存映射，直接使用RandomAccessFile，是用其seek方法指定下载的起始位置，使用缓存下载，在这里指定下载位置。
-            MappedByteBuffer mappedBuffer = channelOut.map(
-                    FileChannel.MapMode.READ_WRITE, startsPoint,
-                    body.contentLength());
-            byte[] buffer = new byte[1024];
-            int len;
-            while ((len = in.read(buffer)) != -1) {
-                mappedBuffer.put(buffer, 0, len);
-            }
+            writeToFile(response.body().source(), destination, startsPoint);
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
-            try {
-                in.close();
-                if (channelOut != null) {
-                    channelOut.close();
-                }
-                if (randomAccessFile != null) {
-                    randomAccessFile.close();
+            response.close();
+        }
+    }
+
+    /**
+     * 把下载的内容用FileChannel按位置写入文件，不改变文件的其它部分
+     *
+     * @param source      下载的内容
+     * @param destination 目标文件
+     * @param position    开始写入的位置，断点续传时为断点
+     * @return 写入的字节数
+     */
+    public static long writeToFile(BufferedSource source, File destination, long position)
+            throws IOException {
+        // 随机访问文件，可以指定断点续传的起始位置
+        RandomAccessFile randomAccessFile = new RandomAccessFile(destination, "rw");
+        try {
+            FileChannel channelOut = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long written = 0;
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += channelOut.write(buffer, position + written);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
+                buffer.clear();
             }
+            channelOut.force(false);
+            return written;
+        } finally {
+            randomAccessFile.close();
         }
     }
 }
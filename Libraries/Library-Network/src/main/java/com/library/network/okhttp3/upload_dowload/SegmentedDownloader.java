@@ -0,0 +1,727 @@
+package com.library.network.okhttp3.upload_dowload;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import com.library.network.okhttp3.callback.DownloadFileCallback;
+import com.library.network.okhttp3.other.ResultCode;
+import com.library.network.okhttp3.util.Ok3Util;
+import com.library.network.okhttp3.util.RequestLane;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+/**
+ * 分段并行下载：服务器支持Range时把文件分成几段，在共用的OkHttpClient({@link RequestLane#BULK})上
+ * 并行下载，每段用FileChannel按位置写入目标文件。各段的进度保存在"目标文件.segments"里，
+ * 暂停或者进程被杀后再次{@link #start()}从保存的进度继续下载。服务器不支持Range时整个文件一次下载，不能续传
+ *
+ * @author YobertJomi
+ * className SegmentedDownloader
+ * created at  2020/9/18  11:30
+ */
+@SuppressWarnings("unused")
+public final class SegmentedDownloader {
+
+    private static final String STATE_SUFFIX = ".segments";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 每段每下载这么多字节保存一次进度
+    private static final long CHECKPOINT_BYTES = 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+    // 每段失败后重试的次数
+    private static final int MAX_RETRIES = 2;
+
+    private final String url;
+    private final Map<String, String> headers;
+    private final File destination;
+    private final File stateFile;
+    private final int maxSegments;
+    private final long minSegmentBytes;
+    private final boolean callBackOnUiThread;
+    private final DownloadFileCallback callback;
+    private Handler handler;
+
+    private final Object stateLock = new Object();// 保存进度的互斥锁对象
+    private final List<Call> calls = new ArrayList<>();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLong lastProgressMillis = new AtomicLong();
+    // start、pause、失败时加1，之前的请求的回调不再处理
+    private volatile int generation;
+    private boolean running;
+    private OkHttpClient client;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private List<Segment> segments;
+    private long contentLength;
+    private String validator;
+    private boolean resumable;
+    private int remainingSegments;
+
+    private SegmentedDownloader(Builder builder) {
+        this.url = builder.url;
+        this.headers = builder.headers;
+        this.destination = builder.destination;
+        this.stateFile = new File(builder.destination.getPath() + STATE_SUFFIX);
+        this.maxSegments = builder.maxSegments;
+        this.minSegmentBytes = builder.minSegmentBytes;
+        this.callBackOnUiThread = builder.callBackOnUiThread;
+        this.callback = builder.callback;
+        if (callBackOnUiThread) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+    }
+
+    public File getDestination() {
+        return destination;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 开始下载，有保存的进度时继续下载
+     */
+    public void start() {
+        final int gen;
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+            running = true;
+            gen = ++generation;
+            segments = null;
+            resumable = false;
+            client = Ok3Util.getInstance().getOkHttpClient(RequestLane.BULK).newBuilder()
+                    .readTimeout(60 * 1000, TimeUnit.MILLISECONDS)
+                    .retryOnConnectionFailure(true)
+                    .build();
+        }
+        // 读取进度文件、创建目标文件不在调用的线程里执行
+        client.dispatcher().executorService().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (loadState()) {
+                        startSegments(gen);
+                    } else {
+                        probe(gen);
+                    }
+                } catch (IOException e) {
+                    fail(gen, e, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * 暂停下载，进度保存在进度文件里
+     */
+    public void pause() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            stop();
+        }
+        checkpoint();
+        closeFile();
+    }
+
+    /**
+     * 取消下载，删除已下载的部分和进度文件
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (running) {
+                stop();
+            }
+        }
+        closeFile();
+        synchronized (stateLock) {
+            stateFile.delete();
+            destination.delete();
+        }
+    }
+
+    // Must be called in synchronized block
+    private void stop() {
+        generation++;
+        running = false;
+        for (Call call : calls) {
+            call.cancel();
+        }
+        calls.clear();
+    }
+
+    private Request.Builder newRequestBuilder() {
+        Request.Builder builder = new Request.Builder().url(url);
+        if (null != headers) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * @return null 已经暂停或者失败
+     */
+    private synchronized Call newCall(int gen, Request request) {
+        if (gen != generation) {
+            return null;
+        }
+        Call call = client.newCall(request);
+        calls.add(call);
+        return call;
+    }
+
+    /**
+     * 请求第一个字节，获取文件长度、校验值(ETag/Last-Modified)，判断服务器是否支持Range
+     */
+    private void probe(final int gen) {
+        Call call = newCall(gen, newRequestBuilder().header("Range", "bytes=0-0").build());
+        if (null == call) {
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                fail(gen, e, false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    long total = response.code() == 206 ? parseTotalLength(response.header("Content-Range")) : -1;
+                    if (total > 0) {
+                        response.close();
+                        init(total, getValidator(response.header("ETag"), response.header("Last-Modified")), true);
+                        startSegments(gen);
+                    } else if (response.code() == 200) {
+                        // 不支持Range，用这个响应下载整个文件
+                        init(response.body().contentLength(), null, false);
+                        openFile();
+                        onStart(gen);
+                        handleSegmentResponse(gen, segments.get(0), response);
+                    } else {
+                        response.close();
+                        fail(gen, new IOException("HTTP " + response.code()), false);
+                    }
+                } catch (IOException e) {
+                    response.close();
+                    fail(gen, e, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * 弱ETag(W/"...")不能用在If-Range里(RFC 7233)，服务器会一直返回200，这时改用Last-Modified
+     */
+    private static String getValidator(String etag, String lastModified) {
+        return !TextUtils.isEmpty(etag) && !isWeak(etag) ? etag : lastModified;
+    }
+
+    private static boolean isWeak(String validator) {
+        return null != validator && validator.startsWith("W/");
+    }
+
+    /**
+     * @param contentRange 如 bytes 0-0/12345
+     * @return 文件长度，未知时返回-1
+     */
+    private static long parseTotalLength(String contentRange) {
+        if (null == contentRange) {
+            return -1;
+        }
+        int index = contentRange.lastIndexOf('/');
+        try {
+            return index < 0 ? -1 : Long.parseLong(contentRange.substring(index + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void init(long total, String validator, boolean resumable) {
+        this.contentLength = total;
+        this.validator = validator;
+        this.resumable = resumable;
+        List<Segment> newSegments = new ArrayList<>();
+        if (!resumable || total <= 0) {
+            newSegments.add(new Segment(0, 0, total > 0 ? total - 1 : -1, 0));
+        } else {
+            long count = Math.min(maxSegments, Math.max(1, (total + minSegmentBytes - 1) / minSegmentBytes));
+            long size = total / count;
+            for (int i = 0; i < count; i++) {
+                long end = i == count - 1 ? total - 1 : (i + 1) * size - 1;
+                newSegments.add(new Segment(i, i * size, end, 0));
+            }
+        }
+        segments = newSegments;
+    }
+
+    private void startSegments(int gen) throws IOException {
+        openFile();
+        checkpoint();
+        onStart(gen);
+        List<Segment> unfinished = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.isDone()) {
+                unfinished.add(segment);
+            }
+        }
+        synchronized (this) {
+            remainingSegments = unfinished.size();
+        }
+        if (unfinished.isEmpty()) {
+            finish(gen);
+            return;
+        }
+        for (Segment segment : unfinished) {
+            enqueueSegment(gen, segment);
+        }
+    }
+
+    private void onStart(int gen) {
+        long downloaded = 0;
+        for (Segment segment : segments) {
+            downloaded += segment.downloaded;
+        }
+        downloadedBytes.set(downloaded);
+        synchronized (this) {
+            remainingSegments = segments.size();
+        }
+        if (null != callback && gen == generation) {
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onPreExecute(contentLength);
+                }
+            });
+        }
+    }
+
+    private void enqueueSegment(final int gen, final Segment segment) {
+        Request.Builder builder = newRequestBuilder();
+        if (resumable) {
+            builder.header("Range", "bytes=" + segment.position() + "-" + segment.end);
+            if (!TextUtils.isEmpty(validator)) {
+                // 文件变化后服务器返回200和整个文件，不会拼接出错误的文件
+                builder.header("If-Range", validator);
+            }
+        }
+        Call call = newCall(gen, builder.build());
+        if (null == call) {
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                segmentFailed(gen, segment, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                handleSegmentResponse(gen, segment, response);
+            }
+        });
+    }
+
+    private void handleSegmentResponse(int gen, Segment segment, Response response) {
+        try {
+            if (resumable && response.code() == 200) {
+                fail(gen, new IOException("服务器上的文件已改变，请重新下载"), true);
+                return;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+            write(gen, segment, response.body().source());
+        } catch (IOException e) {
+            segmentFailed(gen, segment, e);
+            return;
+        } finally {
+            response.close();
+        }
+        segmentDone(gen);
+    }
+
+    private void write(int gen, Segment segment, BufferedSource source) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long bytesSinceCheckpoint = 0;
+        while (!segment.isDone()) {
+            if (gen != generation) {
+                throw new IOException("Canceled");
+            }
+            if (segment.end >= 0) {
+                buffer.limit((int) Math.min(BUFFER_SIZE, segment.end - segment.position() + 1));
+            }
+            int read = source.read(buffer);
+            if (read == -1) {
+                if (segment.end >= 0) {
+                    throw new EOFException("segment " + segment.index + " ended at " + segment.position());
+                }
+                segment.finished = true;
+                break;
+            }
+            buffer.flip();
+            long position = segment.position();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+            segment.downloaded += read;
+            onProgress(downloadedBytes.addAndGet(read));
+            bytesSinceCheckpoint += read;
+            if (bytesSinceCheckpoint >= CHECKPOINT_BYTES) {
+                checkpoint();
+                bytesSinceCheckpoint = 0;
+            }
+        }
+    }
+
+    private void onProgress(final long downloaded) {
+        long now = System.currentTimeMillis();
+        long last = lastProgressMillis.get();
+        if (null == callback || now - last < PROGRESS_INTERVAL_MILLIS
+                || !lastProgressMillis.compareAndSet(last, now)) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                callback.update(downloaded, contentLength, false);
+            }
+        });
+    }
+
+    private void segmentDone(int gen) {
+        synchronized (this) {
+            if (gen != generation || --remainingSegments > 0) {
+                return;
+            }
+        }
+        checkpoint();
+        finish(gen);
+    }
+
+    private void segmentFailed(int gen, Segment segment, IOException e) {
+        boolean retry;
+        synchronized (this) {
+            if (gen != generation) {
+                return;
+            }
+            retry = resumable && segment.retries < MAX_RETRIES;
+            if (retry) {
+                segment.retries++;
+            }
+        }
+        if (retry) {
+            enqueueSegment(gen, segment);
+        } else {
+            fail(gen, e, false);
+        }
+    }
+
+    private void finish(int gen) {
+        synchronized (this) {
+            if (gen != generation) {
+                return;
+            }
+            generation++;
+            running = false;
+            calls.clear();
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        closeFile();
+        synchronized (stateLock) {
+            stateFile.delete();
+        }
+        if (null != callback) {
+            final long downloaded = downloadedBytes.get();
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    callback.update(downloaded, contentLength, true);
+                    callback.onSuccess("下载完成");
+                }
+            });
+        }
+    }
+
+    /**
+     * @param discard 删除保存的进度，下次从头下载
+     */
+    private void fail(int gen, final IOException e, boolean discard) {
+        synchronized (this) {
+            if (gen != generation) {
+                return;
+            }
+            stop();
+        }
+        if (discard) {
+            synchronized (stateLock) {
+                stateFile.delete();
+            }
+        } else {
+            checkpoint();
+        }
+        closeFile();
+        if (null != callback) {
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onFail(ResultCode.ERROR_NORMAL, e);
+                }
+            });
+        }
+    }
+
+    private void deliver(Runnable runnable) {
+        if (callBackOnUiThread) {
+            handler.post(runnable);
+        } else {
+            runnable.run();
+        }
+    }
+
+    private synchronized void openFile() throws IOException {
+        File parent = destination.getParentFile();
+        if (null != parent) {
+            parent.mkdirs();
+        }
+        randomAccessFile = new RandomAccessFile(destination, "rw");
+        if (contentLength > 0) {
+            if (randomAccessFile.length() != contentLength) {
+                randomAccessFile.setLength(contentLength);
+            }
+        } else {
+            // 长度未知时从0开始下载，旧文件多出来的内容不能留在末尾
+            randomAccessFile.setLength(0);
+        }
+        channel = randomAccessFile.getChannel();
+    }
+
+    private synchronized void closeFile() {
+        try {
+            if (null != randomAccessFile) {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        randomAccessFile = null;
+    }
+
+    /**
+     * 保存各段进度。先读进度再把文件写入磁盘，保存的进度不会超过已写入磁盘的数据
+     */
+    private void checkpoint() {
+        if (!resumable || null == segments) {
+            return;
+        }
+        synchronized (stateLock) {
+            Properties properties = new Properties();
+            properties.setProperty("url", url);
+            properties.setProperty("length", String.valueOf(contentLength));
+            if (null != validator) {
+                properties.setProperty("validator", validator);
+            }
+            List<Segment> current = segments;
+            properties.setProperty("segments", String.valueOf(current.size()));
+            for (Segment segment : current) {
+                properties.setProperty("segment." + segment.index,
+                        segment.start + "," + segment.end + "," + segment.downloaded);
+            }
+            File tempFile = new File(stateFile.getPath() + ".tmp");
+            OutputStream out = null;
+            try {
+                FileChannel fileChannel = channel;
+                if (null != fileChannel && fileChannel.isOpen()) {
+                    fileChannel.force(false);
+                }
+                out = new FileOutputStream(tempFile);
+                properties.store(out, null);
+                out.close();
+                out = null;
+                if (!tempFile.renameTo(stateFile)) {
+                    stateFile.delete();
+                    tempFile.renameTo(stateFile);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                try {
+                    if (null != out) {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false 没有可以继续的进度(没有进度文件、url不同或者目标文件已被删除)
+     */
+    private boolean loadState() throws IOException {
+        Properties properties = new Properties();
+        synchronized (stateLock) {
+            if (!stateFile.exists()) {
+                return false;
+            }
+            InputStream in = new FileInputStream(stateFile);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        try {
+            long length = Long.parseLong(properties.getProperty("length", "-1"));
+            if (!url.equals(properties.getProperty("url")) || length <= 0 || destination.length() != length) {
+                return false;
+            }
+            int count = Integer.parseInt(properties.getProperty("segments", "0"));
+            List<Segment> savedSegments = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String[] values = properties.getProperty("segment." + i, "").split(",");
+                savedSegments.add(new Segment(i, Long.parseLong(values[0]), Long.parseLong(values[1]),
+                        Long.parseLong(values[2])));
+            }
+            if (savedSegments.isEmpty()) {
+                return false;
+            }
+            String savedValidator = properties.getProperty("validator");
+            if (isWeak(savedValidator)) {
+                // 弱ETag无法用If-Range校验文件是否改变，从头下载
+                return false;
+            }
+            contentLength = length;
+            validator = savedValidator;
+            resumable = true;
+            segments = savedSegments;
+            return true;
+        } catch (RuntimeException e) {
+            // 进度文件损坏时从头下载
+            return false;
+        }
+    }
+
+    private static final class Segment {
+        final int index;
+        final long start;
+        // 包含end，文件长度未知时为-1
+        final long end;
+        // 只在下载这一段的线程里修改
+        volatile long downloaded;
+        volatile boolean finished;
+        int retries;
+
+        Segment(int index, long start, long end, long downloaded) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.downloaded = downloaded;
+        }
+
+        long position() {
+            return start + downloaded;
+        }
+
+        boolean isDone() {
+            return end >= 0 ? start + downloaded > end : finished;
+        }
+    }
+
+    public static class Builder {
+        String url;
+        Map<String, String> headers;
+        File destination;
+        int maxSegments = 4;
+        long minSegmentBytes = 1024 * 1024;
+        boolean callBackOnUiThread;
+        DownloadFileCallback callback;
+
+        public Builder url(String url) {
+            this.url = url;
+            return this;
+        }
+
+        public Builder addHeaders(Map<String, String> headers) {
+            if (null != headers) {
+                if (null == this.headers) {
+                    this.headers = new HashMap<>();
+                }
+                this.headers.putAll(headers);
+            }
+            return this;
+        }
+
+        public Builder destination(File destination) {
+            this.destination = destination;
+            return this;
+        }
+
+        /**
+         * @param maxSegments 最多分几段并行下载，默认4
+         */
+        public Builder maxSegments(int maxSegments) {
+            this.maxSegments = Math.max(1, maxSegments);
+            return this;
+        }
+
+        /**
+         * @param minSegmentBytes 每段最小字节数，小文件不分段，默认1MB
+         */
+        public Builder minSegmentBytes(long minSegmentBytes) {
+            this.minSegmentBytes = Math.max(1, minSegmentBytes);
+            return this;
+        }
+
+        public Builder callBackOnUiThread(boolean callBackOnUiThread) {
+            this.callBackOnUiThread = callBackOnUiThread;
+            return this;
+        }
+
+        public SegmentedDownloader build(DownloadFileCallback callback) {
+            if (TextUtils.isEmpty(url)) {
+                throw new IllegalArgumentException("url is empty");
+            }
+            if (null == destination) {
+                throw new IllegalArgumentException("destination is null");
+            }
+            this.callback = callback;
+            return new SegmentedDownloader(this);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.library.network.okhttp3.api.HttpAPIFactory;
 import com.library.network.okhttp3.callback.DownloadFileCallback;
 import com.library.network.okhttp3.callback.ICallback;
 import com.library.network.okhttp3.callback.UploadFilesCallback;
+import com.library.network.okhttp3.upload_dowload.SegmentedDownloader;
 
 import org.json.JSONObject;
 
@@ -119,4 +120,21 @@ public class HttpUtil {
         postDownloadFileRequest(context, url, headers, jsonObject, destinationFilePath, fileName, offsetBytes,
                 true, downloadFileCallback);
     }
-}
\ No newline at end of file
+
+    public SegmentedDownloader getSegmentedDownloadRequest(final Context context, final String url,
+                                                           final Map<String, String> headers,
+                                                           final String destinationFilePath, final String fileName,
+                                                           final boolean callBackOnUiThread,
+                                                           final DownloadFileCallback downloadFileCallback) {
+        return httpAPI.doSegmentedDownloadRequest(context, url, headers, destinationFilePath, fileName,
+                callBackOnUiThread, downloadFileCallback);
+    }
+
+    public SegmentedDownloader getSegmentedDownloadRequest(final Context context, final String url,
+                                                           final Map<String, String> headers,
+                                                           final String destinationFilePath, final String fileName,
+                                                           final DownloadFileCallback downloadFileCallback) {
+        return getSegmentedDownloadRequest(context, url, headers, destinationFilePath, fileName, true,
+                downloadFileCallback);
+    }
+}
@@ -2,17 +2,31 @@ package com.library.network.okhttp3.util;
 
 import androidx.annotation.NonNull;
 
+import com.library.network.okhttp3.cache.CachePolicy;
+import com.library.network.okhttp3.cache.MemoryResponseCache;
 import com.library.network.okhttp3.request.DownloadRequest;
 import com.library.network.okhttp3.request.StringRequest;
 import com.library.network.okhttp3.request.UploadFileRequest;
 import com.library.network.okhttp3.upload_dowload.ProgressResponseBody;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
+import okhttp3.CacheControl;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -34,6 +48,19 @@ public final class Ok3Util {
     private OkHttpClient mOkHttpClient;
     private OkHttpClient.Builder defaultBuilder;//默认builer
     private boolean hasBuilder;//是否传递builder
+    // 每个通道的Dispatcher，不随OkHttpClient重建，并发限制对通道内所有请求生效
+    private final Map<RequestLane, Dispatcher> laneDispatchers = new EnumMap<>(RequestLane.class);
+    // 由mOkHttpClient派生的各通道OkHttpClient，共用mOkHttpClient的连接池
+    private final Map<RequestLane, OkHttpClient> laneClients = new EnumMap<>(RequestLane.class);
+    // StringRequest的GET请求用的client，带响应缓存
+    private final Map<RequestLane, OkHttpClient> laneCachingClients = new EnumMap<>(RequestLane.class);
+    private OkHttpClient laneBaseClient;
+    // 磁盘缓存，setBuilder传入的builder没有设置缓存时也使用
+    private Cache responseCache;
+    private volatile MemoryResponseCache memoryResponseCache;
+    // 正在后台验证的缓存key，同一个key只验证一次
+    private final Set<String> revalidatingKeys =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     private Ok3Util() {
     }
@@ -77,6 +104,64 @@ public final class Ok3Util {
         return singleton;
     }
 
+    /**
+     * 开启GET请求的响应缓存，缓存策略见{@link CachePolicy}
+     * <p>
+     * 不缓存Cache-Control为no-store的响应，内存缓存也不缓存private的响应。内存缓存按url和Authorization区分，
+     * 磁盘缓存只按url区分(服务器返回Vary时除外)，登录、退出或token改变时要调用{@link #clearResponseCache()}，
+     * 否则可能返回上一个用户的内容
+     * <p>
+     * 同一个目录只能打开一次，重复调用时沿用已打开的磁盘缓存(maxDiskBytes不会改变)；换目录时关闭之前的磁盘缓存
+     *
+     * @param directory      磁盘缓存目录，如context.getCacheDir()下的子目录
+     * @param maxDiskBytes   磁盘缓存最大字节数
+     * @param maxMemoryChars 内存缓存最大字符数，小于等于0时不使用内存缓存
+     */
+    public Ok3Util setResponseCache(@NonNull File directory, long maxDiskBytes, int maxMemoryChars) {
+        synchronized (object) {
+            // 两个Cache打开同一个目录会互相破坏journal
+            if (null == responseCache || !responseCache.directory().equals(directory)) {
+                closeResponseCache();
+                responseCache = new Cache(directory, maxDiskBytes);
+                laneCachingClients.clear();
+            }
+            memoryResponseCache = maxMemoryChars > 0 ? new MemoryResponseCache(maxMemoryChars) : null;
+        }
+        return singleton;
+    }
+
+    private void closeResponseCache() {
+        if (null == responseCache) {
+            return;
+        }
+        try {
+            responseCache.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 清空磁盘缓存和内存缓存，登录、退出或token改变时调用
+     */
+    public void clearResponseCache() {
+        try {
+            MemoryResponseCache memoryCache = memoryResponseCache;
+            if (null != memoryCache) {
+                memoryCache.evictAll();
+            }
+            Cache cache;
+            synchronized (object) {
+                cache = responseCache;
+            }
+            if (null != cache) {
+                cache.evictAll();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * 默认的OkHttpClient（默认超时8000ms）
      *
@@ -135,24 +220,82 @@ public final class Ok3Util {
         return mOkHttpClient;
     }
 
+    /**
+     * 通道对应的OkHttpClient：和默认的OkHttpClient共用连接池、拦截器等配置，只是Dispatcher不同，
+     * 所以各通道的并发限制互不影响。需要改超时等配置时用newBuilder()派生，派生的client仍共用通道和连接池
+     * <p>
+     * 不带响应缓存(包括默认OkHttpClient上设置的Cache)，下载、上传的内容不会写进HTTP缓存；
+     * 响应缓存只用于StringRequest的GET请求
+     *
+     * @param lane RequestLane
+     * @return OkHttpClient
+     */
+    public OkHttpClient getOkHttpClient(@NonNull RequestLane lane) {
+        OkHttpClient baseClient = getOkHttpClient();
+        synchronized (object) {
+            if (baseClient != laneBaseClient) {
+                laneClients.clear();
+                laneCachingClients.clear();
+                laneBaseClient = baseClient;
+            }
+            OkHttpClient client = laneClients.get(lane);
+            if (null == client) {
+                Dispatcher dispatcher = laneDispatchers.get(lane);
+                if (null == dispatcher) {
+                    dispatcher = lane.newDispatcher();
+                    laneDispatchers.put(lane, dispatcher);
+                }
+                client = baseClient.newBuilder().dispatcher(dispatcher).cache(null).build();
+                laneClients.put(lane, client);
+            }
+            return client;
+        }
+    }
+
+    /**
+     * StringRequest的GET请求用的client：在通道的client上加响应缓存，
+     * 默认OkHttpClient上设置了Cache时用它，否则用{@link #setResponseCache(File, long, int)}开启的磁盘缓存
+     */
+    private OkHttpClient getCachingClient(RequestLane lane) {
+        OkHttpClient laneClient = getOkHttpClient(lane);
+        synchronized (object) {
+            OkHttpClient client = laneCachingClients.get(lane);
+            if (null == client) {
+                Cache cache = null != laneBaseClient.cache() ? laneBaseClient.cache() : responseCache;
+                client = laneClient.newBuilder().cache(cache).build();
+                laneCachingClients.put(lane, client);
+            }
+            return client;
+        }
+    }
+
     /**
      * 同步调用---这个是在主线程里面执行网络请求，调用这个方法时要在子线程`
+     * 同步请求在调用的线程里执行，不经过通道的排队，不受通道并发数限制({@link RequestLane#SERIAL}也不串行)
      *
+     * @param lane    请求走的通道
      * @param request Request
      */
-    public ResponseBody addToRequestQueueSynchronized(boolean concurrence,
+    public ResponseBody addToRequestQueueSynchronized(@NonNull RequestLane lane,
                                                       @NonNull Request request) {
         try {
-            mOkHttpClient = getOkHttpClient();
-            mOkHttpClient.dispatcher().setMaxRequestsPerHost(
-                    concurrence ? 5 : 1);
-            mOkHttpClient.dispatcher().setMaxRequests(concurrence ? 64 : 1);
-            return mOkHttpClient.newCall(request).execute().body();
+            return getOkHttpClient(lane).newCall(request).execute().body();
         } catch (Exception e) {
         }
         return null;
     }
 
+    /**
+     * 同步调用---这个是在主线程里面执行网络请求，调用这个方法时要在子线程`
+     *
+     * @param concurrence 并发设置，false时走{@link RequestLane#SERIAL}
+     * @param request     Request
+     */
+    public ResponseBody addToRequestQueueSynchronized(boolean concurrence,
+                                                      @NonNull Request request) {
+        return addToRequestQueueSynchronized(RequestLane.of(concurrence, RequestLane.NORMAL), request);
+    }
+
     /**
      * *同步调用---这个是在主线程里面执行网络请求，调用这个方法时要在子线程`
      * {@link #addToRequestQueueSynchronized(boolean, Request)}
@@ -166,23 +309,31 @@ public final class Ok3Util {
     }
 
     /**
-     * 异步调用
+     * 异步调用，在通道内排队，受通道的并发数限制
      *
+     * @param lane    请求走的通道
      * @param request Request
      */
-    public void addToRequestQueueAsynchoronous(boolean concurrence, @NonNull Request request,
+    public void addToRequestQueueAsynchoronous(@NonNull RequestLane lane, @NonNull Request request,
                                                Callback callback) {
         try {
-            mOkHttpClient = getOkHttpClient();
-            mOkHttpClient.dispatcher().setMaxRequestsPerHost(
-                    concurrence ? 5 : 1);
-            mOkHttpClient.dispatcher().setMaxRequests(concurrence ? 64 : 1);
-            mOkHttpClient.newCall(request).enqueue(callback);
+            getOkHttpClient(lane).newCall(request).enqueue(callback);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 异步调用
+     *
+     * @param concurrence 并发设置，false时走{@link RequestLane#SERIAL}
+     * @param request     Request
+     */
+    public void addToRequestQueueAsynchoronous(boolean concurrence, @NonNull Request request,
+                                               Callback callback) {
+        addToRequestQueueAsynchoronous(RequestLane.of(concurrence, RequestLane.NORMAL), request, callback);
+    }
+
     /**
      * 异步调用
      * {@link #addToRequestQueueAsynchoronous(boolean, Request, Callback)}
@@ -198,11 +349,11 @@ public final class Ok3Util {
     /**
      * 异步调用--下载文件
      *
-     * @param concurrence 并发设置，true允许并发
-     * @param request     Request
-     * @param callback    Callback
+     * @param lane     请求走的通道
+     * @param request  Request
+     * @param callback Callback
      */
-    public void downloadFile(boolean concurrence,
+    public void downloadFile(@NonNull RequestLane lane,
                              @NonNull Request request, Callback callback,
                              final ProgressResponseBody.ProgressListener progressListener) {
         try {
@@ -218,24 +369,33 @@ public final class Ok3Util {
                             .build();
                 }
             };
-            setBuilder(
-                    new OkHttpClient.Builder()
-                            .connectTimeout(60 * 1000, TimeUnit.MILLISECONDS)
-                            .writeTimeout(60 * 1000, TimeUnit.MILLISECONDS)
-                            .readTimeout(60 * 1000, TimeUnit.MILLISECONDS)
-                            .retryOnConnectionFailure(true), interceptor);
-            OkHttpClient mOkHttpClient = getOkHttpClient();
-
-            mOkHttpClient.dispatcher().setMaxRequestsPerHost(
-                    concurrence ? 5 : 1);
-            mOkHttpClient.dispatcher().setMaxRequests(concurrence ? 64 : 1);
-            mOkHttpClient.newCall(request).enqueue(callback);
-            defaultBuilder = null;
+            // 派生的client共用通道的Dispatcher和连接池，不替换默认的OkHttpClient
+            OkHttpClient downloadClient = getOkHttpClient(lane).newBuilder()
+                    .connectTimeout(60 * 1000, TimeUnit.MILLISECONDS)
+                    .writeTimeout(60 * 1000, TimeUnit.MILLISECONDS)
+                    .readTimeout(60 * 1000, TimeUnit.MILLISECONDS)
+                    .retryOnConnectionFailure(true)
+                    .addNetworkInterceptor(interceptor)
+                    .build();
+            downloadClient.newCall(request).enqueue(callback);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 异步调用--下载文件
+     *
+     * @param concurrence 并发设置，false时走{@link RequestLane#SERIAL}
+     * @param request     Request
+     * @param callback    Callback
+     */
+    public void downloadFile(boolean concurrence,
+                             @NonNull Request request, Callback callback,
+                             final ProgressResponseBody.ProgressListener progressListener) {
+        downloadFile(RequestLane.of(concurrence, RequestLane.BULK), request, callback, progressListener);
+    }
+
     /**
      * 下载文件
      * {@link #downloadFile(boolean, Request, Callback, ProgressResponseBody.ProgressListener)} )}
@@ -262,7 +422,16 @@ public final class Ok3Util {
      */
     public ResponseBody addToRequestQueueSynchronized(boolean concurrence,
                                                       StringRequest stringRequest) {
-        return addToRequestQueueSynchronized(concurrence, stringRequest.getRequest());
+        RequestLane lane = RequestLane.of(concurrence, stringRequest.getLane());
+        Request request = stringRequest.getRequest();
+        if (!"GET".equals(request.method())) {
+            return addToRequestQueueSynchronized(lane, request);
+        }
+        try {
+            return getCachingClient(lane).newCall(request).execute().body();
+        } catch (Exception e) {
+        }
+        return null;
     }
 
     /**
@@ -283,7 +452,13 @@ public final class Ok3Util {
      * @param stringRequest 自己封装的Ok3 的Request
      */
     public void addToRequestQueueAsynchoronous(boolean concurrence, StringRequest stringRequest) {
-        addToRequestQueueAsynchoronous(concurrence, stringRequest.getRequest(), stringRequest);
+        RequestLane lane = RequestLane.of(concurrence, stringRequest.getLane());
+        Request request = stringRequest.getRequest();
+        if ("GET".equals(request.method())) {
+            enqueueWithCachePolicy(lane, stringRequest);
+        } else {
+            addToRequestQueueAsynchoronous(lane, request, stringRequest);
+        }
     }
 
     /**
@@ -307,7 +482,8 @@ public final class Ok3Util {
                              DownloadRequest downloadRequest,
                              final ProgressResponseBody.ProgressListener progressListener) {
 
-        downloadFile(concurrence, downloadRequest.getRequest(), downloadRequest, progressListener);
+        downloadFile(RequestLane.of(concurrence, downloadRequest.getLane()), downloadRequest.getRequest(),
+                downloadRequest, progressListener);
     }
 
     /**
@@ -329,7 +505,8 @@ public final class Ok3Util {
      */
     public ResponseBody addToRequestQueueSynchronized(boolean concurrence,
                                                       UploadFileRequest uploadFileRequest) {
-        return addToRequestQueueSynchronized(concurrence, uploadFileRequest.getRequest());
+        return addToRequestQueueSynchronized(RequestLane.of(concurrence, uploadFileRequest.getLane()),
+                uploadFileRequest.getRequest());
     }
 
     /**
@@ -351,8 +528,8 @@ public final class Ok3Util {
      */
     public void addToRequestQueueAsynchoronous(boolean concurrence,
                                                UploadFileRequest uploadFileRequest) {
-        addToRequestQueueAsynchoronous(concurrence, uploadFileRequest.getRequest(),
-                uploadFileRequest);
+        addToRequestQueueAsynchoronous(RequestLane.of(concurrence, uploadFileRequest.getLane()),
+                uploadFileRequest.getRequest(), uploadFileRequest);
     }
 
     /**
@@ -373,7 +550,8 @@ public final class Ok3Util {
      */
     public ResponseBody addToRequestQueueSynchronized(boolean concurrence,
                                                       DownloadRequest downloadRequest) {
-        return addToRequestQueueSynchronized(concurrence, downloadRequest.getRequest());
+        return addToRequestQueueSynchronized(RequestLane.of(concurrence, downloadRequest.getLane()),
+                downloadRequest.getRequest());
     }
 
     /**
@@ -395,7 +573,8 @@ public final class Ok3Util {
      */
     public void addToRequestQueueAsynchoronous(boolean concurrence,
                                                DownloadRequest downloadRequest) {
-        addToRequestQueueAsynchoronous(concurrence, downloadRequest.getRequest(), downloadRequest);
+        addToRequestQueueAsynchoronous(RequestLane.of(concurrence, downloadRequest.getLane()),
+                downloadRequest.getRequest(), downloadRequest);
     }
 
     /**
@@ -409,6 +588,178 @@ public final class Ok3Util {
         addToRequestQueueAsynchoronous(true, downloadRequest);
     }
 
+    /**
+     * 按{@link StringRequest#getCachePolicy()}执行GET请求
+     */
+    private void enqueueWithCachePolicy(final RequestLane lane, final StringRequest stringRequest) {
+        final Request request = stringRequest.getRequest();
+        final Callback callback = new CachingCallback(stringRequest);
+        final CachePolicy cachePolicy = stringRequest.getCachePolicy();
+        switch (cachePolicy) {
+            case NETWORK_ONLY:
+                enqueueCaching(lane, request.newBuilder()
+                        .cacheControl(CacheControl.FORCE_NETWORK).build(), callback);
+                break;
+            case CACHE_ELSE_NETWORK:
+            case STALE_WHILE_REVALIDATE:
+                MemoryResponseCache memoryCache = memoryResponseCache;
+                String cached = null == memoryCache || stringRequest.isReturnBody() ? null
+                        : memoryCache.get(memoryCacheKey(request));
+                if (null != cached) {
+                    deliverCached(lane, stringRequest, cached);
+                    if (cachePolicy == CachePolicy.STALE_WHILE_REVALIDATE) {
+                        revalidate(request);
+                    }
+                    break;
+                }
+                // 只读磁盘缓存，没有缓存时再请求网络
+                enqueueCaching(lane, request.newBuilder()
+                        .cacheControl(CacheControl.FORCE_CACHE).build(), new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        enqueueCaching(lane, request, callback);
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        if (null == response.cacheResponse()) {
+                            response.close();
+                            enqueueCaching(lane, request, callback);
+                            return;
+                        }
+                        callback.onResponse(call, response);
+                        if (cachePolicy == CachePolicy.STALE_WHILE_REVALIDATE) {
+                            revalidate(request);
+                        }
+                    }
+                });
+                break;
+            case DEFAULT:
+            default:
+                enqueueCaching(lane, request, callback);
+                break;
+        }
+    }
+
+    /**
+     * 内存缓存命中时和网络返回一样在通道的线程里回调，不在调用的线程里直接回调；
+     * 没有对应的Call，回调的call为null
+     */
+    private void deliverCached(RequestLane lane, final StringRequest stringRequest, final String cached) {
+        try {
+            getOkHttpClient(lane).dispatcher().executorService().execute(new Runnable() {
+                @Override
+                public void run() {
+                    stringRequest.onResponse(null, cached);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            InterruptedIOException ioException = new InterruptedIOException("executor rejected");
+            ioException.initCause(e);
+            stringRequest.onFailure(null, ioException);
+        }
+    }
+
+    private void enqueueCaching(RequestLane lane, Request request, Callback callback) {
+        try {
+            getCachingClient(lane).newCall(request).enqueue(callback);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 后台验证缓存：缓存有ETag/Last-Modified时带上If-None-Match/If-Modified-Since，
+     * 服务器返回304只更新缓存头，否则用新的内容替换缓存
+     */
+    private void revalidate(Request request) {
+        final String key = memoryCacheKey(request);
+        if (!revalidatingKeys.add(key)) {
+            return;
+        }
+        Request revalidateRequest = request.newBuilder()
+                .cacheControl(new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build())
+                .build();
+        enqueueCaching(RequestLane.BULK, revalidateRequest, new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                revalidatingKeys.remove(key);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try {
+                    // 读完内容磁盘缓存才会写入
+                    String result = response.body().string();
+                    putToMemoryCache(key, response, result);
+                } finally {
+                    response.close();
+                    revalidatingKeys.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * 读取返回内容后存入内存缓存，再交给StringRequest
+     */
+    private final class CachingCallback implements Callback {
+
+        private final StringRequest stringRequest;
+
+        CachingCallback(StringRequest stringRequest) {
+            this.stringRequest = stringRequest;
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            stringRequest.onFailure(call, e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            if (stringRequest.isReturnBody()) {
+                stringRequest.onResponse(call, response);
+                return;
+            }
+            String result;
+            try {
+                result = response.body().string();
+            } catch (IOException e) {
+                stringRequest.onFailure(call, e);
+                return;
+            }
+            putToMemoryCache(memoryCacheKey(call.request()), response, result);
+            stringRequest.onResponse(call, result);
+        }
+    }
+
+    /**
+     * 内存缓存的key：url加Authorization，换token后不会命中上一个token的内容
+     */
+    private static String memoryCacheKey(Request request) {
+        String authorization = request.header("Authorization");
+        String url = request.url().toString();
+        return null == authorization ? url : url + "\n" + authorization;
+    }
+
+    /**
+     * 成功且允许缓存的响应存入内存缓存，no-store和private的响应不缓存并移除旧的内容
+     */
+    private void putToMemoryCache(String key, Response response, String result) {
+        MemoryResponseCache memoryCache = memoryResponseCache;
+        if (null == memoryCache || !response.isSuccessful()) {
+            return;
+        }
+        CacheControl cacheControl = response.cacheControl();
+        if (cacheControl.noStore() || cacheControl.isPrivate()
+                || response.request().cacheControl().noStore()) {
+            memoryCache.remove(key);
+        } else {
+            memoryCache.put(key, result);
+        }
+    }
+
     /**
      * 取消OKHTTP3的请求，网络请求已发出，调用可以取消
      *
@@ -416,8 +767,7 @@ public final class Ok3Util {
      */
     public void cancel(Request request) {
         if (null != request) {
-            List<Call> calls = getOkHttpClient().dispatcher().runningCalls();
-            for (Call call : calls) {
+            for (Call call : getCalls()) {
                 if (call.request().toString().equals(request.toString())) {
                     call.cancel();
                 }
@@ -430,12 +780,25 @@ public final class Ok3Util {
      */
     public void cancelAllRequest() {
         try {
-            List<Call> calls = getOkHttpClient().dispatcher().runningCalls();
-            for (Call call : calls) {
+            for (Call call : getCalls()) {
                 call.cancel();
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * 所有通道中正在执行和排队的请求
+     */
+    private List<Call> getCalls() {
+        List<Call> calls = new ArrayList<>(getOkHttpClient().dispatcher().runningCalls());
+        synchronized (object) {
+            for (Dispatcher dispatcher : laneDispatchers.values()) {
+                calls.addAll(dispatcher.queuedCalls());
+                calls.addAll(dispatcher.runningCalls());
+            }
+        }
+        return calls;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.library.network.okhttp3.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dispatcher;
+
+/**
+ * 请求通道：每个通道有自己的Dispatcher(并发数限制、排队)和线程优先级，
+ * 所有通道共用同一个OkHttpClient的连接池，某个通道排队不会阻塞其它通道的请求
+ * <p>
+ * 限制：
+ * <ul>
+ * <li>并发数限制和排队只对异步请求有效。同步请求在调用的线程里执行，不经过Dispatcher排队，
+ * 所以{@link #SERIAL}的同步请求之间、同步和异步请求之间都不是串行的，需要串行的流程要用异步请求</li>
+ * <li>通道之间没有优先级排队，{@link #BULK}只是自己的并发数小、线程优先级低；
+ * 它的请求不会让给其它通道，连接池和带宽仍然是共用的</li>
+ * </ul>
+ *
+ * @author YobertJomi
+ * className RequestLane
+ * created at  2020/9/12  10:20
+ */
+public enum RequestLane {
+    /**
+     * 串行：同一时间只执行一个异步请求，按加入的顺序执行，如登录流程
+     */
+    SERIAL(1, 1, Thread.NORM_PRIORITY + 1),
+    /**
+     * 普通接口请求
+     */
+    NORMAL(64, 5, Thread.NORM_PRIORITY),
+    /**
+     * 上传、下载等大流量请求，较低的线程优先级(不会排在其它通道的请求之后)
+     */
+    BULK(8, 4, Thread.NORM_PRIORITY - 2);
+
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final int threadPriority;
+
+    RequestLane(int maxRequests, int maxRequestsPerHost, int threadPriority) {
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.threadPriority = threadPriority;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * 兼容原来的concurrence参数：不允许并发时走串行通道
+     *
+     * @param concurrence 并发设置，true允许并发
+     * @param lane        允许并发时使用的通道
+     * @return RequestLane
+     */
+    static RequestLane of(boolean concurrence, RequestLane lane) {
+        return concurrence ? lane : SERIAL;
+    }
+
+    /**
+     * 创建这个通道的Dispatcher，线程池和OkHttp默认的一样，线程空闲60秒后回收
+     *
+     * @return Dispatcher
+     */
+    Dispatcher newDispatcher() {
+        ExecutorService executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60,
+                TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        "OkHttp " + name() + " Dispatcher-" + count.incrementAndGet());
+                thread.setDaemon(false);
+                thread.setPriority(threadPriority);
+                return thread;
+            }
+        });
+        Dispatcher dispatcher = new Dispatcher(executorService);
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+}